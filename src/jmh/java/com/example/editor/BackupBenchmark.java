@@ -0,0 +1,52 @@
+package com.example.editor;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// performBatchBackupToDB: one snapshot cycle over `docs` dirty documents into file-based H2
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class BackupBenchmark {
+
+    @Param({"10000", "200000"})
+    int docBytes;
+
+    @Param({"50"})
+    int docs;
+
+    BenchmarkApp app;
+    private final List<String> docIds = new ArrayList<>();
+    private long revision = 1;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        app = new BenchmarkApp();
+        for (int i = 0; i < docs; i++) docIds.add(app.createDocument(docBytes, i));
+        app.controller.performBatchBackupToDB(true);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException { app.close(); }
+
+    // One small edit per document, so every document is dirty when the cycle starts
+    @Setup(Level.Invocation)
+    public void dirtyEveryDocument() {
+        for (String docId : docIds) {
+            app.controller.processEdit(BenchmarkApp.edit(docId, new Delta().insert("x"), revision));
+        }
+        revision++;
+    }
+
+    @Benchmark
+    public void backupDirtyDocuments() {
+        app.controller.performBatchBackupToDB(true);
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.editor;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+// Boots the whole editor against a throw-away file-based H2 database and operation log
+final class BenchmarkApp {
+
+    final ConfigurableApplicationContext context;
+    final EditorController controller;
+    private final Path dir;
+
+    /** @param extraArgs additional --property=value overrides for this benchmark */
+    BenchmarkApp(String... extraArgs) throws IOException {
+        dir = Files.createTempDirectory("editor-jmh");
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:file:" + dir.resolve("db").toAbsolutePath(),
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN",
+                "--editor.oplog.dir=" + dir.resolve("oplog"),
+                // Snapshots only when a benchmark asks for them
+                "--editor.snapshot.every-ops=1000000000",
+                "--editor.snapshot.every-seconds=1000000"));
+        args.addAll(Arrays.asList(extraArgs));
+        context = new SpringApplicationBuilder(Application.class).logStartupInfo(false).run(args.toArray(new String[0]));
+        controller = context.getBean(EditorController.class);
+    }
+
+    void close() throws IOException {
+        context.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    /** Creates a document holding about docBytes of text and returns its id (at revision 1). */
+    @SuppressWarnings("unchecked")
+    String createDocument(int docBytes, long seed) {
+        Map<String, String> body = Map.of("title", "Benchmark " + seed, "owner", "jmh");
+        String docId = ((Map<String, String>) controller.createDoc(body).getBody()).get("docId");
+        controller.processEdit(edit(docId, new Delta().insert(text(docBytes, seed)), 0));
+        return docId;
+    }
+
+    static DocMessage edit(String docId, Delta delta, long baseRevision) {
+        DocMessage message = new DocMessage(delta.toJson(), "jmh", docId);
+        message.setRevision(baseRevision);
+        return message;
+    }
+
+    // Deterministic prose-like text, so every run works on the same documents
+    static String text(int bytes, long seed) {
+        String[] words = {"the", "editor", "document", "revision", "quick", "brown", "fox", "server", "delta", "lane"};
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder(bytes + 16);
+        while (sb.length() < bytes) {
+            sb.append(words[random.nextInt(words.length)]);
+            sb.append(random.nextInt(12) == 0 ? ".\n" : " ");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.editor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// DocMessage JSON: a one-character edit and a full snapshot, each carrying its delta as a nested JSON string
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class DocMessageJsonBenchmark {
+
+    @Param({"1", "2000", "200000"})
+    int contentBytes;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private DocMessage message;
+    private byte[] json;
+
+    @Setup
+    public void prepare() throws Exception {
+        Delta delta = contentBytes <= 1 ? new Delta().retain(120).insert("x") : new Delta().insert(BenchmarkApp.text(contentBytes, 42));
+        message = new DocMessage(delta.toJson(), "alice_x7k2p9", "3f1c2a9e-5d7b-4c1e-9a53-0d2f6b8e4a71", "Quarterly report");
+        message.setRevision(123_456L);
+        json = mapper.writeValueAsBytes(message);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return mapper.writeValueAsBytes(message);
+    }
+
+    @Benchmark
+    public DocMessage deserialize() throws Exception {
+        return mapper.readValue(json, DocMessage.class);
+    }
+
+    // What a receiver really pays: the frame, then the delta string inside it
+    @Benchmark
+    public Delta deserializeWithDelta() throws Exception {
+        return Delta.fromJson(mapper.readValue(json, DocMessage.class).getContent());
+    }
+}
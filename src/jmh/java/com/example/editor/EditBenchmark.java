@@ -0,0 +1,60 @@
+package com.example.editor;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * processEdit: transform + apply against the cached document, operation log append and broadcast
+ * hand-off, for one typed character. Every thread types into its own document, so the 4-thread
+ * variant shows how well independent documents scale.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class EditBenchmark {
+
+    @Param({"2000", "50000"})
+    int docBytes;
+
+    BenchmarkApp app;
+    private final AtomicLong seeds = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void start() throws IOException { app = new BenchmarkApp(); }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException { app.close(); }
+
+    @State(Scope.Thread)
+    public static class Typist {
+        String docId;
+        long revision;
+        int cursor;
+
+        @Setup(Level.Trial)
+        public void open(EditBenchmark bench) {
+            docId = bench.app.createDocument(bench.docBytes, bench.seeds.incrementAndGet());
+            revision = 1;
+        }
+    }
+
+    private void type(Typist t) {
+        t.cursor = (t.cursor + 7) % docBytes;
+        app.controller.processEdit(BenchmarkApp.edit(t.docId, new Delta().retain(t.cursor).insert("x"), t.revision));
+        t.revision++;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void typeOneCharacter(Typist t) { type(t); }
+
+    @Benchmark
+    @Threads(4)
+    public void typeOneCharacterFourDocuments(Typist t) { type(t); }
+}
@@ -0,0 +1,81 @@
+package com.example.editor;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PLATFORM vs VIRTUAL execution mode: a wave of `clients` sessions joining cold documents at once,
+ * sent through the real clientInboundChannel. Every join does a DB lookup before its snapshot
+ * reply reaches the broker channel; the score is the time until all replies are out.
+ */
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class ExecutionModeBenchmark {
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    String mode;
+
+    @Param({"200", "1000"})
+    int clients;
+
+    BenchmarkApp app;
+    private MessageChannel inbound;
+    private SubscribableChannel broker;
+    private MessageHandler replyCounter;
+    private volatile CountDownLatch replies;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        app = new BenchmarkApp("--editor.execution.mode=" + mode);
+        inbound = app.context.getBean("clientInboundChannel", MessageChannel.class);
+        broker = app.context.getBean("brokerChannel", SubscribableChannel.class);
+        replyCounter = message -> {
+            String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+            if (destination != null && destination.startsWith("/topic/history/")) replies.countDown();
+        };
+        broker.subscribe(replyCounter);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        broker.unsubscribe(replyCounter);
+        app.close();
+    }
+
+    @Benchmark
+    public void joinWave() throws InterruptedException {
+        replies = new CountDownLatch(clients);
+        for (int i = 0; i < clients; i++) inbound.send(join(UUID.randomUUID().toString()));
+        if (!replies.await(60, TimeUnit.SECONDS)) throw new IllegalStateException(replies.getCount() + " joins unanswered");
+    }
+
+    // What a client's SEND /app/join/{docId} looks like once it has been decoded from its WebSocket frame
+    private static Message<byte[]> join(String docId) {
+        StompHeaderAccessor header = StompHeaderAccessor.create(StompCommand.SEND);
+        header.setSessionId(UUID.randomUUID().toString());
+        header.setSessionAttributes(new HashMap<>());
+        header.setDestination("/app/join/" + docId);
+        header.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        String body = "{\"content\":\"\",\"sender\":\"reader-" + header.getSessionId() + "\",\"docId\":\"" + docId + "\"}";
+        return MessageBuilder.createMessage(body.getBytes(StandardCharsets.UTF_8), header.getMessageHeaders());
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.editor;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// joinUser with 8 sessions joining the same warm document at once (snapshot + JSON reply)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class JoinBenchmark {
+
+    @Param({"2000", "200000"})
+    int docBytes;
+
+    BenchmarkApp app;
+    String docId;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        app = new BenchmarkApp();
+        docId = app.createDocument(docBytes, 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException { app.close(); }
+
+    @State(Scope.Thread)
+    public static class Session {
+        StompHeaderAccessor header;
+        DocMessage join;
+
+        @Setup(Level.Trial)
+        public void connect(JoinBenchmark bench) {
+            header = StompHeaderAccessor.create(StompCommand.SEND);
+            header.setSessionId(UUID.randomUUID().toString());
+            join = new DocMessage("", "reader-" + header.getSessionId(), bench.docId);
+        }
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void joinUnderContention(Session session) {
+        app.controller.joinUser(docId, session.join, session.header);
+    }
+}
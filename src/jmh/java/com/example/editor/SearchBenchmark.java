@@ -0,0 +1,60 @@
+package com.example.editor;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// /api/search: one query over `docs` indexed documents. "fox" is in nearly every document,
+// "tag42" in one document out of 1000
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+
+    @Param({"100000"})
+    int docs;
+
+    @Param({"fox", "tag42", "tag42 quick"})
+    String query;
+
+    private Path dir;
+    private SearchIndex index;
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        dir = Files.createTempDirectory("search-bench");
+        index = new SearchIndex(dir.toString(), null, null, null);
+        index.start();
+        for (int i = 0; i < docs; i++) {
+            String text = "tag" + (i % 1000) + " " + BenchmarkApp.text(500, i);
+            index.update("doc-" + i, "Document " + i, "user-" + i % 10, Integer.toString(i), Rope.of(new Delta().insert(text + "\n")));
+        }
+        index.flush();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws Exception {
+        index.stop();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public SearchIndex.Results firstPage() throws IOException {
+        return index.search(query, null, 0, 20);
+    }
+
+    @Benchmark
+    public SearchIndex.Results firstPageOfOneOwner() throws IOException {
+        return index.search(query, "user-3", 0, 20);
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.editor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Collects the edits broadcast to one document for a short window (or until maxBatch edits) and
+ * sends them as a single EditBatch frame, instead of one STOMP frame per keystroke per subscriber.
+ *
+ * The first edit of a batch schedules its flush; a full batch is flushed right away by the caller.
+ * Sending happens under the batch's lock and a new batch for the document can only start once the
+ * previous one was sent, so frames for one document always leave in revision order.
+ */
+public class BroadcastBatcher {
+
+    private static final class Buffer {
+        List<DocMessage> edits = new ArrayList<>();
+        List<Long> enqueuedAt = new ArrayList<>();
+        boolean scheduled = false;
+        boolean retired = false; // flushed and removed from the map; submit must use a new buffer
+    }
+
+    private final BiConsumer<String, EditBatch> sender;
+    private final long windowMillis;
+    private final int maxBatch;
+    private final Map<String, Buffer> buffers = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    // Metrics
+    private final LongAdder frames = new LongAdder();
+    private final LongAdder messages = new LongAdder();
+    private final AtomicLong largestFrame = new AtomicLong();
+    private final LongAdder addedLatencyMicros = new LongAdder();
+    private final AtomicLong maxAddedLatencyMicros = new AtomicLong();
+
+    /**
+     * @param sender       called with (docId, batch) to put a frame on the wire
+     * @param windowMillis how long the first edit of a batch may wait for company; 0 disables batching
+     * @param maxBatch     flush as soon as this many edits are waiting
+     */
+    public BroadcastBatcher(BiConsumer<String, EditBatch> sender, long windowMillis, int maxBatch) {
+        this.sender = sender;
+        this.windowMillis = windowMillis;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Editor-Broadcast-Flusher");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public void submit(String docId, DocMessage edit) {
+        while (true) {
+            Buffer buffer = buffers.computeIfAbsent(docId, id -> new Buffer());
+            boolean flushNow;
+            synchronized (buffer) {
+                if (buffer.retired) continue;
+                buffer.edits.add(edit);
+                buffer.enqueuedAt.add(System.nanoTime());
+                flushNow = windowMillis <= 0 || buffer.edits.size() >= maxBatch;
+                if (!flushNow && !buffer.scheduled) {
+                    buffer.scheduled = true;
+                    scheduler.schedule(() -> flush(docId, buffer), windowMillis, TimeUnit.MILLISECONDS);
+                }
+            }
+            if (flushNow) flush(docId, buffer);
+            return;
+        }
+    }
+
+    private void flush(String docId, Buffer buffer) {
+        synchronized (buffer) {
+            if (buffer.retired || buffer.edits.isEmpty()) return;
+            List<DocMessage> edits = buffer.edits;
+            List<Long> enqueuedAt = buffer.enqueuedAt;
+            buffer.edits = new ArrayList<>();
+            buffer.enqueuedAt = new ArrayList<>();
+
+            long now = System.nanoTime();
+            for (long t : enqueuedAt) {
+                long micros = (now - t) / 1000;
+                addedLatencyMicros.add(micros);
+                maxAddedLatencyMicros.accumulateAndGet(micros, Math::max);
+            }
+            frames.increment();
+            messages.add(edits.size());
+            largestFrame.accumulateAndGet(edits.size(), Math::max);
+
+            sender.accept(docId, new EditBatch(docId, edits));
+
+            // Only documents with edits in flight keep a buffer; the next edit starts a fresh one
+            buffer.retired = true;
+            buffers.remove(docId, buffer);
+        }
+    }
+
+    /** Sends everything still buffered and stops the flusher thread. */
+    public void shutdown() {
+        for (Map.Entry<String, Buffer> e : buffers.entrySet()) flush(e.getKey(), e.getValue());
+        scheduler.shutdownNow();
+    }
+
+    public Map<String, Object> stats() {
+        long f = frames.sum();
+        long m = messages.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("windowMillis", windowMillis);
+        stats.put("maxBatch", maxBatch);
+        stats.put("frames", f);
+        stats.put("messages", m);
+        stats.put("avgMessagesPerFrame", f == 0 ? 0.0 : (double) m / f);
+        stats.put("largestFrame", largestFrame.get());
+        stats.put("avgAddedLatencyMicros", m == 0 ? 0.0 : (double) addedLatencyMicros.sum() / m);
+        stats.put("maxAddedLatencyMicros", maxAddedLatencyMicros.get());
+        return stats;
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.editor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads the most recently modified documents into the document cache after startup, so their first
+ * joins are not cold DB loads. It runs in the background on editor.warmup.threads threads and the
+ * node accepts joins meanwhile: a join for a document being warmed shares its load (see
+ * DocumentCache). It stops early rather than push the cache into eviction. In a cluster each node
+ * warms the documents it owns.
+ */
+@Component
+public class CacheWarmer implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheWarmer.class);
+
+    private static final String RECENT_DOCUMENTS = "SELECT doc_id FROM documents ORDER BY last_modified DESC LIMIT ?";
+
+    private final JdbcTemplate jdbc;
+    private final EditorController controller;
+    private final ClusterService clusterService;
+    private final int documents;
+    private final int threads;
+
+    private final AtomicInteger warmed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicLong durationMillis = new AtomicLong(-1);
+    private volatile boolean cacheFull = false;
+
+    public CacheWarmer(JdbcTemplate jdbc, EditorController controller, ClusterService clusterService, EditorMetrics metrics,
+                       @Value("${editor.warmup.documents:200}") int documents,
+                       @Value("${editor.warmup.threads:4}") int threads) {
+        this.jdbc = jdbc;
+        this.controller = controller;
+        this.clusterService = clusterService;
+        this.documents = documents;
+        this.threads = threads;
+        metrics.bindWarmup(this);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (documents <= 0) return;
+        Thread thread = new Thread(this::warm, "Editor-Cache-Warmer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    void warm() {
+        long start = System.nanoTime();
+        // Every node reads the same most recent documents and keeps its own share of them
+        List<String> docIds = new ArrayList<>();
+        for (String docId : jdbc.queryForList(RECENT_DOCUMENTS, String.class, documents * clusterService.getNodeCount())) {
+            if (clusterService.isLocal(docId) && docIds.size() < documents) docIds.add(docId);
+        }
+
+        AtomicInteger workerId = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "Editor-Cache-Warmer-" + workerId.incrementAndGet());
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        for (String docId : docIds) {
+            workers.execute(() -> {
+                if (cacheFull) return;
+                try {
+                    if (controller.warmUp(docId)) warmed.incrementAndGet();
+                    else cacheFull = true;
+                } catch (RuntimeException e) {
+                    failed.incrementAndGet();
+                    log.warn("Warm-up of {} failed: {}", docId, e.getMessage());
+                }
+            });
+        }
+        workers.shutdown();
+        try {
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            workers.shutdownNow();
+            return;
+        }
+        durationMillis.set(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        log.info("🔥 Cache warmed: {} document(s) in {} ms{}", warmed.get(), durationMillis.get(),
+                cacheFull ? " (stopped at the cache budget)" : "");
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("documents", documents);
+        stats.put("threads", threads);
+        stats.put("warmed", warmed.get());
+        stats.put("failed", failed.get());
+        stats.put("cacheFull", cacheFull);
+        stats.put("durationMillis", durationMillis.get());
+        return stats;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.editor;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.*;
+
+/**
+ * Clustered mode settings.
+ *
+ * editor.cluster.nodes lists every node as id or id=baseUrl (the URL is only needed by the http
+ * transport). With the default single node, the editor behaves exactly like a standalone server.
+ */
+@Configuration
+public class ClusterConfig {
+
+    @Value("${editor.cluster.node-id:node-1}")
+    private String nodeId;
+
+    @Value("${editor.cluster.nodes:node-1}")
+    private String nodes;
+
+    @Value("${editor.cluster.transport:loopback}")
+    private String transport;
+
+    @Value("${editor.cluster.secret:}")
+    private String secret;
+
+    @Value("${editor.broker.relay.enabled:false}")
+    private boolean brokerRelay;
+
+    @Bean(destroyMethod = "stop")
+    public ClusterTransport clusterTransport() {
+        if ("http".equals(transport)) return new HttpClusterTransport(parseNodes(), secret);
+        return new LoopbackClusterTransport("default");
+    }
+
+    @Bean
+    public ClusterService clusterService(ClusterTransport clusterTransport, SimpMessagingTemplate messagingTemplate,
+                                         WireFormatRegistry wireFormats) {
+        return new ClusterService(nodeId, new ArrayList<>(parseNodes().keySet()), clusterTransport,
+                (destination, payload) -> sendLocal(messagingTemplate, wireFormats, destination, payload), brokerRelay);
+    }
+
+    // Delivers to this node's subscribers: JSON as always, plus a binary frame when clients
+    // that negotiated the binary wire format listen to the destination
+    private static void sendLocal(SimpMessagingTemplate messagingTemplate, WireFormatRegistry wireFormats,
+                                  String destination, Object payload) {
+        messagingTemplate.convertAndSend(destination, payload);
+        if (!wireFormats.hasBinarySubscribers(destination)) return;
+
+        byte[] frame = payload instanceof EditBatch
+                ? WireCodec.encodeEdits((EditBatch) payload)
+                : WireCodec.encodeSnapshot((DocMessage) payload);
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setContentType(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+        headers.setLeaveMutable(true);
+        messagingTemplate.send(WireFormatRegistry.binaryDestination(destination),
+                MessageBuilder.createMessage(frame, headers.getMessageHeaders()));
+    }
+
+    private Map<String, String> parseNodes() {
+        Map<String, String> parsed = new LinkedHashMap<>();
+        for (String node : nodes.split(",")) {
+            String[] parts = node.trim().split("=", 2);
+            if (!parts[0].isEmpty()) parsed.put(parts[0], parts.length > 1 ? parts[1] : null);
+        }
+        return parsed;
+    }
+}
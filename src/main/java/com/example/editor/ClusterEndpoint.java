@@ -0,0 +1,30 @@
+package com.example.editor;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+// Receiving side of HttpClusterTransport; only registered when the HTTP transport is in use
+@RestController
+@ConditionalOnProperty(name = "editor.cluster.transport", havingValue = "http")
+public class ClusterEndpoint {
+
+    @Autowired private ClusterTransport clusterTransport;
+
+    @PostMapping("/internal/cluster")
+    public ResponseEntity<?> receive(@RequestBody String body,
+                                     @RequestHeader(value = HttpClusterTransport.SECRET_HEADER, required = false) String secret) {
+        try {
+            ((HttpClusterTransport) clusterTransport).receive(body, secret);
+            return ResponseEntity.ok().build();
+        } catch (SecurityException e) {
+            return ResponseEntity.status(403).build();
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+}
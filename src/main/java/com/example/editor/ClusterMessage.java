@@ -0,0 +1,50 @@
+package com.example.editor;
+
+// Envelope for node-to-node traffic in clustered mode. Only the fields a type needs are set.
+public class ClusterMessage {
+
+    public enum Type {
+        EDIT,     // edit forwarded to the document's owner
+        JOIN,     // join forwarded to the document's owner; the snapshot goes back to originNode
+        LEAVE,    // a remote session left the document; the owner drops its pin
+        DELIVER,  // payload for subscribers on the target node only
+        PUBLISH,  // payload for subscribers on every node
+        PRESENCE  // number of sessions connected to originNode
+    }
+
+    private Type type;
+    private String originNode;
+    private String docId;
+    private String sessionId;
+    private String destination;
+    private DocMessage message;
+    private EditBatch batch;
+    private Long count;
+
+    public ClusterMessage() {}
+
+    public ClusterMessage(Type type, String originNode) {
+        this.type = type;
+        this.originNode = originNode;
+    }
+
+    // The STOMP payload carried by DELIVER/PUBLISH
+    public Object payload() { return batch != null ? batch : message; }
+
+    public Type getType() { return type; }
+    public void setType(Type type) { this.type = type; }
+    public String getOriginNode() { return originNode; }
+    public void setOriginNode(String originNode) { this.originNode = originNode; }
+    public String getDocId() { return docId; }
+    public void setDocId(String docId) { this.docId = docId; }
+    public String getSessionId() { return sessionId; }
+    public void setSessionId(String sessionId) { this.sessionId = sessionId; }
+    public String getDestination() { return destination; }
+    public void setDestination(String destination) { this.destination = destination; }
+    public DocMessage getMessage() { return message; }
+    public void setMessage(DocMessage message) { this.message = message; }
+    public EditBatch getBatch() { return batch; }
+    public void setBatch(EditBatch batch) { this.batch = batch; }
+    public Long getCount() { return count; }
+    public void setCount(Long count) { this.count = count; }
+}
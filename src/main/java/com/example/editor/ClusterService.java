@@ -0,0 +1,182 @@
+package com.example.editor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Clustered mode. Every document is owned by exactly one node (consistent hashing over the
+ * configured node list); only the owner holds its state and applies its edits.
+ *
+ * - Edits and joins that arrive on another node are forwarded to the owner.
+ * - Broadcasts fan out to the subscribers of every node: through the external STOMP broker when
+ *   broker relay mode is on, otherwise by publishing them over the cluster transport.
+ * - Each node publishes its connected-session count so presence is the sum over all nodes.
+ *
+ * With a single node everything short-circuits to local calls.
+ */
+public class ClusterService {
+
+    /** Callbacks into the local editor for traffic forwarded by other nodes. */
+    public interface Handler {
+        void onEdit(String docId, DocMessage message);
+        void onJoin(String docId, DocMessage message, String sessionKey, String originNode);
+        void onLeave(String docId, String sessionKey);
+        void onPresenceChanged(long totalSessions);
+    }
+
+    private final String nodeId;
+    private final ConsistentHashRing ring;
+    private final boolean singleNode;
+    private final int nodeCount;
+    private final ClusterTransport transport;
+    private final BiConsumer<String, Object> localSink;
+    private final boolean brokerRelay;
+    private final Map<String, Long> sessionsPerNode = new ConcurrentHashMap<>();
+    private volatile Handler handler;
+
+    /**
+     * @param localSink   sends a payload to this node's subscribers of a destination
+     * @param brokerRelay true when an external broker already fans broadcasts out to every node
+     */
+    public ClusterService(String nodeId, List<String> nodeIds, ClusterTransport transport,
+                          BiConsumer<String, Object> localSink, boolean brokerRelay) {
+        if (!nodeIds.contains(nodeId)) throw new IllegalArgumentException("Node " + nodeId + " is not in " + nodeIds);
+        this.nodeId = nodeId;
+        this.ring = new ConsistentHashRing(nodeIds);
+        this.singleNode = nodeIds.size() == 1;
+        this.nodeCount = nodeIds.size();
+        this.transport = transport;
+        this.localSink = localSink;
+        this.brokerRelay = brokerRelay;
+    }
+
+    public void start(Handler handler) {
+        this.handler = handler;
+        transport.start(nodeId, this::receive);
+    }
+
+    public void stop() {
+        transport.stop();
+    }
+
+    public String getNodeId() { return nodeId; }
+
+    public int getNodeCount() { return nodeCount; }
+
+    public boolean isLocal(String docId) {
+        return singleNode || ring.ownerOf(docId).equals(nodeId);
+    }
+
+    public String ownerOf(String docId) {
+        return singleNode ? nodeId : ring.ownerOf(docId);
+    }
+
+    // --- Forwarding to the owner ---
+
+    public void forwardEdit(String docId, DocMessage message) {
+        ClusterMessage m = new ClusterMessage(ClusterMessage.Type.EDIT, nodeId);
+        m.setDocId(docId);
+        m.setMessage(message);
+        transport.send(ownerOf(docId), m);
+    }
+
+    public void forwardJoin(String docId, DocMessage message, String sessionId) {
+        ClusterMessage m = new ClusterMessage(ClusterMessage.Type.JOIN, nodeId);
+        m.setDocId(docId);
+        m.setSessionId(sessionId);
+        m.setMessage(message);
+        transport.send(ownerOf(docId), m);
+    }
+
+    public void forwardLeave(String docId, String sessionId) {
+        ClusterMessage m = new ClusterMessage(ClusterMessage.Type.LEAVE, nodeId);
+        m.setDocId(docId);
+        m.setSessionId(sessionId);
+        transport.send(ownerOf(docId), m);
+    }
+
+    // --- Delivery to subscribers ---
+
+    /** Sends to the subscribers of destination on every node. */
+    public void broadcast(String destination, Object payload) {
+        if (singleNode || brokerRelay) {
+            localSink.accept(destination, payload);
+            return;
+        }
+        transport.publish(envelope(ClusterMessage.Type.PUBLISH, destination, payload));
+    }
+
+    /** Sends to the subscribers of destination on one node (null = every node). */
+    public void deliver(String targetNode, String destination, Object payload) {
+        if (targetNode == null) {
+            broadcast(destination, payload);
+        } else if (targetNode.equals(nodeId) || brokerRelay) {
+            localSink.accept(destination, payload);
+        } else {
+            transport.send(targetNode, envelope(ClusterMessage.Type.DELIVER, destination, payload));
+        }
+    }
+
+    private ClusterMessage envelope(ClusterMessage.Type type, String destination, Object payload) {
+        ClusterMessage m = new ClusterMessage(type, nodeId);
+        m.setDestination(destination);
+        if (payload instanceof EditBatch) m.setBatch((EditBatch) payload);
+        else m.setMessage((DocMessage) payload);
+        return m;
+    }
+
+    // --- Presence ---
+
+    /** Publishes how many sessions are connected to this node. */
+    public void updateLocalSessions(long count) {
+        sessionsPerNode.put(nodeId, count);
+        if (singleNode) {
+            handler.onPresenceChanged(count);
+            return;
+        }
+        ClusterMessage m = new ClusterMessage(ClusterMessage.Type.PRESENCE, nodeId);
+        m.setCount(count);
+        transport.publish(m);
+    }
+
+    public long totalSessions() {
+        return sessionsPerNode.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    // --- Inbound ---
+
+    // Session ids are only unique per node
+    private static String sessionKey(ClusterMessage m) {
+        return m.getSessionId() == null ? null : m.getOriginNode() + "/" + m.getSessionId();
+    }
+
+    private void receive(ClusterMessage m) {
+        switch (m.getType()) {
+            case EDIT:
+                handler.onEdit(m.getDocId(), m.getMessage());
+                break;
+            case JOIN:
+                handler.onJoin(m.getDocId(), m.getMessage(), sessionKey(m), m.getOriginNode());
+                break;
+            case LEAVE:
+                handler.onLeave(m.getDocId(), sessionKey(m));
+                break;
+            case DELIVER:
+            case PUBLISH:
+                localSink.accept(m.getDestination(), m.payload());
+                break;
+            case PRESENCE:
+                Long previous = sessionsPerNode.put(m.getOriginNode(), m.getCount());
+                // A node we have not heard from yet (e.g. just started) also needs our count
+                if (previous == null && !m.getOriginNode().equals(nodeId)) {
+                    ClusterMessage reply = new ClusterMessage(ClusterMessage.Type.PRESENCE, nodeId);
+                    reply.setCount(sessionsPerNode.getOrDefault(nodeId, 0L));
+                    transport.send(m.getOriginNode(), reply);
+                }
+                handler.onPresenceChanged(totalSessions());
+                break;
+        }
+    }
+}
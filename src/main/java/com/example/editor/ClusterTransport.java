@@ -0,0 +1,21 @@
+package com.example.editor;
+
+import java.util.function.Consumer;
+
+/**
+ * Node-to-node transport used in clustered mode. Implementations must deliver the messages sent
+ * from one node to another in the order they were sent.
+ */
+public interface ClusterTransport {
+
+    /** Registers this node; every message addressed to it is handed to receiver. */
+    void start(String nodeId, Consumer<ClusterMessage> receiver);
+
+    /** Sends to one node (which may be this node). */
+    void send(String targetNodeId, ClusterMessage message);
+
+    /** Sends to every node, this one included. */
+    void publish(ClusterMessage message);
+
+    void stop();
+}
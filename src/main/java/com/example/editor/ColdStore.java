@@ -0,0 +1,553 @@
+package com.example.editor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Cold tier for documents nobody has edited in a while.
+ *
+ * A background pass moves documents idle for longer than editor.cold.idle-days out of the DB:
+ * their blocks (or legacy content) are compressed into append-only segment files in
+ * editor.cold.dir, the blocks are deleted and the documents row becomes a stub. The stub keeps
+ * title, owner, size, hash and revision, so listings and search are unaffected, plus where the
+ * content went (archive_segment, archive_offset). Segments are memory-mapped for reading.
+ *
+ * Loading an archived document (through the DocumentCache loader) reads it back from its segment.
+ * It stays archived while its content is unchanged; the first snapshot that changes it writes all
+ * of its blocks and clears the stub columns (see SnapshotWriter).
+ *
+ * The pass reserves each document in the cache first, so no load can read a row whose blocks are
+ * being deleted; cached documents are skipped. Sealed segments that are mostly dead (documents
+ * edited since) are compacted by moving their live records to the active segment. Segments are
+ * local files, so archiving only runs on a standalone node.
+ *
+ * Record layout: [int payloadLength][int crc32(payload)][payload]
+ * payload:       [UTF docId][long revision][boolean legacy][int blockCount]
+ *                blockCount x [UTF blockHash][int jsonBytes], then the deflated block JSON (UTF-8, concatenated)
+ */
+@Component
+public class ColdStore {
+
+    private static final Logger log = LoggerFactory.getLogger(ColdStore.class);
+
+    /** Where an archived document's record is. */
+    public static final class Location {
+        private final int segment;
+        private final long offset;
+
+        Location(int segment, long offset) {
+            this.segment = segment;
+            this.offset = offset;
+        }
+
+        public int getSegment() { return segment; }
+        public long getOffset() { return offset; }
+    }
+
+    /** An archived document: its blocks as stored in document_blocks, or its legacy content. */
+    public static final class Content {
+        private final String docId;
+        private final long revision;
+        private final boolean legacy;
+        private final List<String> blockHashes;
+        private final List<String> blocks;
+
+        Content(String docId, long revision, boolean legacy, List<String> blockHashes, List<String> blocks) {
+            this.docId = docId;
+            this.revision = revision;
+            this.legacy = legacy;
+            this.blockHashes = blockHashes;
+            this.blocks = blocks;
+        }
+
+        public String getDocId() { return docId; }
+        public long getRevision() { return revision; }
+        /** True for documents archived before they were ever stored in blocks (one block, the old content column). */
+        public boolean isLegacy() { return legacy; }
+        public List<String> getBlockHashes() { return blockHashes; }
+        public List<String> getBlocks() { return blocks; }
+
+        public Rope toRope() {
+            if (legacy) return Rope.of(DocumentState.parseStoredContent(blocks.get(0)));
+            List<Rope.Chunk> chunks = new ArrayList<>(blocks.size());
+            for (int i = 0; i < blocks.size(); i++) {
+                chunks.add(new Rope.Chunk(Delta.fromJson(blocks.get(i)), blockHashes.get(i), blocks.get(i).length()));
+            }
+            return Rope.ofChunks(chunks);
+        }
+    }
+
+    private static final String SEGMENT_PREFIX = "cold-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    // Anything larger is treated as a corrupt length field
+    private static final int MAX_RECORD_BYTES = 256 * 1024 * 1024;
+    // First pass this long after startup, then every scan-interval
+    private static final long FIRST_PASS_DELAY_MILLIS = 60_000;
+
+    // Rows stored before last_modified existed have it NULL: they are the longest idle of all
+    private static final String IDLE_DOCUMENTS =
+            "SELECT doc_id FROM documents WHERE archive_segment IS NULL AND (last_modified IS NULL OR last_modified < ?) " +
+            "ORDER BY last_modified NULLS FIRST";
+    private static final String ROW = "SELECT revision, content FROM documents WHERE doc_id = ? AND archive_segment IS NULL";
+    private static final String BLOCKS = "SELECT content, content_hash FROM document_blocks WHERE doc_id = ? ORDER BY block_index";
+    private static final String MAKE_STUB =
+            "UPDATE documents SET content = NULL, archive_segment = ?, archive_offset = ?, archived_at = ? " +
+            "WHERE doc_id = ? AND archive_segment IS NULL";
+    private static final String DELETE_BLOCKS = "DELETE FROM document_blocks WHERE doc_id = ?";
+    private static final String IN_SEGMENT = "SELECT doc_id, archive_offset FROM documents WHERE archive_segment = ?";
+    private static final String MOVE =
+            "UPDATE documents SET archive_segment = ?, archive_offset = ? WHERE doc_id = ? AND archive_segment = ? AND archive_offset = ?";
+
+    // One segment file; mapped read-only, and re-mapped when a read goes past the mapping (active segment)
+    private static final class Segment {
+        final int id;
+        final Path path;
+        final FileChannel channel;
+        volatile long size;
+        private MappedByteBuffer map;
+
+        Segment(int id, Path path) throws IOException {
+            this.id = id;
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.size = channel.size();
+        }
+
+        synchronized ByteBuffer view(long offset, int length) throws IOException {
+            if (offset < 0 || offset + length > size) throw new IOException("Cold segment " + id + ": no record at " + offset);
+            if (map == null || offset + length > map.capacity()) map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            ByteBuffer view = map.duplicate();
+            view.limit((int) (offset + length)).position((int) offset);
+            return view.slice();
+        }
+
+        int recordLength(long offset) throws IOException {
+            int payloadLength = view(offset, 4).getInt();
+            if (payloadLength < 0 || payloadLength > MAX_RECORD_BYTES) throw new IOException("Cold segment " + id + ": corrupt record at " + offset);
+            return 8 + payloadLength;
+        }
+    }
+
+    private final String directory;
+    private final long idleDays;
+    private final long scanIntervalMinutes;
+    private final int batchSize;
+    private final long segmentBytes;
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transaction;
+    private final ClusterService clusterService;
+    private final EditorMetrics metrics;
+
+    private Path dir;
+    private final Map<Integer, Segment> segments = new ConcurrentHashMap<>();
+    private volatile Segment active;
+    private DocumentCache cache;
+    private Thread archiverThread;
+    private volatile boolean isRunning = true;
+
+    private final AtomicLong archived = new AtomicLong();
+    private final AtomicLong archivedRawBytes = new AtomicLong();
+    private final AtomicLong archivedBytes = new AtomicLong();
+    private final AtomicLong rehydrated = new AtomicLong();
+    private final AtomicLong moved = new AtomicLong();
+    private final AtomicLong segmentsDeleted = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private volatile long lastPassMillis = -1;
+
+    public ColdStore(@Value("${editor.cold.dir:./data/cold}") String directory,
+                     @Value("${editor.cold.idle-days:90}") long idleDays,
+                     @Value("${editor.cold.scan-interval-minutes:60}") long scanIntervalMinutes,
+                     @Value("${editor.cold.batch-size:100}") int batchSize,
+                     @Value("${editor.cold.segment-bytes:67108864}") long segmentBytes,
+                     JdbcTemplate jdbc, PlatformTransactionManager transactionManager,
+                     ClusterService clusterService, EditorMetrics metrics) {
+        this.directory = directory;
+        this.idleDays = idleDays;
+        this.scanIntervalMinutes = scanIntervalMinutes;
+        this.batchSize = batchSize;
+        this.segmentBytes = Math.min(segmentBytes, Integer.MAX_VALUE - (long) MAX_RECORD_BYTES);
+        this.jdbc = jdbc;
+        this.transaction = transactionManager != null ? new TransactionTemplate(transactionManager) : null;
+        this.clusterService = clusterService;
+        this.metrics = metrics;
+        if (metrics != null) metrics.bindColdStore(this);
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        dir = Paths.get(directory).toAbsolutePath().normalize();
+        Files.createDirectories(dir);
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path path : files.collect(Collectors.toList())) {
+                String name = path.getFileName().toString();
+                if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) continue;
+                int id = Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                segments.put(id, new Segment(id, path));
+            }
+        }
+        int last = segments.keySet().stream().max(Integer::compare).orElse(0);
+        active = last > 0 ? segments.get(last) : newSegment(1);
+    }
+
+    /** Starts the background archiver; documents are reserved in cache while they are moved. */
+    public void start(DocumentCache cache) {
+        this.cache = cache;
+        if (idleDays <= 0) return;
+        if (clusterService.getNodeCount() > 1) {
+            log.info("🧊 Cold storage is node-local: archiving is off in a cluster of {} nodes", clusterService.getNodeCount());
+            return;
+        }
+        archiverThread = new Thread(() -> {
+            long delay = FIRST_PASS_DELAY_MILLIS;
+            while (isRunning) {
+                try {
+                    Thread.sleep(delay);
+                    delay = TimeUnit.MINUTES.toMillis(scanIntervalMinutes);
+                    runPass();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (RuntimeException | IOException e) {
+                    log.error("Cold storage pass failed", e);
+                }
+            }
+        });
+        archiverThread.setName("Editor-Cold-Archiver");
+        archiverThread.setDaemon(true);
+        archiverThread.setPriority(Thread.MIN_PRIORITY);
+        archiverThread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        isRunning = false;
+        if (archiverThread != null) {
+            archiverThread.interrupt();
+            try {
+                archiverThread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (Segment segment : segments.values()) {
+            try {
+                segment.channel.close();
+            } catch (IOException e) {
+                log.warn("Closing cold segment {} failed: {}", segment.id, e.getMessage());
+            }
+        }
+    }
+
+    /** One archive pass followed by segment compaction. */
+    void runPass() throws IOException {
+        long start = System.nanoTime();
+        int count = archiveIdle(Instant.now().minus(Duration.ofDays(idleDays)));
+        int compacted = compact();
+        lastPassMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (count > 0 || compacted > 0) {
+            log.info("🧊 Cold storage pass: {} document(s) archived, {} record(s) moved in {} ms", count, compacted, lastPassMillis);
+        }
+    }
+
+    // --- Archiving ---
+
+    /** Archives every local document last modified before cutoff that is not cached; returns how many. */
+    int archiveIdle(Instant cutoff) throws IOException {
+        List<String> candidates = new ArrayList<>();
+        for (String docId : jdbc.queryForList(IDLE_DOCUMENTS, String.class, Timestamp.from(cutoff))) {
+            if (clusterService.isLocal(docId)) candidates.add(docId);
+        }
+        int count = 0;
+        for (int i = 0; i < candidates.size() && isRunning; i += batchSize) {
+            count += archiveBatch(candidates.subList(i, Math.min(i + batchSize, candidates.size())));
+        }
+        return count;
+    }
+
+    // Segment first (fsynced), then one transaction turning the rows into stubs. A crash in between
+    // leaves an unreferenced record, which compaction drops.
+    private int archiveBatch(List<String> docIds) throws IOException {
+        List<String> reserved = reserve(docIds);
+        try {
+            List<Object[]> stubs = new ArrayList<>();
+            List<Object[]> deletes = new ArrayList<>();
+            Timestamp now = Timestamp.from(Instant.now());
+            long rawBytes = 0;
+            long recordBytes = 0;
+            for (String docId : reserved) {
+                List<Map<String, Object>> rows = jdbc.queryForList(ROW, docId);
+                if (rows.isEmpty()) continue;
+                Number revision = (Number) rows.get(0).get("revision");
+                String content = (String) rows.get(0).get("content");
+                List<String> hashes = new ArrayList<>();
+                List<String> blocks = new ArrayList<>();
+                boolean legacy = content != null;
+                if (legacy) {
+                    hashes.add("");
+                    blocks.add(content);
+                } else {
+                    for (Map<String, Object> block : jdbc.queryForList(BLOCKS, docId)) {
+                        blocks.add((String) block.get("content"));
+                        hashes.add((String) block.get("content_hash"));
+                    }
+                }
+                byte[] record = encode(docId, revision != null ? revision.longValue() : 0, legacy, hashes, blocks);
+                Location location = append(record);
+                for (String block : blocks) rawBytes += block.length();
+                recordBytes += record.length;
+                stubs.add(new Object[]{location.segment, location.offset, now, docId});
+                deletes.add(new Object[]{docId});
+            }
+            if (stubs.isEmpty()) return 0;
+            sync();
+            int[] counts = transaction.execute(status -> {
+                int[] updated = jdbc.batchUpdate(MAKE_STUB, stubs);
+                jdbc.batchUpdate(DELETE_BLOCKS, deletes);
+                return updated;
+            });
+            int count = 0;
+            for (int c : counts) count += c > 0 ? 1 : 0;
+            archived.addAndGet(count);
+            archivedRawBytes.addAndGet(rawBytes);
+            archivedBytes.addAndGet(recordBytes);
+            return count;
+        } finally {
+            release(reserved);
+        }
+    }
+
+    // Documents that are cached or being loaded are left for a later pass
+    private List<String> reserve(List<String> docIds) {
+        List<String> reserved = new ArrayList<>(docIds.size());
+        for (String docId : docIds) {
+            if (cache == null || cache.reserve(docId)) reserved.add(docId);
+            else skipped.incrementAndGet();
+        }
+        return reserved;
+    }
+
+    private void release(List<String> reserved) {
+        if (cache == null) return;
+        for (String docId : reserved) cache.release(docId);
+    }
+
+    // --- Compaction ---
+
+    /** Drops sealed segments nothing points to and moves the live records out of mostly dead ones. */
+    int compact() throws IOException {
+        int movedRecords = 0;
+        List<Segment> sealed = new ArrayList<>(segments.values());
+        sealed.sort(Comparator.comparingInt(s -> s.id));
+        for (Segment segment : sealed) {
+            if (segment == active || !isRunning) continue;
+            List<Map<String, Object>> live = jdbc.queryForList(IN_SEGMENT, segment.id);
+            long liveBytes = 0;
+            for (Map<String, Object> row : live) liveBytes += segment.recordLength(((Number) row.get("archive_offset")).longValue());
+            if (!live.isEmpty() && liveBytes * 2 >= segment.size) continue;
+            for (int i = 0; i < live.size(); i += batchSize) {
+                movedRecords += moveBatch(segment, live.subList(i, Math.min(i + batchSize, live.size())));
+            }
+            if (jdbc.queryForList(IN_SEGMENT, segment.id).isEmpty()) deleteSegment(segment);
+        }
+        return movedRecords;
+    }
+
+    private int moveBatch(Segment from, List<Map<String, Object>> rows) throws IOException {
+        Map<String, Long> offsets = new LinkedHashMap<>();
+        for (Map<String, Object> row : rows) offsets.put((String) row.get("doc_id"), ((Number) row.get("archive_offset")).longValue());
+        List<String> reserved = reserve(new ArrayList<>(offsets.keySet()));
+        try {
+            List<Object[]> moves = new ArrayList<>();
+            for (String docId : reserved) {
+                long offset = offsets.get(docId);
+                ByteBuffer view = from.view(offset, from.recordLength(offset));
+                byte[] record = new byte[view.remaining()];
+                view.get(record);
+                Location location = append(record);
+                moves.add(new Object[]{location.segment, location.offset, docId, from.id, offset});
+            }
+            if (moves.isEmpty()) return 0;
+            sync();
+            int[] counts = transaction.execute(status -> jdbc.batchUpdate(MOVE, moves));
+            int count = 0;
+            for (int c : counts) count += c > 0 ? 1 : 0;
+            moved.addAndGet(count);
+            return count;
+        } finally {
+            release(reserved);
+        }
+    }
+
+    private void deleteSegment(Segment segment) throws IOException {
+        segments.remove(segment.id);
+        segment.channel.close();
+        Files.deleteIfExists(segment.path);
+        segmentsDeleted.incrementAndGet();
+        log.info("🧊 Deleted cold segment {}", segment.path.getFileName());
+    }
+
+    // --- Segment files ---
+
+    private Segment newSegment(int id) throws IOException {
+        Segment segment = new Segment(id, dir.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX)));
+        segments.put(id, segment);
+        return segment;
+    }
+
+    synchronized Location append(byte[] record) throws IOException {
+        if (active.size > 0 && active.size + record.length > segmentBytes) {
+            active.channel.force(false);
+            active = newSegment(active.id + 1);
+        }
+        long offset = active.size;
+        ByteBuffer buf = ByteBuffer.wrap(record);
+        while (buf.hasRemaining()) active.channel.write(buf, offset + buf.position());
+        active.size = offset + record.length;
+        return new Location(active.id, offset);
+    }
+
+    synchronized void sync() throws IOException {
+        active.channel.force(false);
+    }
+
+    static byte[] encode(String docId, long revision, boolean legacy, List<String> blockHashes, List<String> blocks) throws IOException {
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(payload);
+        out.writeUTF(docId);
+        out.writeLong(revision);
+        out.writeBoolean(legacy);
+        out.writeInt(blocks.size());
+        for (int i = 0; i < blocks.size(); i++) {
+            byte[] json = blocks.get(i).getBytes(StandardCharsets.UTF_8);
+            out.writeUTF(blockHashes.get(i) != null ? blockHashes.get(i) : "");
+            out.writeInt(json.length);
+            raw.write(json);
+        }
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(raw.toByteArray());
+            deflater.finish();
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) out.write(buffer, 0, deflater.deflate(buffer));
+        } finally {
+            deflater.end();
+        }
+        out.flush();
+
+        byte[] body = payload.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return ByteBuffer.allocate(8 + body.length).putInt(body.length).putInt((int) crc.getValue()).put(body).array();
+    }
+
+    // --- Reading ---
+
+    /** Reads an archived document back for the cache loader (counted as a rehydration). */
+    public Content rehydrate(int segment, long offset) throws IOException {
+        long start = System.nanoTime();
+        Content content = read(segment, offset);
+        rehydrated.incrementAndGet();
+        if (metrics != null) metrics.record(metrics.coldRehydrate, EditorMetrics.since(start));
+        return content;
+    }
+
+    public Content read(int segmentId, long offset) throws IOException {
+        Segment segment = segments.get(segmentId);
+        if (segment == null) throw new IOException("Cold segment " + segmentId + " is missing");
+        ByteBuffer record = segment.view(offset, segment.recordLength(offset));
+        int payloadLength = record.getInt();
+        int expectedCrc = record.getInt();
+        byte[] body = new byte[payloadLength];
+        record.get(body);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        if ((int) crc.getValue() != expectedCrc) throw new IOException("Cold segment " + segmentId + ": bad checksum at " + offset);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        String docId = in.readUTF();
+        long revision = in.readLong();
+        boolean legacy = in.readBoolean();
+        int count = in.readInt();
+        List<String> hashes = new ArrayList<>(count);
+        int[] lengths = new int[count];
+        int rawLength = 0;
+        for (int i = 0; i < count; i++) {
+            hashes.add(in.readUTF());
+            lengths[i] = in.readInt();
+            rawLength += lengths[i];
+        }
+        int header = payloadLength - in.available();
+
+        byte[] raw = new byte[rawLength];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(body, header, payloadLength - header);
+            int filled = 0;
+            while (filled < rawLength) {
+                int n = inflater.inflate(raw, filled, rawLength - filled);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) throw new IOException("Cold segment " + segmentId + ": truncated record at " + offset);
+                filled += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Cold segment " + segmentId + ": corrupt record at " + offset, e);
+        } finally {
+            inflater.end();
+        }
+
+        List<String> blocks = new ArrayList<>(count);
+        int position = 0;
+        for (int length : lengths) {
+            blocks.add(new String(raw, position, length, StandardCharsets.UTF_8));
+            position += length;
+        }
+        return new Content(docId, revision, legacy, hashes, blocks);
+    }
+
+    // --- Metrics ---
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long raw = archivedRawBytes.get();
+        stats.put("idleDays", idleDays);
+        stats.put("segments", segments.size());
+        stats.put("bytes", segments.values().stream().mapToLong(s -> s.size).sum());
+        stats.put("archived", archived.get());
+        stats.put("archivedRawBytes", raw);
+        stats.put("archivedBytes", archivedBytes.get());
+        stats.put("compressionRatio", raw == 0 ? 0.0 : (double) archivedBytes.get() / raw);
+        stats.put("rehydrated", rehydrated.get());
+        stats.put("skipped", skipped.get());
+        stats.put("moved", moved.get());
+        stats.put("segmentsDeleted", segmentsDeleted.get());
+        stats.put("lastPassMillis", lastPassMillis);
+        return stats;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.editor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Maps document ids onto cluster nodes. Each node is placed on the ring many times (virtual
+ * nodes) so documents spread evenly, and adding or removing a node only moves ~1/N of them.
+ */
+public class ConsistentHashRing {
+
+    private static final int VIRTUAL_NODES = 128;
+
+    private final TreeMap<Long, String> ring = new TreeMap<>();
+
+    public ConsistentHashRing(Collection<String> nodeIds) {
+        if (nodeIds.isEmpty()) throw new IllegalArgumentException("A cluster needs at least one node");
+        for (String nodeId : nodeIds) {
+            for (int v = 0; v < VIRTUAL_NODES; v++) ring.put(hash(nodeId + "#" + v), nodeId);
+        }
+    }
+
+    public String ownerOf(String docId) {
+        Map.Entry<Long, String> e = ring.ceilingEntry(hash(docId));
+        return e != null ? e.getValue() : ring.firstEntry().getValue();
+    }
+
+    // 64-bit FNV-1a followed by a murmur finaliser for better avalanche on short keys
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= (b & 0xff);
+            h *= 0x100000001b3L;
+        }
+        h ^= (h >>> 33);
+        h *= 0xff51afd7ed558ccdL;
+        h ^= (h >>> 33);
+        return h;
+    }
+}
@@ -0,0 +1,438 @@
+package com.example.editor;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.*;
+
+/**
+ * Server-side port of the Quill Delta format (quill-delta 4.x semantics).
+ *
+ * A Delta is a list of insert / retain / delete ops. The same object describes both a whole
+ * document (inserts only) and a change to a document. compose() and transform() follow the
+ * JavaScript implementation exactly, so the browser (which uses Quill.import('delta')) and the
+ * server always agree on the result of an operational transform.
+ *
+ * Deltas are treated as immutable once built: compose/transform always return a new instance.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class Delta {
+
+    static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int INFINITY = Integer.MAX_VALUE;
+
+    private List<Op> ops = new ArrayList<>();
+
+    public Delta() {}
+
+    public Delta(List<Op> ops) {
+        for (Op op : ops) push(op);
+    }
+
+    public List<Op> getOps() { return ops; }
+
+    // Jackson entry point; goes through push() so adjacent ops are merged like in quill-delta
+    public void setOps(List<Op> ops) {
+        this.ops = new ArrayList<>();
+        if (ops != null) for (Op op : ops) push(op);
+    }
+
+    // --- JSON ---
+
+    public static Delta fromJson(String json) {
+        try {
+            return MAPPER.readValue(json, Delta.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid delta: " + e.getOriginalMessage(), e);
+        }
+    }
+
+    public String toJson() {
+        try {
+            return MAPPER.writeValueAsString(this);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // --- Builders ---
+
+    public Delta insert(Object value, Map<String, Object> attributes) {
+        if (value instanceof String && ((String) value).isEmpty()) return this;
+        Op op = new Op();
+        op.insert = value;
+        op.attributes = attributes;
+        return push(op);
+    }
+
+    public Delta insert(Object value) { return insert(value, null); }
+
+    public Delta delete(int length) {
+        if (length <= 0) return this;
+        Op op = new Op();
+        op.delete = length;
+        return push(op);
+    }
+
+    public Delta retain(int length, Map<String, Object> attributes) {
+        if (length <= 0) return this;
+        Op op = new Op();
+        op.retain = length;
+        op.attributes = attributes;
+        return push(op);
+    }
+
+    public Delta retain(int length) { return retain(length, null); }
+
+    public Delta push(Op newOp) {
+        newOp = newOp.copy();
+        int index = ops.size();
+        Op lastOp = index > 0 ? ops.get(index - 1) : null;
+        if (lastOp != null) {
+            if (newOp.delete != null && lastOp.delete != null) {
+                ops.set(index - 1, Op.ofDelete(lastOp.delete + newOp.delete));
+                return this;
+            }
+            // Inserts always go before a trailing delete, so deletes and inserts have a canonical order
+            if (lastOp.delete != null && newOp.insert != null) {
+                index -= 1;
+                lastOp = index > 0 ? ops.get(index - 1) : null;
+                if (lastOp == null) {
+                    ops.add(0, newOp);
+                    return this;
+                }
+            }
+            if (Objects.equals(newOp.attributes, lastOp.attributes)) {
+                if (newOp.insert instanceof String && lastOp.insert instanceof String) {
+                    Op merged = new Op();
+                    merged.insert = lastOp.insert + (String) newOp.insert;
+                    merged.attributes = newOp.attributes;
+                    ops.set(index - 1, merged);
+                    return this;
+                } else if (newOp.retain != null && lastOp.retain != null) {
+                    Op merged = new Op();
+                    merged.retain = lastOp.retain + newOp.retain;
+                    merged.attributes = newOp.attributes;
+                    ops.set(index - 1, merged);
+                    return this;
+                }
+            }
+        }
+        ops.add(index, newOp);
+        return this;
+    }
+
+    /**
+     * Concatenates documents (insert-only deltas) into one, merging text across the seams like
+     * push() would but in a single pass, so joining many pieces of one long text stays linear.
+     */
+    static Delta concat(List<Delta> documents) {
+        Delta result = new Delta();
+        StringBuilder text = null;
+        Map<String, Object> textAttributes = null;
+        for (Delta document : documents) {
+            for (Op op : document.ops) {
+                if (op.insert instanceof String && text != null && Objects.equals(op.attributes, textAttributes)) {
+                    text.append((String) op.insert);
+                    continue;
+                }
+                if (text != null) result.ops.add(textOp(text, textAttributes));
+                text = null;
+                if (op.insert instanceof String) {
+                    text = new StringBuilder((String) op.insert);
+                    textAttributes = op.attributes;
+                } else {
+                    result.ops.add(op);
+                }
+            }
+        }
+        if (text != null) result.ops.add(textOp(text, textAttributes));
+        return result;
+    }
+
+    private static Op textOp(StringBuilder text, Map<String, Object> attributes) {
+        Op op = new Op();
+        op.insert = text.toString();
+        op.attributes = attributes;
+        return op;
+    }
+
+    // Drops a trailing plain retain, which is a no-op
+    public Delta chop() {
+        if (!ops.isEmpty()) {
+            Op last = ops.get(ops.size() - 1);
+            if (last.retain != null && last.attributes == null) ops.remove(ops.size() - 1);
+        }
+        return this;
+    }
+
+    // --- Lengths ---
+
+    /** Length of the document this delta produces (inserts + retains). */
+    @JsonIgnore
+    public int length() {
+        int length = 0;
+        for (Op op : ops) if (op.delete == null) length += op.length();
+        return length;
+    }
+
+    /** Length of the document this delta can be applied to (retains + deletes). */
+    @JsonIgnore
+    public int baseLength() {
+        int length = 0;
+        for (Op op : ops) if (op.insert == null) length += op.length();
+        return length;
+    }
+
+    @JsonIgnore
+    public boolean isDocument() {
+        for (Op op : ops) if (op.insert == null) return false;
+        return true;
+    }
+
+    // --- OT ---
+
+    /** Returns a delta equivalent to applying this, then other. */
+    public Delta compose(Delta other) {
+        OpIterator thisIter = new OpIterator(this.ops);
+        OpIterator otherIter = new OpIterator(other.ops);
+        List<Op> leading = new ArrayList<>();
+        Op firstOther = otherIter.peek();
+        if (firstOther != null && firstOther.retain != null && firstOther.attributes == null) {
+            int firstLeft = firstOther.retain;
+            while (thisIter.peekType() == Type.INSERT && thisIter.peekLength() <= firstLeft) {
+                firstLeft -= thisIter.peekLength();
+                leading.add(thisIter.next());
+            }
+            if (firstOther.retain - firstLeft > 0) otherIter.next(firstOther.retain - firstLeft);
+        }
+        Delta delta = new Delta(leading);
+        while (thisIter.hasNext() || otherIter.hasNext()) {
+            if (otherIter.peekType() == Type.INSERT) {
+                delta.push(otherIter.next());
+            } else if (thisIter.peekType() == Type.DELETE) {
+                delta.push(thisIter.next());
+            } else {
+                int length = Math.min(thisIter.peekLength(), otherIter.peekLength());
+                Op thisOp = thisIter.next(length);
+                Op otherOp = otherIter.next(length);
+                if (otherOp.retain != null) {
+                    Op newOp = new Op();
+                    if (thisOp.retain != null) newOp.retain = length;
+                    else newOp.insert = thisOp.insert;
+                    newOp.attributes = composeAttributes(thisOp.attributes, otherOp.attributes, thisOp.retain != null);
+                    delta.push(newOp);
+                    // Nothing left to change: copy the rest of this delta as-is
+                    if (!otherIter.hasNext() && delta.ops.get(delta.ops.size() - 1).equals(newOp)) {
+                        for (Op rest : thisIter.rest()) delta.push(rest);
+                        return delta.chop();
+                    }
+                } else if (otherOp.delete != null && thisOp.retain != null) {
+                    delta.push(otherOp);
+                }
+                // otherOp.delete on an insert: the two cancel out
+            }
+        }
+        return delta.chop();
+    }
+
+    /**
+     * Transforms other against this delta. Both deltas were made against the same document.
+     * priority == true means this delta happened first (its inserts win ties).
+     */
+    public Delta transform(Delta other, boolean priority) {
+        OpIterator thisIter = new OpIterator(this.ops);
+        OpIterator otherIter = new OpIterator(other.ops);
+        Delta delta = new Delta();
+        while (thisIter.hasNext() || otherIter.hasNext()) {
+            if (thisIter.peekType() == Type.INSERT && (priority || otherIter.peekType() != Type.INSERT)) {
+                delta.retain(thisIter.next().length());
+            } else if (otherIter.peekType() == Type.INSERT) {
+                delta.push(otherIter.next());
+            } else {
+                int length = Math.min(thisIter.peekLength(), otherIter.peekLength());
+                Op thisOp = thisIter.next(length);
+                Op otherOp = otherIter.next(length);
+                if (thisOp.delete != null) {
+                    // Our delete makes their op redundant
+                    continue;
+                } else if (otherOp.delete != null) {
+                    delta.push(otherOp);
+                } else {
+                    delta.retain(length, transformAttributes(thisOp.attributes, otherOp.attributes, priority));
+                }
+            }
+        }
+        return delta.chop();
+    }
+
+    static Map<String, Object> composeAttributes(Map<String, Object> a, Map<String, Object> b, boolean keepNull) {
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        if (b != null) {
+            for (Map.Entry<String, Object> e : b.entrySet()) {
+                if (keepNull || e.getValue() != null) attributes.put(e.getKey(), e.getValue());
+            }
+        }
+        if (a != null) {
+            for (Map.Entry<String, Object> e : a.entrySet()) {
+                if (b == null || !b.containsKey(e.getKey())) attributes.put(e.getKey(), e.getValue());
+            }
+        }
+        return attributes.isEmpty() ? null : attributes;
+    }
+
+    static Map<String, Object> transformAttributes(Map<String, Object> a, Map<String, Object> b, boolean priority) {
+        if (a == null) return b;
+        if (b == null) return null;
+        if (!priority) return b;
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> e : b.entrySet()) {
+            if (!a.containsKey(e.getKey())) attributes.put(e.getKey(), e.getValue());
+        }
+        return attributes.isEmpty() ? null : attributes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Delta && ops.equals(((Delta) o).ops);
+    }
+
+    @Override
+    public int hashCode() { return ops.hashCode(); }
+
+    @Override
+    public String toString() { return toJson(); }
+
+    // --- Op ---
+
+    enum Type { INSERT, RETAIN, DELETE }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Op {
+        private Object insert;   // String for text, Map for embeds (image, video, ...)
+        private Integer retain;
+        private Integer delete;
+        private Map<String, Object> attributes;
+
+        public Op() {}
+
+        static Op ofDelete(int length) {
+            Op op = new Op();
+            op.delete = length;
+            return op;
+        }
+
+        Op copy() {
+            Op op = new Op();
+            op.insert = insert;
+            op.retain = retain;
+            op.delete = delete;
+            op.attributes = attributes == null || attributes.isEmpty() ? null : new LinkedHashMap<>(attributes);
+            return op;
+        }
+
+        int length() {
+            if (delete != null) return delete;
+            if (retain != null) return retain;
+            return insert instanceof String ? ((String) insert).length() : 1;
+        }
+
+        Type type() {
+            if (delete != null) return Type.DELETE;
+            if (retain != null) return Type.RETAIN;
+            return Type.INSERT;
+        }
+
+        public Object getInsert() { return insert; }
+        public void setInsert(Object insert) { this.insert = insert; }
+        public Integer getRetain() { return retain; }
+        public void setRetain(Integer retain) { this.retain = retain; }
+        public Integer getDelete() { return delete; }
+        public void setDelete(Integer delete) { this.delete = delete; }
+        public Map<String, Object> getAttributes() { return attributes; }
+        // Empty attribute maps are normalised away so op equality matches quill-delta
+        public void setAttributes(Map<String, Object> attributes) {
+            this.attributes = attributes == null || attributes.isEmpty() ? null : attributes;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Op)) return false;
+            Op op = (Op) o;
+            return Objects.equals(insert, op.insert) && Objects.equals(retain, op.retain)
+                    && Objects.equals(delete, op.delete) && Objects.equals(attributes, op.attributes);
+        }
+
+        @Override
+        public int hashCode() { return Objects.hash(insert, retain, delete, attributes); }
+    }
+
+    // --- Iterator (mirrors quill-delta's OpIterator) ---
+
+    static class OpIterator {
+        private final List<Op> ops;
+        private int index = 0;
+        private int offset = 0;
+
+        OpIterator(List<Op> ops) { this.ops = ops; }
+
+        boolean hasNext() { return peekLength() < INFINITY; }
+
+        Op next() { return next(INFINITY); }
+
+        Op next(int length) {
+            if (index >= ops.size()) {
+                Op op = new Op();
+                op.retain = INFINITY;
+                return op;
+            }
+            Op nextOp = ops.get(index);
+            int offset = this.offset;
+            int opLength = nextOp.length();
+            if (length >= opLength - offset) {
+                length = opLength - offset;
+                index += 1;
+                this.offset = 0;
+            } else {
+                this.offset += length;
+            }
+            if (nextOp.delete != null) return Op.ofDelete(length);
+            Op retOp = new Op();
+            retOp.attributes = nextOp.attributes;
+            if (nextOp.retain != null) {
+                retOp.retain = length;
+            } else if (nextOp.insert instanceof String) {
+                retOp.insert = ((String) nextOp.insert).substring(offset, offset + length);
+            } else {
+                retOp.insert = nextOp.insert;
+            }
+            return retOp;
+        }
+
+        Op peek() { return index < ops.size() ? ops.get(index) : null; }
+
+        int peekLength() {
+            return index < ops.size() ? ops.get(index).length() - offset : INFINITY;
+        }
+
+        Type peekType() {
+            return index < ops.size() ? ops.get(index).type() : Type.RETAIN;
+        }
+
+        List<Op> rest() {
+            if (!hasNext()) return Collections.emptyList();
+            if (offset == 0) return new ArrayList<>(ops.subList(index, ops.size()));
+            int savedOffset = offset;
+            int savedIndex = index;
+            Op first = next();
+            List<Op> rest = new ArrayList<>();
+            rest.add(first);
+            rest.addAll(ops.subList(index, ops.size()));
+            this.offset = savedOffset;
+            this.index = savedIndex;
+            return rest;
+        }
+    }
+}
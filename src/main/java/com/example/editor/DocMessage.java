@@ -5,6 +5,13 @@ public class DocMessage {
     private String sender;
     private String docId;
     private String title;
+    // Document revision: the base revision of an incoming edit, or the resulting revision of a broadcast
+    private Long revision;
+    // Streamed join snapshots: this message is part `chunk` (0-based) of `chunks`; null otherwise
+    private Integer chunk;
+    private Integer chunks;
+    // Edits: the sender's sequence number (1, 2, 3... per sender; a resent edit keeps its seq). Echoed in the edit's ack
+    private Long seq;
 
     public DocMessage() {}
 
@@ -32,4 +39,12 @@ public class DocMessage {
 
     public String getTitle() { return title; }
     public void setTitle(String title) { this.title = title; }
+    public Long getRevision() { return revision; }
+    public void setRevision(Long revision) { this.revision = revision; }
+    public Integer getChunk() { return chunk; }
+    public void setChunk(Integer chunk) { this.chunk = chunk; }
+    public Integer getChunks() { return chunks; }
+    public void setChunks(Integer chunks) { this.chunks = chunks; }
+    public Long getSeq() { return seq; }
+    public void setSeq(Long seq) { this.seq = seq; }
 }
\ No newline at end of file
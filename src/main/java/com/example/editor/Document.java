@@ -1,9 +1,17 @@
 package com.example.editor;
 
 import javax.persistence.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Base64;
 
 @Entity
-@Table(name = "documents")
+@Table(name = "documents", indexes = {
+        @Index(name = "idx_documents_owner", columnList = "owner"),
+        @Index(name = "idx_documents_last_modified", columnList = "lastModified"),
+        @Index(name = "idx_documents_archive_segment", columnList = "archiveSegment")})
 public class Document {
     @Id
     private String docId;
@@ -15,12 +23,26 @@ public class Document {
 
     private String owner;
 
+    // Revision of the content stored in this row; the operation log holds anything newer
+    private Long revision;
+
+    // Kept next to the content so listings never have to read the @Lob column
+    private Long contentLength;
+    private Instant lastModified;
+    // SHA-256 of the content, so a snapshot of unchanged text does not rewrite the @Lob
+    private String contentHash;
+
+    // Set while the content is archived in a cold segment (see ColdStore); no content or blocks in the DB then
+    private Integer archiveSegment;
+    private Long archiveOffset;
+    private Instant archivedAt;
+
     public Document() {}
     public Document(String docId, String title, String content, String owner) {
         this.docId = docId;
         this.title = title;
-        this.content = content;
         this.owner = owner;
+        setContent(content);
     }
 
     // Getters and Setters
@@ -29,7 +51,31 @@ public class Document {
     public String getTitle() { return title; }
     public void setTitle(String title) { this.title = title; }
     public String getContent() { return content; }
-    public void setContent(String content) { this.content = content; }
+    public void setContent(String content) {
+        this.content = content;
+        this.contentLength = content == null ? 0L : (long) content.length();
+        this.contentHash = hashContent(content);
+        this.lastModified = Instant.now();
+    }
     public String getOwner() { return owner; }
     public void setOwner(String owner) { this.owner = owner; }
+    public Long getRevision() { return revision; }
+    public void setRevision(Long revision) { this.revision = revision; }
+    public Long getContentLength() { return contentLength; }
+    public Instant getLastModified() { return lastModified; }
+    public String getContentHash() { return contentHash; }
+    public Integer getArchiveSegment() { return archiveSegment; }
+    public Long getArchiveOffset() { return archiveOffset; }
+    public Instant getArchivedAt() { return archivedAt; }
+    public boolean isArchived() { return archiveSegment != null; }
+
+    public static String hashContent(String content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest((content == null ? "" : content).getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,46 @@
+package com.example.editor;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Objects;
+
+// One chunk of a document's content (see Rope); documents.content is NULL once a document is stored in blocks
+@Entity
+@Table(name = "document_blocks", indexes = @Index(name = "idx_document_blocks_doc", columnList = "docId, blockIndex"))
+@IdClass(DocumentBlock.Key.class)
+public class DocumentBlock {
+    @Id
+    private String docId;
+
+    @Id
+    private Integer blockIndex;
+
+    // A delta holding only this block's part of the document
+    @Lob
+    private String content;
+
+    private String contentHash;
+
+    public DocumentBlock() {}
+
+    // Getters
+    public String getDocId() { return docId; }
+    public Integer getBlockIndex() { return blockIndex; }
+    public String getContent() { return content; }
+    public String getContentHash() { return contentHash; }
+
+    public static class Key implements Serializable {
+        private String docId;
+        private Integer blockIndex;
+
+        public Key() {}
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && Objects.equals(docId, ((Key) o).docId) && Objects.equals(blockIndex, ((Key) o).blockIndex);
+        }
+
+        @Override
+        public int hashCode() { return Objects.hash(docId, blockIndex); }
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.editor;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+interface DocumentBlockRepository extends JpaRepository<DocumentBlock, DocumentBlock.Key> {
+    List<DocumentBlock> findByDocIdOrderByBlockIndex(String docId);
+}
@@ -0,0 +1,327 @@
+package com.example.editor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Bounded in-memory cache of open documents (replaces the unbounded documentStates map).
+ *
+ * - Bounded by estimated bytes, not entry count: one 5 MB document weighs as much as thousands of notes.
+ * - LRU eviction, run by a background thread whenever the cache goes over budget. It evicts down to
+ *   90% of the budget so it does not run again on the very next edit.
+ * - Dirty documents are written back (full snapshot) before they are evicted.
+ * - Documents with active subscribers are pinned and never evicted.
+ * - Misses load lazily through the loader on the calling thread; concurrent misses for the same
+ *   document are coalesced into one load.
+ *
+ * A state is only ever edited through withState(), which runs under the state's own monitor and
+ * retries when it raced with an eviction, so an edit can never land on an evicted copy.
+ */
+public class DocumentCache {
+
+    private static final Logger log = LoggerFactory.getLogger(DocumentCache.class);
+
+    private static final class Entry {
+        final DocumentState state;
+        volatile long lastAccess = System.nanoTime();
+        volatile long weight;
+        final AtomicInteger pins = new AtomicInteger();
+
+        Entry(DocumentState state) {
+            this.state = state;
+            this.weight = state.snapshot().getBytes();
+        }
+    }
+
+    private static final class Candidate {
+        final String docId;
+        final Entry entry;
+        final long lastAccess;
+
+        Candidate(String docId, Entry entry) {
+            this.docId = docId;
+            this.entry = entry;
+            this.lastAccess = entry.lastAccess;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final long maxBytes;
+    private final Function<String, DocumentState> loader;
+    private final Consumer<DocumentState> writeBack;
+
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong writeBacks = new AtomicLong();
+    private final AtomicLong coalescedLoads = new AtomicLong();
+
+    // Cold loads in progress, so concurrent misses for one document share a single load
+    private final ConcurrentHashMap<String, CompletableFuture<Entry>> loading = new ConcurrentHashMap<>();
+
+    private final Semaphore overBudget = new Semaphore(0);
+    private Thread evictorThread;
+    private volatile boolean isRunning = true;
+
+    public DocumentCache(long maxBytes, Function<String, DocumentState> loader, Consumer<DocumentState> writeBack) {
+        this.maxBytes = maxBytes;
+        this.loader = loader;
+        this.writeBack = writeBack;
+    }
+
+    public void start() {
+        evictorThread = new Thread(() -> {
+            while (isRunning) {
+                try {
+                    overBudget.tryAcquire(1, TimeUnit.SECONDS);
+                    overBudget.drainPermits();
+                    evictIfNeeded();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (RuntimeException e) {
+                    log.error("Cache eviction failed", e);
+                }
+            }
+        });
+        evictorThread.setName("Editor-Cache-Evictor");
+        evictorThread.setDaemon(true);
+        evictorThread.setPriority(Thread.MIN_PRIORITY);
+        evictorThread.start();
+    }
+
+    public void stop() {
+        isRunning = false;
+        if (evictorThread != null) evictorThread.interrupt();
+    }
+
+    // --- Lookup ---
+
+    /** Returns the cached state, loading it on a miss. */
+    public DocumentState get(String docId) {
+        return entry(docId).state;
+    }
+
+    /** Returns the cached state, or null without loading. */
+    public DocumentState getIfPresent(String docId) {
+        Entry e = entries.get(docId);
+        if (e == null) return null;
+        e.lastAccess = System.nanoTime();
+        return e.state;
+    }
+
+    /** Adds an already built state (e.g. recovered from the operation log), replacing any cached one. */
+    public void put(DocumentState state) {
+        Entry e = new Entry(state);
+        Entry old = entries.put(state.getDocId(), e);
+        totalBytes.addAndGet(e.weight - (old != null ? old.weight : 0));
+        signalIfOverBudget();
+    }
+
+    /** Adds state unless the document is already cached; returns whichever state is cached. */
+    public DocumentState putIfAbsent(DocumentState state) {
+        Entry e = new Entry(state);
+        Entry raced = entries.putIfAbsent(state.getDocId(), e);
+        if (raced != null) return raced.state;
+        totalBytes.addAndGet(e.weight);
+        signalIfOverBudget();
+        return state;
+    }
+
+    /**
+     * Runs action on the live state of docId under the state's monitor. If the state was evicted
+     * between the lookup and the lock, the document is looked up (reloaded) again.
+     */
+    public <T> T withState(String docId, Function<DocumentState, T> action) {
+        while (true) {
+            Entry e = entry(docId);
+            synchronized (e.state) {
+                if (e.state.isRetired()) continue;
+                T result = action.apply(e.state);
+                long weight = e.state.snapshot().getBytes();
+                totalBytes.addAndGet(weight - e.weight);
+                e.weight = weight;
+                signalIfOverBudget();
+                return result;
+            }
+        }
+    }
+
+    private Entry entry(String docId) {
+        while (true) {
+            Entry e = entries.get(docId);
+            if (e != null) {
+                hits.incrementAndGet();
+                e.lastAccess = System.nanoTime();
+                return e;
+            }
+
+            // Cold load. Concurrent callers for the same document wait for the first one's load,
+            // so N simultaneous joiners cause a single DB read.
+            CompletableFuture<Entry> mine = new CompletableFuture<>();
+            CompletableFuture<Entry> inFlight = loading.putIfAbsent(docId, mine);
+            if (inFlight == null) return load(docId, mine);
+            Entry loaded;
+            try {
+                loaded = inFlight.join();
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof RuntimeException) throw (RuntimeException) ex.getCause();
+                throw ex;
+            }
+            // null: the document was reserved, not loaded; look it up again
+            if (loaded != null) {
+                coalescedLoads.incrementAndGet();
+                return loaded;
+            }
+        }
+    }
+
+    private Entry load(String docId, CompletableFuture<Entry> mine) {
+        try {
+            // Another loader may have finished between our lookup and putIfAbsent
+            Entry e = entries.get(docId);
+            if (e == null) {
+                misses.incrementAndGet();
+                Entry loaded = new Entry(loader.apply(docId));
+                Entry raced = entries.putIfAbsent(docId, loaded);
+                if (raced == null) {
+                    totalBytes.addAndGet(loaded.weight);
+                    signalIfOverBudget();
+                    e = loaded;
+                } else {
+                    e = raced;
+                }
+            }
+            mine.complete(e);
+            return e;
+        } catch (RuntimeException ex) {
+            mine.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            loading.remove(docId, mine);
+        }
+    }
+
+    /**
+     * Keeps docId from being loaded until release(docId), for work on its stored copy (see
+     * ColdStore). Loads started meanwhile wait. Returns false, reserving nothing, when the
+     * document is cached or being loaded.
+     */
+    public boolean reserve(String docId) {
+        if (entries.containsKey(docId)) return false;
+        CompletableFuture<Entry> reservation = new CompletableFuture<>();
+        if (loading.putIfAbsent(docId, reservation) != null) return false;
+        // A load may have finished between the lookup and putIfAbsent
+        if (entries.containsKey(docId)) {
+            loading.remove(docId, reservation);
+            reservation.complete(null);
+            return false;
+        }
+        return true;
+    }
+
+    public void release(String docId) {
+        CompletableFuture<Entry> reservation = loading.remove(docId);
+        if (reservation != null) reservation.complete(null);
+    }
+
+    // --- Pinning ---
+
+    /** Loads docId if needed and pins it so it cannot be evicted while someone is subscribed. */
+    public DocumentState pin(String docId) {
+        while (true) {
+            Entry e = entry(docId);
+            synchronized (e.state) {
+                if (e.state.isRetired()) continue;
+                e.pins.incrementAndGet();
+                return e.state;
+            }
+        }
+    }
+
+    public void unpin(String docId) {
+        Entry e = entries.get(docId);
+        if (e != null) e.pins.updateAndGet(p -> Math.max(0, p - 1));
+    }
+
+    // --- Eviction ---
+
+    private void signalIfOverBudget() {
+        if (totalBytes.get() > maxBytes) overBudget.release();
+    }
+
+    void evictIfNeeded() {
+        if (totalBytes.get() <= maxBytes) return;
+        long target = maxBytes * 9 / 10;
+
+        // Copy the access times first: they keep changing while we sort
+        List<Candidate> candidates = new ArrayList<>();
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            if (e.getValue().pins.get() == 0) candidates.add(new Candidate(e.getKey(), e.getValue()));
+        }
+        candidates.sort(Comparator.comparingLong(c -> c.lastAccess));
+
+        for (Candidate candidate : candidates) {
+            if (totalBytes.get() <= target) break;
+            String docId = candidate.docId;
+            Entry e = candidate.entry;
+            DocumentState state = e.state;
+
+            // Write back outside the monitor so the lane is not blocked on the DB
+            if (state.isDirty()) {
+                writeBack.accept(state);
+                writeBacks.incrementAndGet();
+            }
+            synchronized (state) {
+                // Edited or pinned while we were writing back: keep it for now
+                if (state.isDirty() || e.pins.get() > 0) continue;
+                state.retire();
+                if (entries.remove(docId, e)) {
+                    totalBytes.addAndGet(-e.weight);
+                    evictions.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    // --- Metrics ---
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long h = hits.get();
+        long m = misses.get();
+        stats.put("entries", entries.size());
+        stats.put("bytes", totalBytes.get());
+        stats.put("maxBytes", maxBytes);
+        stats.put("pinned", entries.values().stream().filter(e -> e.pins.get() > 0).count());
+        stats.put("hits", h);
+        stats.put("misses", m);
+        stats.put("coalescedLoads", coalescedLoads.get());
+        stats.put("hitRatio", h + m == 0 ? 0.0 : (double) h / (h + m));
+        stats.put("evictions", evictions.get());
+        stats.put("writeBacks", writeBacks.get());
+        return stats;
+    }
+
+    public int size() { return entries.size(); }
+
+    public long bytes() { return totalBytes.get(); }
+
+    /** Point-in-time view of the cached states (for shutdown snapshots). */
+    public Collection<DocumentState> states() {
+        List<DocumentState> states = new ArrayList<>();
+        for (Entry e : entries.values()) states.add(e.state);
+        return states;
+    }
+}
@@ -1,10 +1,32 @@
 package com.example.editor;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
 import java.util.List;
 
 
 interface DocumentRepository extends JpaRepository<Document, String> {
     List<Document> findByOwner(String owner);
     List<Document> findAll();
-}
\ No newline at end of file
+
+    // --- Listing (projection only, the content column is never read) ---
+
+    @Query(value = "select d.docId as docId, d.title as title, d.owner as owner, d.contentLength as size, d.lastModified as lastModified " +
+                   "from Document d where (:owner is null or d.owner = :owner)",
+           countQuery = "select count(d) from Document d where (:owner is null or d.owner = :owner)")
+    Page<DocumentSummary> findSummaries(@Param("owner") String owner, Pageable pageable);
+
+    // Cheap "version" of a listing, used for its ETag: changes whenever a document is added or saved
+    interface ListingVersion {
+        long getCount();
+        Instant getLastModified();
+    }
+
+    @Query("select count(d) as count, max(d.lastModified) as lastModified from Document d where (:owner is null or d.owner = :owner)")
+    ListingVersion findListingVersion(@Param("owner") String owner);
+}
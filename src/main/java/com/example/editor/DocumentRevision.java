@@ -0,0 +1,48 @@
+package com.example.editor;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Objects;
+
+// One revision of a document's history (see RevisionStore): the delta that produced it and, every
+// few revisions, the whole document at that revision
+@Entity
+@Table(name = "document_revisions")
+@IdClass(DocumentRevision.Key.class)
+public class DocumentRevision {
+    @Id
+    private String docId;
+
+    @Id
+    private Long revision;
+
+    // NULL for anchors and for compacted revisions, which only keep their snapshot
+    @Lob
+    private String delta;
+
+    @Lob
+    private String snapshot;
+
+    public DocumentRevision() {}
+
+    // Getters
+    public String getDocId() { return docId; }
+    public Long getRevision() { return revision; }
+    public String getDelta() { return delta; }
+    public String getSnapshot() { return snapshot; }
+
+    public static class Key implements Serializable {
+        private String docId;
+        private Long revision;
+
+        public Key() {}
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && Objects.equals(docId, ((Key) o).docId) && Objects.equals(revision, ((Key) o).revision);
+        }
+
+        @Override
+        public int hashCode() { return Objects.hash(docId, revision); }
+    }
+}
@@ -0,0 +1,309 @@
+package com.example.editor;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Canonical, server-side state of one open document: its content as a Quill delta plus a revision
+ * number that increases by one for every applied edit.
+ *
+ * Only the lane that owns the document (see EditPipeline) calls apply(), so writes never race.
+ * Readers (joins, backups) take the immutable Snapshot (content + title + revision) published through
+ * a volatile field; they never take a lock and never block the writer.
+ */
+public class DocumentState {
+
+    /** Immutable view of the document at one revision: everything a joining client needs. */
+    public static final class Snapshot {
+        private final Rope content;
+        private final long revision;
+        private final String title;
+
+        Snapshot(Rope content, long revision, String title) {
+            this.content = content;
+            this.revision = revision;
+            this.title = title;
+        }
+
+        /** The whole document as one delta; built on each call, so not for the edit path. */
+        public Delta getContent() { return content.toDelta(); }
+        public Rope getRope() { return content; }
+        public long getRevision() { return revision; }
+        public String getTitle() { return title; }
+        /** Approximate heap footprint of the content, used to bound the document cache. */
+        public long getBytes() { return content.bytes(); }
+    }
+
+    /**
+     * Result of applying a client edit: the delta as it was actually applied, and its new revision.
+     * For a duplicate (an edit whose seq was already applied) the delta is null and the revision is
+     * the one the first copy produced, or -1 when that is no longer known.
+     */
+    public static final class Applied {
+        private final Delta delta;
+        private final long revision;
+
+        Applied(Delta delta, long revision) {
+            this.delta = delta;
+            this.revision = revision;
+        }
+
+        public Delta getDelta() { return delta; }
+        public long getRevision() { return revision; }
+        public boolean isDuplicate() { return delta == null; }
+    }
+
+    // Most clients remembered per document for duplicate detection; the least recently active go first
+    static final int MAX_CLIENTS = 1024;
+
+    private final String docId;
+    private volatile Snapshot current;
+
+    // Ring buffer of the last N applied (already transformed) deltas; history[rev % N] is the delta
+    // that produced revision rev. Edits based on a revision older than the ring cannot be transformed.
+    private final Delta[] history;
+    // Who sent each delta in the ring (null for edits replayed from the operation log)
+    private final String[] historySenders;
+
+    // Applied edit seqs of each client (by sender) editing this document; written by the lane under
+    // this object's monitor, like the content
+    private final Map<String, SequenceWindow> clients = new LinkedHashMap<String, SequenceWindow>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SequenceWindow> eldest) {
+            return size() > MAX_CLIENTS;
+        }
+    };
+
+    // Set under this object's monitor when the cache evicts the document; a retired state must not be edited
+    private boolean retired = false;
+
+    // Serialises snapshot writes of this document (backup thread vs. cache eviction) so the DB
+    // never goes back to an older revision. A Lock rather than a monitor: it is held across JDBC
+    // calls, which may run on virtual threads (IoExecutor), and a virtual thread blocked inside
+    // synchronized pins its carrier
+    final Lock persistLock = new ReentrantLock();
+
+    // Snapshot bookkeeping, written by the backup thread
+    private volatile long persistedRevision;
+    // Content hash of the row and hashes of its blocks as last written (null = unknown, so the
+    // next snapshot writes every block)
+    private volatile String persistedContentHash;
+    private volatile List<String> persistedBlockHashes;
+    private volatile long lastSnapshotMillis = System.currentTimeMillis();
+    // When the oldest edit not yet in a snapshot was applied (0 = clean); for the save lag metric
+    private volatile long dirtySinceMillis;
+    // Highest revision whose operation log append failed (-1 = none): only a snapshot makes it durable
+    private volatile long unloggedRevision = -1;
+
+    // Revision history bookkeeping (see RevisionStore): the last revision whose delta is stored there,
+    // with its content (which shares every untouched chunk with the current content)
+    private volatile Snapshot recorded;
+    // Whether the history has a snapshot to rebuild recordedRevision from; false until the first write
+    private volatile boolean historyAnchored;
+
+    public DocumentState(String docId, String title, Delta content, long revision, int historySize) {
+        this(docId, title, Rope.of(content), revision, historySize);
+    }
+
+    public DocumentState(String docId, String title, Rope content, long revision, int historySize) {
+        this.docId = docId;
+        this.current = new Snapshot(content, revision, title);
+        this.history = new Delta[historySize];
+        this.historySenders = new String[historySize];
+        this.persistedRevision = revision;
+        this.recorded = current;
+    }
+
+    public String getDocId() { return docId; }
+
+    public Snapshot snapshot() { return current; }
+
+    public long getRevision() { return current.revision; }
+
+    public boolean isDirty() { return current.revision != persistedRevision; }
+
+    synchronized boolean isRetired() { return retired; }
+
+    synchronized void retire() { retired = true; }
+
+    public long getPersistedRevision() { return persistedRevision; }
+
+    public String getPersistedContentHash() { return persistedContentHash; }
+
+    public List<String> getPersistedBlockHashes() { return persistedBlockHashes; }
+
+    public long getLastSnapshotMillis() { return lastSnapshotMillis; }
+
+    public long getDirtySinceMillis() { return dirtySinceMillis; }
+
+    /** Records that the edit at revision is applied but not in the operation log. Lane only. */
+    public void markUnlogged(long revision) {
+        if (revision > unloggedRevision) unloggedRevision = revision;
+    }
+
+    /** Whether an edit that never reached the operation log is not yet in a snapshot either. */
+    public boolean hasUnloggedEdits() { return unloggedRevision > persistedRevision; }
+
+    public void markPersisted(long revision, String contentHash, List<String> blockHashes) {
+        this.persistedContentHash = contentHash;
+        this.persistedBlockHashes = blockHashes;
+        markPersisted(revision);
+    }
+
+    public void markPersisted(long revision) {
+        long now = System.currentTimeMillis();
+        this.persistedRevision = revision;
+        this.lastSnapshotMillis = now;
+        // Edits that landed while the snapshot was written are still dirty; count them from now
+        this.dirtySinceMillis = revision == current.revision ? 0 : now;
+    }
+
+    public Snapshot getRecorded() { return recorded; }
+
+    public boolean isHistoryAnchored() { return historyAnchored; }
+
+    public void markRecorded(Snapshot snapshot) {
+        this.recorded = snapshot;
+        this.historyAnchored = true;
+    }
+
+    /**
+     * The deltas that produced revisions from + 1 to to, from the history ring; null when some of
+     * them are no longer (or not yet) in it. Safe off the lane: the ring keeps one slot of slack for
+     * the revision being written.
+     */
+    public List<Delta> historyBetween(long from, long to) {
+        long newest = current.revision;
+        if (from < 0 || to > newest || from > to || newest - from >= history.length) return null;
+        List<Delta> deltas = new ArrayList<>((int) (to - from));
+        for (long rev = from + 1; rev <= to; rev++) {
+            Delta delta = history[(int) (rev % history.length)];
+            if (delta == null) return null;
+            deltas.add(delta);
+        }
+        // The ring slots may have been reused while they were read. apply() fills the slot of the next
+        // revision before publishing it, so the slot of from + 1 is only safe while the newest revision
+        // is less than a full ring ahead: one slot of slack
+        return current.revision - from >= history.length ? null : deltas;
+    }
+
+    /**
+     * The senders of revisions from + 1 to to, read like historyBetween; null when the ring no
+     * longer holds them all. Unknown senders are null entries.
+     */
+    public List<String> sendersBetween(long from, long to) {
+        long newest = current.revision;
+        if (from < 0 || to > newest || from > to || newest - from >= history.length) return null;
+        List<String> senders = new ArrayList<>((int) (to - from));
+        for (long rev = from + 1; rev <= to; rev++) senders.add(historySenders[(int) (rev % history.length)]);
+        return current.revision - from >= history.length ? null : senders;
+    }
+
+    /** The content at a revision not yet in the RevisionStore, or null when it is out of reach. */
+    public Delta contentAt(long revision) {
+        Snapshot base = recorded;
+        List<Delta> deltas = revision < base.revision ? null : historyBetween(base.revision, revision);
+        if (deltas == null) return null;
+        Rope content = base.content;
+        for (Delta delta : deltas) content = content.compose(delta);
+        return content.toDelta();
+    }
+
+    private void markDirty() {
+        if (dirtySinceMillis == 0) dirtySinceMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Replays an edit read back from the operation log. It was already transformed when it was
+     * first applied, so it is composed as-is.
+     */
+    public void replay(Delta delta, long revision) {
+        Snapshot snap = current;
+        history[(int) (revision % history.length)] = delta;
+        historySenders[(int) (revision % history.length)] = null;
+        current = new Snapshot(snap.content.compose(delta), revision, snap.title);
+        markDirty();
+    }
+
+    /**
+     * Transforms a client delta made against baseRevision over every edit applied since, then
+     * applies it. Returns null when the edit cannot be applied (base revision negative, no longer or
+     * never in the history ring, from the future, or the delta does not fit the document); the client must resync.
+     */
+    public Applied apply(Delta delta, long baseRevision) {
+        return apply(delta, baseRevision, null);
+    }
+
+    /** As apply(delta, baseRevision), remembering who sent the edit (for catch-up on rejoin). */
+    public Applied apply(Delta delta, long baseRevision, String sender) {
+        Snapshot snap = current;
+        if (baseRevision < 0 || baseRevision > snap.revision || snap.revision - baseRevision > history.length) return null;
+
+        for (long rev = baseRevision + 1; rev <= snap.revision; rev++) {
+            // Empty slot: loaded at a later revision, the edits since baseRevision were never in the ring
+            Delta server = history[(int) (rev % history.length)];
+            if (server == null) return null;
+            // The server's edit happened first, so it wins insert ties
+            delta = server.transform(delta, true);
+        }
+        if (delta.baseLength() > snap.content.length()) return null;
+
+        Rope content = snap.content.compose(delta);
+        long revision = snap.revision + 1;
+        history[(int) (revision % history.length)] = delta;
+        historySenders[(int) (revision % history.length)] = sender;
+        current = new Snapshot(content, revision, snap.title);
+        markDirty();
+        return new Applied(delta, revision);
+    }
+
+    /**
+     * As apply(delta, baseRevision, sender), for an edit numbered seq by its sender. An edit whose seq
+     * was already applied (a retransmission, or a retry of an edit that did get through) is not
+     * applied again; the result is a duplicate.
+     */
+    public Applied apply(Delta delta, long baseRevision, String sender, long seq) {
+        SequenceWindow window = clients.computeIfAbsent(sender, s -> new SequenceWindow());
+        if (window.isDuplicate(seq)) return new Applied(null, window.revisionOf(seq));
+        Applied applied = apply(delta, baseRevision, sender);
+        if (applied != null) window.record(seq, applied.getRevision());
+        return applied;
+    }
+
+    // --- Stored content ---
+
+    /**
+     * Parses what is stored in Document.content. Older rows hold the client's
+     * {"delta":..., "fullDoc":...} payload or plain HTML/text, newer ones a plain {"ops":[...]} delta.
+     * Quill documents always end with a newline, so one is appended when missing.
+     */
+    public static Delta parseStoredContent(String stored) {
+        Delta delta = null;
+        if (stored != null && !stored.isEmpty()) {
+            try {
+                JsonNode node = Delta.MAPPER.readTree(stored);
+                if (node.has("fullDoc")) node = node.get("fullDoc");
+                if (node.has("ops")) delta = Delta.MAPPER.treeToValue(node, Delta.class);
+            } catch (Exception e) {
+                // Not JSON: legacy HTML/plain text content
+            }
+            if (delta == null) delta = new Delta().insert(stored);
+        }
+        if (delta == null) delta = new Delta();
+
+        if (!endsWithNewline(delta)) delta = delta.compose(new Delta().retain(delta.length()).insert("\n"));
+        return delta;
+    }
+
+    private static boolean endsWithNewline(Delta delta) {
+        if (delta.getOps().isEmpty()) return false;
+        Object last = delta.getOps().get(delta.getOps().size() - 1).getInsert();
+        return last instanceof String && ((String) last).endsWith("\n");
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.editor;
+
+import java.time.Instant;
+
+// Closed projection used by the dashboard listing: never selects the @Lob content column
+public interface DocumentSummary {
+    String getDocId();
+    String getTitle();
+    String getOwner();
+    Long getSize();
+    Instant getLastModified();
+}
@@ -0,0 +1,21 @@
+package com.example.editor;
+
+import java.util.List;
+
+// One broadcast frame on /topic/document/{docId}: consecutive edits of the document, oldest first
+public class EditBatch {
+    private String docId;
+    private List<DocMessage> edits;
+
+    public EditBatch() {}
+
+    public EditBatch(String docId, List<DocMessage> edits) {
+        this.docId = docId;
+        this.edits = edits;
+    }
+
+    public String getDocId() { return docId; }
+    public void setDocId(String docId) { this.docId = docId; }
+    public List<DocMessage> getEdits() { return edits; }
+    public void setEdits(List<DocMessage> edits) { this.edits = edits; }
+}
@@ -0,0 +1,167 @@
+package com.example.editor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sharded edit pipeline.
+ *
+ * Every document is hashed onto one of N "lanes". A lane is a single worker thread draining its own
+ * BlockingQueue, so edits to the same document are always applied in arrival order by the same thread
+ * (single-writer), while edits to different documents run in parallel on different lanes.
+ * There is no process-wide lock: the only shared structure a producer touches is its lane's queue.
+ *
+ * Admission is bounded: each lane queue holds at most laneCapacity tasks and each document at most
+ * perDocLimit queued or running tasks, so one hot document cannot fill a lane for everybody else.
+ * A full lane either rejects right away or blocks the submitting thread for a while (OverloadPolicy);
+ * either way submit() reports a task it did not take, so the caller can tell the client.
+ */
+public class EditPipeline {
+
+    public enum OverloadPolicy {
+        REJECT, // shed load: fail immediately when the lane is full
+        BLOCK   // slow the producer down: wait up to blockTimeoutMillis for room, then fail
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(EditPipeline.class);
+
+    // Poison pill used to stop a lane after it has drained everything queued before it
+    private static final Runnable STOP = () -> {};
+
+    private final Lane[] lanes;
+    private final String threadNamePrefix;
+    private final int perDocLimit;
+    private final OverloadPolicy policy;
+    private final long blockTimeoutMillis;
+    // Tasks queued or running per document; absent = none
+    private final Map<String, Integer> pendingPerDoc = new ConcurrentHashMap<>();
+
+    /** Unbounded pipeline: submit() never rejects. */
+    public EditPipeline(int laneCount, String threadNamePrefix) {
+        this(laneCount, threadNamePrefix, Integer.MAX_VALUE, Integer.MAX_VALUE, OverloadPolicy.BLOCK, 0);
+    }
+
+    public EditPipeline(int laneCount, String threadNamePrefix, int laneCapacity, int perDocLimit,
+                        OverloadPolicy policy, long blockTimeoutMillis) {
+        if (laneCount < 1) throw new IllegalArgumentException("laneCount must be >= 1");
+        if (laneCapacity < 1 || perDocLimit < 1) throw new IllegalArgumentException("Limits must be >= 1");
+        this.threadNamePrefix = threadNamePrefix;
+        this.perDocLimit = perDocLimit;
+        this.policy = policy;
+        this.blockTimeoutMillis = blockTimeoutMillis;
+        this.lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) lanes[i] = new Lane(i, laneCapacity);
+    }
+
+    public void start() {
+        for (Lane lane : lanes) lane.thread.start();
+    }
+
+    public int getLaneCount() { return lanes.length; }
+
+    // Same docId -> same lane, always. floorMod keeps negative hash codes in range.
+    public int laneOf(String docId) {
+        int h = docId.hashCode();
+        h ^= (h >>> 16); // spread high bits, same trick as HashMap
+        return Math.floorMod(h, lanes.length);
+    }
+
+    /**
+     * Queue a task for the lane owning docId. Tasks for the same docId run in submission order.
+     *
+     * @return false when the task was not queued because the document or its lane is full
+     */
+    public boolean submit(String docId, Runnable task) throws InterruptedException {
+        if (pendingPerDoc.merge(docId, 1, Integer::sum) > perDocLimit) {
+            release(docId);
+            return false;
+        }
+        Runnable tracked = () -> {
+            try {
+                task.run();
+            } finally {
+                release(docId);
+            }
+        };
+        BlockingQueue<Runnable> queue = lanes[laneOf(docId)].queue;
+        boolean queued = false;
+        try {
+            queued = policy == OverloadPolicy.BLOCK && blockTimeoutMillis > 0
+                    ? queue.offer(tracked, blockTimeoutMillis, TimeUnit.MILLISECONDS)
+                    : queue.offer(tracked);
+        } finally {
+            if (!queued) release(docId);
+        }
+        return queued;
+    }
+
+    private void release(String docId) {
+        pendingPerDoc.computeIfPresent(docId, (id, n) -> n > 1 ? n - 1 : null);
+    }
+
+    /** Number of tasks queued or running for one document. */
+    public int pending(String docId) {
+        return pendingPerDoc.getOrDefault(docId, 0);
+    }
+
+    public int queueDepth() {
+        int total = 0;
+        for (Lane lane : lanes) total += lane.queue.size();
+        return total;
+    }
+
+    /**
+     * Lets every lane finish the work already queued, then stops the threads.
+     * Lanes that do not drain within the timeout are interrupted.
+     */
+    public void shutdown(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (Lane lane : lanes) {
+            // A bounded lane may be full; if it cannot take the pill in time it is interrupted instead
+            long remaining = Math.max(1, deadline - System.currentTimeMillis());
+            if (!lane.queue.offer(STOP, remaining, TimeUnit.MILLISECONDS)) lane.thread.interrupt();
+        }
+        for (Lane lane : lanes) {
+            lane.thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+            if (lane.thread.isAlive()) lane.thread.interrupt();
+        }
+    }
+
+    private class Lane implements Runnable {
+        private final BlockingQueue<Runnable> queue;
+        private final Thread thread;
+
+        Lane(int index, int capacity) {
+            queue = new LinkedBlockingQueue<>(capacity);
+            thread = new Thread(this);
+            thread.setName(threadNamePrefix + "-" + index);
+            thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Runnable task;
+                try {
+                    task = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (task == STOP) return;
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    // One bad edit must not kill the lane for every other document hashed onto it
+                    log.error("Edit task failed on {}", thread.getName(), e);
+                }
+            }
+        }
+    }
+}
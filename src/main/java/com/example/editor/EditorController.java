@@ -1,56 +1,118 @@
 package com.example.editor;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.socket.messaging.SessionConnectedEvent;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.*; // Import for all concurrent collections
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
 @RestController
-public class EditorController {
+public class EditorController implements ClusterService.Handler {
+
+    private static final Logger log = LoggerFactory.getLogger(EditorController.class);
 
     @Autowired private UserRepository userRepository;
     @Autowired private DocumentRepository documentRepository;
+    @Autowired private DocumentBlockRepository documentBlockRepository;
     @Autowired private SimpMessagingTemplate messagingTemplate;
+    @Autowired private OperationLog operationLog;
+    @Autowired private ClusterService clusterService;
+    @Autowired private EditorMetrics metrics;
+    @Autowired private IoExecutor ioExecutor;
+    @Autowired private SnapshotWriter snapshotWriter;
+    @Autowired private InlineImageExtractor inlineImageExtractor;
+    @Autowired private RevisionStore revisionStore;
+    @Autowired private SearchIndex searchIndex;
+    @Autowired private ColdStore coldStore;
 
     // --- High-Level Concurrent Data Structures (The "Big Four") ---
 
-    // 1. BlockingQueue: Implements Producer-Consumer pattern.
-    // Handles the flow of edits safely between the User (Producer) and WorkerThread (Consumer).
-    private final BlockingQueue<DocMessage> editQueue = new LinkedBlockingQueue<>();
-
-    // 2. ConcurrentHashMap: Optimized for high-concurrency Read/Write access.
-    // Uses "Lock Stripping" to allow multiple threads to update different documents simultaneously without blocking.
-    private final Map<String, String> documentStates = new ConcurrentHashMap<>();
+    // 1. BlockingQueue (sharded): Implements Producer-Consumer pattern.
+    // Each document is hashed onto one of N lanes; a lane is one worker thread with its own queue,
+    // so edits of one document stay in order while different documents are processed in parallel.
+    @Value("${editor.pipeline.lanes:4}")
+    private int laneCount;
+    // Admission control: bounded lane queues and per-document backlog, with an overload policy
+    @Value("${editor.pipeline.lane-capacity:10000}")
+    private int laneCapacity;
+    @Value("${editor.pipeline.per-doc-limit:1000}")
+    private int perDocLimit;
+    @Value("${editor.pipeline.overload-policy:BLOCK}")
+    private EditPipeline.OverloadPolicy overloadPolicy;
+    @Value("${editor.pipeline.block-timeout-ms:200}")
+    private long blockTimeoutMs;
+    private EditPipeline editPipeline;
+
+    // 2. DocumentCache (ConcurrentHashMap inside): canonical delta + revision of open documents.
+    // Bounded by bytes with LRU eviction; dirty documents are written back first and documents
+    // with subscribers are pinned. Misses are loaded lazily from the DB.
+    @Value("${editor.cache.max-bytes:268435456}")
+    private long cacheMaxBytes;
+    private DocumentCache documentCache;
+
+    // Outbound edits are batched per document for a short window and sent as one frame
+    @Value("${editor.broadcast.window-ms:15}")
+    private long broadcastWindowMs;
+    @Value("${editor.broadcast.max-batch:64}")
+    private int broadcastMaxBatch;
+    private BroadcastBatcher broadcastBatcher;
+
+    // Which document each STOMP session has joined, so its pin can be released on disconnect
+    private final Map<String, String> sessionDocs = new ConcurrentHashMap<>();
+    // Pins held on behalf of sessions connected to other nodes ("node/session" -> docId)
+    private final Map<String, String> remotePins = new ConcurrentHashMap<>();
+
+    // Number of applied edits kept per document to transform late-arriving edits against
+    @Value("${editor.ot.history-size:1000}")
+    private int historySize;
+
+    // Joins of documents larger than this receive the snapshot as several messages of about part-bytes
+    @Value("${editor.join.stream-threshold-bytes:1048576}")
+    private long joinStreamThresholdBytes;
+    @Value("${editor.join.stream-part-bytes:262144}")
+    private long joinStreamPartBytes;
+
+    // Full snapshots into the documents table: every K edits or T seconds, whichever comes first.
+    // Edits in between are durable through the operation log.
+    @Value("${editor.snapshot.every-ops:500}")
+    private long snapshotEveryOps;
+    @Value("${editor.snapshot.every-seconds:30}")
+    private long snapshotEverySeconds;
 
     // 3. ConcurrentSkipListSet: Thread-safe Sorted Set.
-    // Used for 'dirtyDocIds' to keep track of modified documents.
+    // Used for 'dirtyDocIds' to keep track of documents with edits not yet snapshotted to the DB.
     // Benefit: Keeps IDs sorted naturally, ensuring backups happen in a predictable order.
     private final Set<String> dirtyDocIds = new ConcurrentSkipListSet<>();
 
-    // 4. CopyOnWriteArrayList: Thread-safe List optimized for "High Read, Low Write".
-    // Used for active sessions. Broadcasting (Iterating) is very fast and lock-free.
-    // Adding/Removing users is slower (copies array), but acceptable since it happens less frequently than broadcasting.
-    private final List<String> activeSessions = new CopyOnWriteArrayList<>();
-
-    // Requirement f: Implement Lock interface
-    private final Lock globalLock = new ReentrantLock();
+    // 4. Concurrent sets (ConcurrentHashMap.newKeySet, inside PresenceTracker): connected sessions and
+    // the sessions in each document. Connects and disconnects are O(1) instead of copying a list, and
+    // presence updates are coalesced to at most one per interval per document, sent to its subscribers only.
+    @Value("${editor.presence.interval-ms:500}")
+    private long presenceIntervalMs;
+    private PresenceTracker presenceTracker;
 
     // Requirement a: Thread objects
-    private Thread workerThread;
     private Thread backupThread;
     private volatile boolean isRunning = true;
 
@@ -68,9 +130,37 @@ public class EditorController {
         return ResponseEntity.ok(Collections.singletonMap("status", "ok"));
     }
 
+    // Listing columns clients may sort by (API name -> entity property)
+    private static final Map<String, String> LISTING_SORT_COLUMNS = Map.of(
+            "title", "title", "owner", "owner", "size", "contentLength", "lastModified", "lastModified");
+    private static final int MAX_PAGE_SIZE = 200;
+
+    // Paged, sorted listing of one owner's documents (all documents when no username is given).
+    // Uses a projection, so the content column is never loaded, and answers 304 while the
+    // listing is unchanged.
     @GetMapping("/api/my-docs")
-    public List<Document> getMyDocs(@RequestParam(required = false) String username) {
-        return documentRepository.findAll();
+    public ResponseEntity<Page<DocumentSummary>> getMyDocs(@RequestParam(required = false) String username,
+                                                           @RequestParam(defaultValue = "0") int page,
+                                                           @RequestParam(defaultValue = "50") int size,
+                                                           @RequestParam(defaultValue = "lastModified,desc") String sort,
+                                                           WebRequest request) {
+        String owner = (username == null || username.isEmpty()) ? null : username;
+
+        String[] sortParts = sort.split(",");
+        String column = LISTING_SORT_COLUMNS.get(sortParts[0]);
+        if (column == null) return ResponseEntity.badRequest().build();
+        Sort.Direction direction = sortParts.length > 1 && sortParts[1].equalsIgnoreCase("asc") ? Sort.Direction.ASC : Sort.Direction.DESC;
+        Pageable pageable = PageRequest.of(Math.max(page, 0), Math.min(Math.max(size, 1), MAX_PAGE_SIZE),
+                Sort.by(direction, column).and(Sort.by("docId")));
+
+        // Cheap count/max query first; the page itself is only read when the listing changed
+        DocumentRepository.ListingVersion version = documentRepository.findListingVersion(owner);
+        String etag = "W/\"" + Integer.toHexString(Objects.hash(owner, pageable.toString(),
+                version.getCount(), version.getLastModified())) + "\"";
+        if (request.checkNotModified(etag)) return null;
+
+        Page<DocumentSummary> result = documentRepository.findSummaries(owner, pageable);
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(result);
     }
 
     @PostMapping("/api/create-doc")
@@ -80,20 +170,70 @@ public class EditorController {
         String owner = body.get("owner");
         Document newDoc = new Document(docId, title, "", owner);
         documentRepository.saveAndFlush(newDoc);
+        searchIndex.update(docId, title, owner, null, Rope.of(new Delta()));
         return ResponseEntity.ok(Collections.singletonMap("docId", docId));
     }
 
+    // --- Revision history ---
+    // Recorded revisions come from the RevisionStore; newer ones (edited since the last backup) from
+    // the open document's history ring, which only the owning node has.
+
+    @GetMapping("/api/docs/{docId}/revisions")
+    public Map<String, Object> getRevisions(@PathVariable String docId) {
+        Map<String, Object> range = revisionStore.range(docId);
+        DocumentState state = clusterService.isLocal(docId) ? documentCache.getIfPresent(docId) : null;
+        range.put("current", state != null ? state.getRevision() : range.get("newest"));
+        return range;
+    }
+
+    @GetMapping("/api/docs/{docId}/revisions/{revision}")
+    public ResponseEntity<Map<String, Object>> getRevision(@PathVariable String docId, @PathVariable long revision) {
+        DocumentState state = clusterService.isLocal(docId) ? documentCache.getIfPresent(docId) : null;
+        Delta content = state != null && revision >= state.getRecorded().getRevision()
+                ? state.contentAt(revision)
+                : revisionStore.contentAt(docId, revision);
+        if (content == null) return ResponseEntity.notFound().build();
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("docId", docId);
+        body.put("revision", revision);
+        body.put("content", content);
+        return ResponseEntity.ok(body);
+    }
+
+    /** The change from revision from to revision to, as one composed delta. */
+    @GetMapping("/api/docs/{docId}/diff")
+    public ResponseEntity<Map<String, Object>> getDiff(@PathVariable String docId, @RequestParam long from, @RequestParam long to) {
+        if (from < 0 || to < from) return ResponseEntity.badRequest().build();
+        DocumentState state = clusterService.isLocal(docId) ? documentCache.getIfPresent(docId) : null;
+        long recorded = state != null ? state.getRecorded().getRevision() : Long.MAX_VALUE;
+
+        List<Delta> deltas = new ArrayList<>();
+        if (from < recorded) {
+            List<Delta> stored = revisionStore.deltasBetween(docId, from, Math.min(to, recorded));
+            if (stored == null) return ResponseEntity.notFound().build();
+            deltas.addAll(stored);
+        }
+        if (to > recorded) {
+            List<Delta> recent = state.historyBetween(Math.max(from, recorded), to);
+            if (recent == null) return ResponseEntity.notFound().build();
+            deltas.addAll(recent);
+        }
+        Delta change = new Delta();
+        for (Delta delta : deltas) change = change.compose(delta);
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("docId", docId);
+        body.put("from", from);
+        body.put("to", to);
+        body.put("delta", change);
+        return ResponseEntity.ok(body);
+    }
+
     @EventListener
     public void handleWebSocketConnectListener(SessionConnectedEvent event) {
         StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
         String sessionId = headerAccessor.getSessionId();
-        if (sessionId != null) {
-            // Check to avoid duplicates since List doesn't enforce uniqueness like Set
-            if (!activeSessions.contains(sessionId)) {
-                activeSessions.add(sessionId);
-                broadcastUserCount();
-            }
-        }
+        if (sessionId != null) presenceTracker.connect(sessionId);
     }
 
     @EventListener
@@ -101,38 +241,61 @@ public class EditorController {
         StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
         String sessionId = headerAccessor.getSessionId();
         if (sessionId != null) {
-            activeSessions.remove(sessionId);
-            broadcastUserCount();
+            presenceTracker.disconnect(sessionId);
+            String docId = sessionDocs.remove(sessionId);
+            if (docId != null) leave(docId, sessionId);
         }
     }
 
-    private void broadcastUserCount() {
-        int count = activeSessions.size();
-        DocMessage message = new DocMessage(String.valueOf(count), "System", "GLOBAL");
+    @Override
+    public void onPresenceChanged(long totalSessions) {
+        DocMessage message = new DocMessage(String.valueOf(totalSessions), "System", "GLOBAL");
         messagingTemplate.convertAndSend("/topic/users", message);
     }
 
     // --- Concurrent Logic ---
 
     @PostConstruct
-    public void init() {
-        // Requirement a: Runnable (Lambda)
-        workerThread = new Thread(() -> {
-            while (isRunning) {
-                try { processEdit(editQueue.take()); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
-            }
-        });
-        workerThread.setName("Editor-Worker-Thread");
-        workerThread.setPriority(Thread.MAX_PRIORITY);
-        workerThread.start();
+    public void init() throws IOException {
+        // Cold loads and write-backs are DB calls: they run wherever the execution mode puts blocking I/O
+        documentCache = new DocumentCache(cacheMaxBytes,
+                docId -> ioExecutor.call(() -> loadState(docId)),
+                state -> ioExecutor.call(() -> { saveSnapshot(state); return null; }));
+        broadcastBatcher = new BroadcastBatcher(
+                (docId, batch) -> clusterService.broadcast("/topic/document/" + docId, batch),
+                broadcastWindowMs, broadcastMaxBatch);
+        // The user count is the sum of the sessions connected to every node; a document's presence
+        // is tracked by the node that owns it (remote joins are forwarded there)
+        presenceTracker = new PresenceTracker(
+                (docId, count) -> clusterService.broadcast("/topic/presence/" + docId,
+                        new DocMessage(String.valueOf(count), "System", docId)),
+                count -> clusterService.updateLocalSessions(count),
+                presenceIntervalMs);
+
+        // Rebuild anything the log holds beyond the last snapshots before accepting new edits
+        recoverFromOperationLog();
+
+        editPipeline = new EditPipeline(laneCount, "Editor-Worker-Thread", laneCapacity, perDocLimit, overloadPolicy, blockTimeoutMs);
+        editPipeline.start();
+        documentCache.start();
+        coldStore.start(documentCache);
+        clusterService.start(this);
+
+        metrics.bindPipeline(editPipeline);
+        metrics.bindCache(documentCache);
+        metrics.bindBroadcast(broadcastBatcher);
+        metrics.bindSessions(presenceTracker.connectedSessions());
+        metrics.bindPresence(presenceTracker);
+        metrics.bindDirtyDocuments(dirtyDocIds);
 
+        // Requirement a: Runnable (Lambda)
         backupThread = new Thread(() -> {
             while (isRunning) {
                 try {
                     // Requirement b: Thread influencing (sleep)
                     Thread.sleep(2000);
                     if (!dirtyDocIds.isEmpty()) {
-                        performBatchBackupToDB();
+                        performBatchBackupToDB(false);
                     }
                 } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
             }
@@ -142,119 +305,436 @@ public class EditorController {
         backupThread.start();
     }
 
+    // Join fast path: no global lock and no DB read on a warm cache. The reply is built from the
+    // document's immutable snapshot (content + title + revision); a cold document is loaded once,
+    // however many clients join it at the same moment.
+    // In clustered mode a join for a document owned by another node is forwarded there; the owner
+    // pins it and sends the snapshot back to this node's subscriber.
     @MessageMapping("/join/{docId}")
     public void joinUser(@DestinationVariable String docId, DocMessage message, StompHeaderAccessor header) {
-        // Requirement d: Liveness - Use tryLock to avoid deadlock/starvation
-        boolean locked = false;
-        try {
-            locked = globalLock.tryLock(5, TimeUnit.SECONDS); // Wait max 5 seconds
-            if (locked) {
-                // Requirement e: Synchronizing access (Critical Section)
-                String content = documentStates.get(docId);
-                String docTitle = "Untitled Document";
-
-                if (content == null) {
-                    Optional<Document> docOpt = documentRepository.findById(docId);
-                    if (docOpt.isPresent()) {
-                        content = docOpt.get().getContent();
-                        docTitle = docOpt.get().getTitle();
-                        System.out.println("✅ Loaded from DB: " + docTitle);
-                    } else {
-                        content = "";
-                        System.out.println("⚠️ New/Empty Doc: " + docId);
-                    }
-                    documentStates.put(docId, content);
-                } else {
-                    Optional<Document> docOpt = documentRepository.findById(docId);
-                    if (docOpt.isPresent()) docTitle = docOpt.get().getTitle();
+        long start = System.nanoTime();
+        String sessionId = header.getSessionId();
+        String previous = sessionId != null ? sessionDocs.put(sessionId, docId) : null;
+        if (previous != null && !previous.equals(docId)) leave(previous, sessionId);
+
+        if (!clusterService.isLocal(docId)) {
+            clusterService.forwardJoin(docId, message, sessionId);
+            return;
+        }
+        // Pin the document for as long as this session is subscribed to it
+        DocumentState state = sessionId != null && !docId.equals(previous) ? documentCache.pin(docId) : documentCache.get(docId);
+        if (sessionId != null) presenceTracker.join(docId, sessionId);
+        sendJoinReply(state, message, clusterService.getNodeId());
+        metrics.record(metrics.joinLatency, EditorMetrics.since(start));
+    }
+
+    @Override
+    public void onJoin(String docId, DocMessage message, String sessionKey, String originNode) {
+        String previous = sessionKey != null ? remotePins.put(sessionKey, docId) : null;
+        DocumentState state = sessionKey != null && !docId.equals(previous) ? documentCache.pin(docId) : documentCache.get(docId);
+        if (previous != null && !previous.equals(docId)) {
+            documentCache.unpin(previous);
+            presenceTracker.leave(previous, sessionKey);
+        }
+        if (sessionKey != null) presenceTracker.join(docId, sessionKey);
+        sendJoinReply(state, message, originNode);
+    }
+
+    private void leave(String docId, String sessionId) {
+        if (clusterService.isLocal(docId)) {
+            documentCache.unpin(docId);
+            presenceTracker.leave(docId, sessionId);
+        } else {
+            clusterService.forwardLeave(docId, sessionId);
+        }
+    }
+
+    @Override
+    public void onLeave(String docId, String sessionKey) {
+        if (sessionKey != null && remotePins.remove(sessionKey, docId)) {
+            documentCache.unpin(docId);
+            presenceTracker.leave(docId, sessionKey);
+        }
+    }
+
+    // A client that rejoins after a dropped connection sends the last revision it has. It gets only
+    // the edits it missed, from the document's history ring, as one batch on its history topic (an
+    // empty batch when it missed nothing). The full snapshot is sent on a first join, when the gap
+    // is no longer in the ring, or when a missed edit's sender is unknown (replayed from the
+    // operation log), since the client could not tell its own edits from others' then.
+    private void sendJoinReply(DocumentState state, DocMessage join, String targetNode) {
+        metrics.joined();
+        Long known = join.getRevision();
+        if (known != null) {
+            long revision = state.getRevision();
+            List<Delta> deltas = state.historyBetween(known, revision);
+            List<String> senders = deltas != null ? state.sendersBetween(known, revision) : null;
+            if (senders != null && !senders.contains(null)) {
+                List<DocMessage> edits = new ArrayList<>(deltas.size());
+                for (int i = 0; i < deltas.size(); i++) {
+                    DocMessage edit = new DocMessage(deltas.get(i).toJson(), senders.get(i), state.getDocId());
+                    edit.setRevision(known + 1 + i);
+                    edits.add(edit);
                 }
+                clusterService.deliver(targetNode, "/topic/history/" + join.getSender(), new EditBatch(state.getDocId(), edits));
+                metrics.joinReply("catchup");
+                return;
+            }
+        }
+        sendSnapshot(state, join.getSender(), targetNode);
+        metrics.joinReply("snapshot");
+    }
+
+    // Full content is only ever sent here: on join, or when a client has to resync.
+    // targetNode is the node the recipient is connected to (null when unknown: all nodes).
+    private void sendSnapshot(DocumentState state, String recipient, String targetNode) {
+        DocumentState.Snapshot snap = state.snapshot();
+        String destination = "/topic/history/" + recipient;
+        List<Delta> parts = snap.getBytes() > joinStreamThresholdBytes
+                ? snap.getRope().parts(joinStreamPartBytes)
+                : Collections.singletonList(snap.getContent());
+        for (int i = 0; i < parts.size(); i++) {
+            DocMessage response = new DocMessage(parts.get(i).toJson(), "Server", state.getDocId(), snap.getTitle());
+            response.setRevision(snap.getRevision());
+            if (parts.size() > 1) {
+                response.setChunk(i);
+                response.setChunks(parts.size());
+            }
+            clusterService.deliver(targetNode, destination, response);
+        }
+    }
+
+    private DocumentState loadState(String docId) {
+        Optional<Document> docOpt = documentRepository.findById(docId);
+        if (docOpt.isPresent()) log.info("✅ Loaded from DB: {}", docOpt.get().getTitle());
+        else log.info("⚠️ New/Empty Doc: {}", docId);
+        return newState(docId, docOpt.orElse(null));
+    }
+
+    // The title is cached with the content, so joins never go back to the DB just to read it
+    private DocumentState newState(String docId, Document row) {
+        if (row == null) {
+            return new DocumentState(docId, "Untitled Document", DocumentState.parseStoredContent(null), 0, historySize);
+        }
+        long revision = row.getRevision() != null ? row.getRevision() : 0;
+        if (row.isArchived()) {
+            // Rehydrated from its cold segment. No block hashes: should it change, every block is written back
+            ColdStore.Content archived;
+            try {
+                archived = coldStore.rehydrate(row.getArchiveSegment(), row.getArchiveOffset());
+            } catch (IOException e) {
+                throw new IllegalStateException("Archived document " + docId + " could not be read", e);
+            }
+            log.info("🧊 Rehydrated from cold storage: {}", row.getTitle());
+            DocumentState state = new DocumentState(docId, row.getTitle(), archived.toRope(), revision, historySize);
+            state.markPersisted(revision, row.getContentHash(), null);
+            return state;
+        }
+        if (row.getContent() != null) {
+            // Not yet stored in blocks: the first snapshot writes all of them
+            DocumentState state = new DocumentState(docId, row.getTitle(), DocumentState.parseStoredContent(row.getContent()), revision, historySize);
+            state.markPersisted(revision, row.getContentHash(), null);
+            return state;
+        }
+        List<Rope.Chunk> chunks = new ArrayList<>();
+        List<String> blockHashes = new ArrayList<>();
+        for (DocumentBlock block : documentBlockRepository.findByDocIdOrderByBlockIndex(docId)) {
+            chunks.add(new Rope.Chunk(Delta.fromJson(block.getContent()), block.getContentHash(), block.getContent().length()));
+            blockHashes.add(block.getContentHash());
+        }
+        DocumentState state = new DocumentState(docId, row.getTitle(), Rope.ofChunks(chunks), revision, historySize);
+        state.markPersisted(revision, row.getContentHash(), blockHashes);
+        return state;
+    }
 
-                DocMessage response = new DocMessage(content, "Server", docId, docTitle);
-                messagingTemplate.convertAndSend("/topic/history/" + message.getSender(), response);
+    // Crash recovery: replay the log tail of every document onto its last snapshot
+    private void recoverFromOperationLog() throws IOException {
+        Map<String, List<OperationLog.Record>> logged = operationLog.recover();
+        for (Map.Entry<String, List<OperationLog.Record>> entry : logged.entrySet()) {
+            String docId = entry.getKey();
+            DocumentState state = newState(docId, documentRepository.findById(docId).orElse(null));
+            int replayed = 0;
+            for (OperationLog.Record record : entry.getValue()) {
+                if (record.getRevision() <= state.getRevision()) continue;
+                if (record.getRevision() != state.getRevision() + 1) {
+                    log.warn("⚠️ Gap in operation log for {} at revision {}", docId, record.getRevision());
+                    break;
+                }
+                state.replay(Delta.fromJson(record.getDelta()), record.getRevision());
+                replayed++;
+            }
+            if (replayed > 0) {
+                documentCache.put(state);
+                dirtyDocIds.add(docId);
+                log.info("♻️ Recovered {} edit(s) for {} from the operation log", replayed, docId);
             } else {
-                System.err.println("Could not acquire lock for joinUser - System is busy");
+                operationLog.markSnapshotted(docId, state.getRevision());
             }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        } finally {
-            if (locked) globalLock.unlock();
         }
+        // Write the recovered documents out right away so the old segments can be dropped
+        if (!dirtyDocIds.isEmpty()) performBatchBackupToDB(true);
+    }
+
+    @GetMapping("/api/stats/cache")
+    public Map<String, Object> getCacheStats() {
+        return documentCache.stats();
+    }
+
+    @GetMapping("/api/stats/cold")
+    public Map<String, Object> getColdStats() {
+        return coldStore.stats();
+    }
+
+    @GetMapping("/api/stats/broadcast")
+    public Map<String, Object> getBroadcastStats() {
+        return broadcastBatcher.stats();
+    }
+
+    @GetMapping("/api/stats/presence")
+    public Map<String, Object> getPresenceStats() {
+        return presenceTracker.stats();
     }
 
     @MessageMapping("/users")
-    public void requestUserCount() { broadcastUserCount(); }
+    public void requestUserCount() { presenceTracker.refresh(); }
 
     @MessageMapping("/edit/{docId}")
     public void receiveEdit(@DestinationVariable String docId, DocMessage message) {
         message.setDocId(docId);
-        try { editQueue.put(message); } catch (InterruptedException e) {}
+        if (clusterService.isLocal(docId)) onEdit(docId, message);
+        else clusterService.forwardEdit(docId, message);
+    }
+
+    @Override
+    public void onEdit(String docId, DocMessage message) {
+        long received = System.nanoTime();
+        // Pasted images arrive as base64 data URIs: store them and pass a URL on instead (off the lane)
+        if (InlineImageExtractor.mayContainInlineImages(message.getContent())) extractInlineImages(message);
+        try {
+            if (!editPipeline.submit(docId, () -> processEdit(message, received))) {
+                metrics.editDropped("overload");
+                rejectEdit(message, "overloaded");
+            }
+        } catch (InterruptedException e) {
+            metrics.editDropped("interrupted");
+            rejectEdit(message, "interrupted");
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // The edit was not applied: tell the sender, who backs off and sends it again (a retried edit
+    // that has become too stale to transform gets a full snapshot, like any other stale edit)
+    private void rejectEdit(DocMessage message, String reason) {
+        DocMessage control = new DocMessage(reason, "Server", message.getDocId());
+        control.setRevision(message.getRevision());
+        clusterService.deliver(null, "/topic/control/" + message.getSender(), control);
+    }
+
+    // The edit is applied and the operation log is fsynced past it (or a snapshot holds it): tell the
+    // sender, whose save indicator (and manual save) waits for this. Its broadcast echo still moves the
+    // sender's revision, in order with the other edits. Only edits with a seq are acknowledged. While an edit of the document that missed
+    // the log is not in a snapshot either, the sender gets "unsaved" instead: acks are cumulative
+    // on the client, so any ack would also claim that edit is saved.
+    private void ackEdit(DocMessage message, long revision) {
+        if (message.getSeq() == null) return;
+        DocumentState state = documentCache.getIfPresent(message.getDocId());
+        boolean saved = state == null || !state.hasUnloggedEdits();
+        DocMessage ack = new DocMessage(saved ? "ack" : "unsaved", "Server", message.getDocId());
+        if (revision >= 0) ack.setRevision(revision);
+        ack.setSeq(message.getSeq());
+        clusterService.deliver(null, "/topic/control/" + message.getSender(), ack);
+    }
+
+    // Package-private so the JMH benchmarks can drive it directly
+    void processEdit(DocMessage message) {
+        processEdit(message, System.nanoTime());
+    }
+
+    private void extractInlineImages(DocMessage message) {
+        try {
+            Delta delta = Delta.fromJson(message.getContent());
+            Delta extracted = inlineImageExtractor.extract(delta);
+            if (extracted != delta) message.setContent(extracted.toJson());
+        } catch (IllegalArgumentException e) {
+            // Malformed: processEdit rejects it
+        }
+    }
+
+    /**
+     * Loads a document into the cache ahead of its first join (CacheWarmer). Returns false, without
+     * loading, once the cache is nearly at its budget: warming must not evict documents in use.
+     */
+    boolean warmUp(String docId) {
+        if (documentCache.bytes() >= cacheMaxBytes / 10 * 9) return false;
+        documentCache.get(docId);
+        return true;
+    }
+
+    /**
+     * One-off migration of a stored document: replaces its inline images with uploads through a
+     * regular server edit, so the change is logged, broadcast to open editors and snapshotted.
+     * Returns false when there was nothing to do. Only for documents owned by this node.
+     */
+    boolean migrateInlineImages(String docId) {
+        DocumentState state = documentCache.get(docId);
+        Delta change = inlineImageExtractor.replacements(state.snapshot().getContent());
+        if (change.getOps().isEmpty()) return false;
+        DocMessage message = new DocMessage(change.toJson(), "Server", docId);
+        message.setRevision(state.getRevision());
+        onEdit(docId, message);
+        return true;
     }
 
-    private void processEdit(DocMessage message) {
+    // Always runs on the lane that owns docId, so it is the single writer for that document
+    // and needs no lock of its own.
+    private void processEdit(DocMessage message, long receivedNanos) {
+        metrics.record(metrics.editQueueWait, EditorMetrics.since(receivedNanos));
         String docId = message.getDocId();
         if (docId == null) return;
 
-        boolean locked = false;
+        // The client sends only its delta plus the revision it was typed against;
+        // the server transforms it over any edits the client has not seen yet.
+        Delta delta = null;
+        if (message.getRevision() != null) {
+            try {
+                delta = Delta.fromJson(message.getContent());
+            } catch (IllegalArgumentException e) {
+                log.warn("Rejected malformed edit for {}: {}", docId, e.getMessage());
+            }
+        }
+        Delta incoming = delta;
+        Long seq = message.getSender() != null ? message.getSeq() : null;
+        DocumentState.Applied applied = incoming == null ? null
+                : documentCache.withState(docId, state -> seq != null
+                        ? state.apply(incoming, message.getRevision(), message.getSender(), seq)
+                        : state.apply(incoming, message.getRevision(), message.getSender()));
+        if (applied == null) {
+            // Too stale, malformed or from an old client: send the full document so it can start over
+            metrics.editRejected(incoming == null ? "malformed" : "unrecoverable");
+            sendSnapshot(documentCache.get(docId), message.getSender(), null);
+            return;
+        }
+        if (applied.isDuplicate()) {
+            // Already applied (and broadcast) once: only acknowledge it again, once the first copy is durable
+            metrics.editDuplicate();
+            operationLog.whenDurable(operationLog.lastPosition(), () -> ackEdit(message, applied.getRevision()));
+            return;
+        }
+
+        // Write-ahead: the edit is in the log before anyone is told about it. The sender is acknowledged
+        // only once the flusher has fsynced the log past it; others already get the broadcast, since
+        // an edit lost in a crash within that window is one its sender was never told was saved.
+        // It is already applied, so if the append fails it is still broadcast, but the document is
+        // snapshotted right away and the sender is only acknowledged once a snapshot holds the edit
+        // (see ackEdit).
+        String deltaJson = applied.getDelta().toJson();
+        long logged = -1;
         try {
-            // Requirement d: Liveness (tryLock)
-            locked = globalLock.tryLock(5, TimeUnit.SECONDS);
-            if (locked) {
-                // Requirement e: Synchronizing access
-                documentStates.put(docId, message.getContent());
-                dirtyDocIds.add(docId);
-                messagingTemplate.convertAndSend("/topic/document/" + docId, message);
+            logged = operationLog.append(docId, applied.getRevision(), deltaJson);
+        } catch (IOException e) {
+            metrics.oplogAppendFailures.increment();
+            log.error("Operation log append failed for {}: {}", docId, e.getMessage());
+            DocumentState state = documentCache.get(docId);
+            state.markUnlogged(applied.getRevision());
+            try {
+                ioExecutor.call(() -> { saveSnapshot(state); return null; });
+            } catch (RuntimeException snapshotFailure) {
+                log.error("Snapshot of {} after the failed log append failed too: {}", docId, snapshotFailure.getMessage());
             }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        } finally {
-            if (locked) globalLock.unlock();
         }
+
+        dirtyDocIds.add(docId);
+        DocMessage broadcast = new DocMessage(deltaJson, message.getSender(), docId);
+        broadcast.setRevision(applied.getRevision());
+        broadcastBatcher.submit(docId, broadcast);
+        if (logged >= 0) operationLog.whenDurable(logged, () -> ackEdit(message, applied.getRevision()));
+        else ackEdit(message, applied.getRevision());
+        metrics.record(metrics.editLatency, EditorMetrics.since(receivedNanos));
     }
 
-    private void performBatchBackupToDB() {
-        // Make a copy to process safely
+    // Writes a full snapshot of every dirty document that is due (K edits or T seconds since its
+    // last snapshot), or of every dirty document when force is set.
+    void performBatchBackupToDB(boolean force) {
+        long now = System.currentTimeMillis();
         // Since dirtyDocIds is a ConcurrentSkipListSet, the order is guaranteed (Sorted)
-        Set<String> docsToSave = new HashSet<>(dirtyDocIds);
+        Set<String> docsToSave = new HashSet<>();
+        for (String docId : dirtyDocIds) {
+            DocumentState state = documentCache.getIfPresent(docId);
+            if (state == null) {
+                // Evicted: the cache wrote it back before dropping it
+                dirtyDocIds.remove(docId);
+                continue;
+            }
+            boolean due = force
+                    || state.getRevision() - state.getPersistedRevision() >= snapshotEveryOps
+                    || now - state.getLastSnapshotMillis() >= snapshotEverySeconds * 1000;
+            if (due) docsToSave.add(docId);
+        }
+        // Remove before reading the snapshots: an edit landing in between simply re-marks the doc
         dirtyDocIds.removeAll(docsToSave);
 
-        // Requirement g: Parallel Streams (reduction/processing)
-        docsToSave.parallelStream().forEach(docId -> {
-            String content = documentStates.get(docId);
-            if (content != null) {
-                // JPA Repository is typically thread-safe for individual operations
-                Optional<Document> docOpt = documentRepository.findById(docId);
-                if (docOpt.isPresent()) {
-                    Document doc = docOpt.get();
-                    doc.setContent(content);
-                    documentRepository.saveAndFlush(doc);
-                    System.out.println("💾 [Thread-" + Thread.currentThread().getId() + "] Saved Update: " + doc.getTitle());
-                } else {
-                    Document newDoc = new Document(docId, "Auto-Saved Doc", content, "Anonymous");
-                    documentRepository.saveAndFlush(newDoc);
-                    System.out.println("💾 [Thread-" + Thread.currentThread().getId() + "] Saved New: " + docId);
-                }
-            }
-        });
+        if (docsToSave.isEmpty()) return;
+
+        List<DocumentState> states = new ArrayList<>(docsToSave.size());
+        for (String docId : docsToSave) {
+            DocumentState state = documentCache.getIfPresent(docId);
+            if (state != null) states.add(state);
+        }
+        // One transaction for the whole cycle; DB work goes wherever the execution mode puts blocking I/O
+        SnapshotWriter.Result result = ioExecutor.call(() -> snapshotWriter.write(states));
+        afterSnapshot(result);
+
+        metrics.record(metrics.backupDuration, result.getNanos());
+        metrics.backupDocuments.record(result.getPersisted().size());
+        metrics.backupRows(result);
+        log.info("💾 Snapshot cycle: {} written, {} inserted, {} unchanged, {} stale, {} block(s) in {} ms",
+                result.getWritten(), result.getInserted(), result.getUnchanged(), result.getStale(), result.getBlocks(),
+                TimeUnit.NANOSECONDS.toMillis(result.getNanos()));
+    }
+
+    // Cache write-back of a single document; SnapshotWriter serialises it with the backup cycle
+    private void saveSnapshot(DocumentState state) {
+        long waitStart = System.nanoTime();
+        state.persistLock.lock();
+        try {
+            metrics.record(metrics.persistLockWait, EditorMetrics.since(waitStart));
+            if (state.getRevision() == state.getPersistedRevision()) return;
+            afterSnapshot(snapshotWriter.write(List.of(state)));
+        } finally {
+            state.persistLock.unlock();
+        }
+    }
+
+    private void afterSnapshot(SnapshotWriter.Result result) {
+        long now = System.currentTimeMillis();
+        for (SnapshotWriter.Row row : result.getPersisted()) {
+            if (row.getDirtySinceMillis() > 0) metrics.snapshotLag.record(now - row.getDirtySinceMillis(), TimeUnit.MILLISECONDS);
+            operationLog.markSnapshotted(row.getState().getDocId(), row.getRevision());
+        }
+        searchIndex.update(result);
     }
 
     @PreDestroy
     public void cleanup() {
         isRunning = false;
-        System.out.println("🛑 Stopping server...");
+        log.info("🛑 Stopping server...");
 
         // Interrupt threads
-        if (workerThread != null) workerThread.interrupt();
         if (backupThread != null) backupThread.interrupt();
+        if (documentCache != null) documentCache.stop();
 
         // Requirement c: Implement joining threads
         try {
-            if (workerThread != null) workerThread.join(1000); // Wait 1s for it to finish
+            // Lanes drain the edits already queued before stopping, so the final save below sees them
+            if (editPipeline != null) editPipeline.shutdown(1000);
+            if (broadcastBatcher != null) broadcastBatcher.shutdown();
+            if (presenceTracker != null) presenceTracker.shutdown();
             if (backupThread != null) backupThread.join(1000);
-            System.out.println("✅ Threads joined successfully.");
+            log.info("✅ Threads joined successfully.");
         } catch (InterruptedException e) {
-            System.err.println("Threads failed to join.");
+            log.warn("Threads failed to join.");
         }
 
-        performBatchBackupToDB(); // Final save
+        performBatchBackupToDB(true); // Final snapshot of everything still dirty
     }
 }
\ No newline at end of file
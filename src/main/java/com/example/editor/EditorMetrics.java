@@ -0,0 +1,187 @@
+package com.example.editor;
+
+import io.micrometer.core.instrument.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Micrometer meters for the editor's hot paths, exported through /actuator/metrics and
+ * /actuator/prometheus. Meters are named editor.*; timers publish p50/p99 and a histogram.
+ *
+ * The components themselves stay free of Micrometer: they keep their own counters (see their
+ * stats() maps) and are bound here as gauges and function counters once they exist.
+ */
+@Component
+public class EditorMetrics {
+
+    private static final Logger log = LoggerFactory.getLogger(EditorMetrics.class);
+
+    private final MeterRegistry registry;
+
+    // receive -> broadcast hand-off, and the part of it spent waiting in the lane queue
+    final Timer editLatency;
+    final Timer editQueueWait;
+    final Timer joinLatency;
+    final Timer backupDuration;
+    // Time from the oldest unsnapshotted edit of a document until its snapshot reached the DB
+    final Timer snapshotLag;
+    // Wait for a document's persist lock (backup thread vs. cache write-back)
+    final Timer persistLockWait;
+    // Archived document read back from its cold segment by the cache loader
+    final Timer coldRehydrate;
+    final DistributionSummary backupDocuments;
+    final Counter oplogAppendFailures;
+    // JVM start to the first join answered (time to ready is Spring Boot's application.ready.time)
+    private final AtomicLong firstJoinMillis = new AtomicLong(-1);
+
+    public EditorMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        editLatency = timer("editor.edit.latency", "Edit receive to broadcast hand-off");
+        editQueueWait = timer("editor.edit.queue.wait", "Time an edit waited in its lane queue");
+        joinLatency = timer("editor.join.latency", "Join request to snapshot sent");
+        backupDuration = timer("editor.backup.duration", "Duration of one snapshot cycle");
+        snapshotLag = timer("editor.snapshot.lag", "Oldest unsnapshotted edit to snapshot written");
+        persistLockWait = timer("editor.persist.lock.wait", "Wait for a document's persist lock");
+        coldRehydrate = timer("editor.cold.rehydrate", "Archived document read back from its cold segment");
+        backupDocuments = DistributionSummary.builder("editor.backup.documents")
+                .description("Documents written per snapshot cycle")
+                .register(registry);
+        oplogAppendFailures = Counter.builder("editor.oplog.append.failures").register(registry);
+        TimeGauge.builder("editor.startup.first.join", firstJoinMillis,
+                        TimeUnit.MILLISECONDS, millis -> millis.get() < 0 ? Double.NaN : millis.get())
+                .description("JVM start to the first join answered")
+                .register(registry);
+    }
+
+    private Timer timer(String name, String description) {
+        return Timer.builder(name)
+                .description(description)
+                .publishPercentiles(0.5, 0.99)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(1000))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(registry);
+    }
+
+    /** Edits answered with a resync instead of being applied (reason: stale, malformed, ...). */
+    public void editRejected(String reason) {
+        registry.counter("editor.edits.rejected", "reason", reason).increment();
+    }
+
+    /** Edits lost before reaching a lane (reason: interrupted, overload, ...). */
+    public void editDropped(String reason) {
+        registry.counter("editor.edits.dropped", "reason", reason).increment();
+    }
+
+    /** Edits dropped because their seq had already been applied (retransmissions and retries). */
+    public void editDuplicate() {
+        registry.counter("editor.edits.duplicate").increment();
+    }
+
+    /** Join replies by type: catchup (only the missed edits) or snapshot (the whole document). */
+    public void joinReply(String type) {
+        registry.counter("editor.join.replies", "type", type).increment();
+    }
+
+    /** Called on every join answered; only the first one after startup is recorded. */
+    public void joined() {
+        if (firstJoinMillis.get() >= 0) return;
+        long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+        if (firstJoinMillis.compareAndSet(-1, uptime)) log.info("⏱️ First join answered {} ms after JVM start", uptime);
+    }
+
+    /** Row counts of one snapshot cycle, tagged by what happened to the row. */
+    public void backupRows(SnapshotWriter.Result result) {
+        registry.counter("editor.backup.rows", "result", "written").increment(result.getWritten());
+        registry.counter("editor.backup.rows", "result", "inserted").increment(result.getInserted());
+        registry.counter("editor.backup.rows", "result", "unchanged").increment(result.getUnchanged());
+        registry.counter("editor.backup.rows", "result", "stale").increment(result.getStale());
+        registry.counter("editor.backup.blocks").increment(result.getBlocks());
+    }
+
+    public static long since(long startNanos) {
+        return System.nanoTime() - startNanos;
+    }
+
+    public void record(Timer timer, long nanos) {
+        timer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    // --- Component bindings ---
+
+    public void bindPipeline(EditPipeline pipeline) {
+        Gauge.builder("editor.pipeline.queue.depth", pipeline, EditPipeline::queueDepth)
+                .description("Edits waiting in all lane queues")
+                .register(registry);
+        Gauge.builder("editor.pipeline.lanes", pipeline, EditPipeline::getLaneCount).register(registry);
+    }
+
+    public void bindCache(DocumentCache cache) {
+        Gauge.builder("editor.cache.entries", cache, DocumentCache::size).register(registry);
+        Gauge.builder("editor.cache.bytes", cache, DocumentCache::bytes).baseUnit("bytes").register(registry);
+        gauge("editor.cache.max.bytes", cache::stats, "maxBytes");
+        gauge("editor.cache.pinned", cache::stats, "pinned");
+        counter("editor.cache.hits", cache, cache::stats, "hits");
+        counter("editor.cache.misses", cache, cache::stats, "misses");
+        counter("editor.cache.coalesced.loads", cache, cache::stats, "coalescedLoads");
+        counter("editor.cache.evictions", cache, cache::stats, "evictions");
+        counter("editor.cache.write.backs", cache, cache::stats, "writeBacks");
+    }
+
+    public void bindBroadcast(BroadcastBatcher batcher) {
+        counter("editor.broadcast.frames", batcher, batcher::stats, "frames");
+        counter("editor.broadcast.messages", batcher, batcher::stats, "messages");
+        gauge("editor.broadcast.largest.frame", batcher::stats, "largestFrame");
+        gauge("editor.broadcast.added.latency.avg.micros", batcher::stats, "avgAddedLatencyMicros");
+        gauge("editor.broadcast.added.latency.max.micros", batcher::stats, "maxAddedLatencyMicros");
+    }
+
+    public void bindSessions(Collection<?> activeSessions) {
+        Gauge.builder("editor.sessions", activeSessions, Collection::size)
+                .description("STOMP sessions connected to this node")
+                .register(registry);
+    }
+
+    public void bindPresence(PresenceTracker tracker) {
+        gauge("editor.presence.documents", tracker::stats, "documents");
+        counter("editor.presence.updates", tracker, tracker::stats, "updates");
+        counter("editor.presence.coalesced", tracker, tracker::stats, "coalesced");
+    }
+
+    public void bindWarmup(CacheWarmer warmer) {
+        gauge("editor.warmup.documents", warmer::stats, "warmed");
+        gauge("editor.warmup.duration.millis", warmer::stats, "durationMillis");
+    }
+
+    public void bindColdStore(ColdStore store) {
+        gauge("editor.cold.segments", store::stats, "segments");
+        gauge("editor.cold.bytes", store::stats, "bytes");
+        gauge("editor.cold.pass.duration.millis", store::stats, "lastPassMillis");
+        counter("editor.cold.archived", store, store::stats, "archived");
+        counter("editor.cold.archived.raw.bytes", store, store::stats, "archivedRawBytes");
+        counter("editor.cold.archived.bytes", store, store::stats, "archivedBytes");
+        counter("editor.cold.rehydrated", store, store::stats, "rehydrated");
+        counter("editor.cold.moved", store, store::stats, "moved");
+    }
+
+    public void bindDirtyDocuments(Collection<?> dirtyDocIds) {
+        Gauge.builder("editor.documents.dirty", dirtyDocIds, Collection::size).register(registry);
+    }
+
+    private void gauge(String name, Supplier<Map<String, Object>> stats, String key) {
+        Gauge.builder(name, () -> (Number) stats.get().get(key)).register(registry);
+    }
+
+    private <T> void counter(String name, T source, Supplier<Map<String, Object>> stats, String key) {
+        FunctionCounter.builder(name, source, s -> ((Number) stats.get().get(key)).doubleValue()).register(registry);
+    }
+}
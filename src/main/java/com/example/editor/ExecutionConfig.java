@@ -0,0 +1,20 @@
+package com.example.editor;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.Executors;
+
+// Virtual execution mode (editor.execution.mode=VIRTUAL): Tomcat handles every request on its own virtual thread
+@Configuration
+@ConditionalOnProperty(name = "editor.execution.mode", havingValue = "VIRTUAL")
+public class ExecutionConfig {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadRequestExecutor() {
+        return protocolHandler -> protocolHandler.setExecutor(
+                Executors.newThreadPerTaskExecutor(IoExecutor.virtualThreads("Editor-Http-")));
+    }
+}
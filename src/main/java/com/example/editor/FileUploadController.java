@@ -1,52 +1,150 @@
 package com.example.editor;
 
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUploadException;
+import org.apache.commons.fileupload.servlet.ServletFileUpload;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.*;
-import org.springframework.web.multipart.MultipartFile;
 import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.nio.file.*;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 
+// Uploads are read straight from the request stream (multipart support is disabled, so nothing is
+// buffered in a temp file first) into the content-addressed UploadStore. Downloads go out with
+// zero-copy sendfile where the connector supports it, Range support and immutable caching.
 @RestController
 public class FileUploadController {
 
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    // Stored files never change (content-addressed, or a unique legacy name)
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
 
-    private final Path fileStorageLocation;
-
-    public FileUploadController() {
+    @Autowired private UploadStore uploadStore;
 
-        this.fileStorageLocation = Paths.get("uploads").toAbsolutePath().normalize();
+    @PostMapping("/upload")
+    public ResponseEntity<Map<String, String>> uploadFile(HttpServletRequest request) {
+        if (!ServletFileUpload.isMultipartContent(request)) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", "Expected a multipart upload"));
+        }
         try {
-            Files.createDirectories(this.fileStorageLocation);
-        } catch (Exception ex) {
-            throw new RuntimeException("Could not create the directory where the uploaded files will be stored.", ex);
+            FileItemIterator items = new ServletFileUpload().getItemIterator(request);
+            while (items.hasNext()) {
+                FileItemStream item = items.next();
+                if (item.isFormField() || !"file".equals(item.getFieldName())) continue;
+
+                String originalFileName = StringUtils.cleanPath(item.getName() != null ? item.getName() : "file");
+                UploadStore.StoredFile stored;
+                try (InputStream in = item.openStream()) {
+                    stored = uploadStore.store(in, originalFileName);
+                }
+
+                Map<String, String> response = new HashMap<>();
+                response.put("url", stored.getUrl());
+                response.put("name", originalFileName);
+                return ResponseEntity.ok(response);
+            }
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", "No file part"));
+        } catch (UploadStore.TooLargeException ex) {
+            return ResponseEntity.status(413).body(Collections.singletonMap("error", ex.getMessage()));
+        } catch (IOException | FileUploadException ex) {
+            return ResponseEntity.status(500).body(Collections.singletonMap("error", "Could not upload file"));
         }
     }
 
-    @PostMapping("/upload")
-    public ResponseEntity<Map<String, String>> uploadFile(@RequestParam("file") MultipartFile file) {
-        try {
-
-            String originalFileName = StringUtils.cleanPath(file.getOriginalFilename());
-            String fileName = UUID.randomUUID().toString() + "_" + originalFileName;
-
-
-            Path targetLocation = this.fileStorageLocation.resolve(fileName);
-            Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
-
-
-            String fileDownloadUri = "/uploads/" + fileName;
-
-
-            Map<String, String> response = new HashMap<>();
-            response.put("url", fileDownloadUri);
-            response.put("name", originalFileName);
+    @RequestMapping(value = "/uploads/{fileName:.+}", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void download(@PathVariable String fileName, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path file = uploadStore.resolve(fileName);
+        if (file == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        long length = file.toFile().length();
+        String etag = "\"" + fileName + "\"";
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, IMMUTABLE);
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (etag.equals(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        response.setContentType(MediaTypeFactory.getMediaType(fileName).orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+
+        // Single byte range only; anything else gets the whole file
+        long start = 0, end = length - 1;
+        long[] range = parseRange(request.getHeader(HttpHeaders.RANGE), length);
+        if (range != null && range.length == 0) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return;
+        }
+        if (range != null) {
+            start = range[0];
+            end = range[1];
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        if ("HEAD".equals(request.getMethod()) || count <= 0) return;
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat writes the file with sendfile after the servlet returns: kernel to socket, no user-space copy
+            request.setAttribute(SENDFILE_FILENAME, file.toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position <= end) position += in.transferTo(position, end + 1 - position, out);
+        }
+    }
 
-            return ResponseEntity.ok(response);
-        } catch (IOException ex) {
-            return ResponseEntity.status(500).body(Collections.singletonMap("error", "Could not upload file"));
+    /**
+     * Parses a Range header against a file of the given length.
+     * Returns null to serve the whole file, {start, end} for one satisfiable range, or an empty
+     * array when the range cannot be satisfied.
+     */
+    static long[] parseRange(String header, long length) {
+        if (header == null || !header.startsWith("bytes=") || header.indexOf(',') >= 0) return null;
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) return null;
+        try {
+            long start, end;
+            if (dash == 0) {
+                // Suffix range: the last N bytes
+                long suffix = Long.parseLong(spec.substring(1));
+                if (suffix <= 0) return new long[0];
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(spec.substring(0, dash));
+                end = dash == spec.length() - 1 ? length - 1 : Math.min(Long.parseLong(spec.substring(dash + 1)), length - 1);
+            }
+            if (start >= length || start > end) return new long[0];
+            return new long[] {start, end};
+        } catch (NumberFormatException e) {
+            return null;
         }
     }
-}
\ No newline at end of file
+}
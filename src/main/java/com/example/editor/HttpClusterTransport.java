@@ -0,0 +1,131 @@
+package com.example.editor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * Cluster transport over plain HTTP between the nodes (POST /internal/cluster, see ClusterEndpoint).
+ *
+ * Each peer has one sender thread draining its own queue, so messages to a peer arrive in the
+ * order they were sent, and everything queued at that moment goes out in one request.
+ * Requests carry a shared secret so only cluster members can inject traffic; the transport refuses
+ * to start without one.
+ */
+public class HttpClusterTransport implements ClusterTransport {
+
+    private static final Logger log = LoggerFactory.getLogger(HttpClusterTransport.class);
+
+    static final String SECRET_HEADER = "X-Cluster-Secret";
+    private static final int MAX_MESSAGES_PER_REQUEST = 256;
+
+    private final Map<String, String> peerUrls;
+    private final String secret;
+    private final byte[] secretBytes;
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+    private final Map<String, BlockingQueue<ClusterMessage>> outboxes = new HashMap<>();
+    private final List<Thread> senders = new ArrayList<>();
+    private volatile boolean isRunning = true;
+    private String nodeId;
+    private Consumer<ClusterMessage> receiver;
+
+    /** @param peerUrls node id -> base URL (e.g. http://10.0.0.2:8080), including this node */
+    public HttpClusterTransport(Map<String, String> peerUrls, String secret) {
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalStateException("editor.cluster.secret must be set for the http cluster transport");
+        }
+        this.peerUrls = peerUrls;
+        this.secret = secret;
+        this.secretBytes = secret.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void start(String nodeId, Consumer<ClusterMessage> receiver) {
+        this.nodeId = nodeId;
+        this.receiver = receiver;
+        for (Map.Entry<String, String> peer : peerUrls.entrySet()) {
+            if (peer.getKey().equals(nodeId)) continue;
+            BlockingQueue<ClusterMessage> outbox = new LinkedBlockingQueue<>();
+            outboxes.put(peer.getKey(), outbox);
+            Thread sender = new Thread(() -> drain(peer.getValue(), outbox));
+            sender.setName("Editor-Cluster-Sender-" + peer.getKey());
+            sender.setDaemon(true);
+            sender.start();
+            senders.add(sender);
+        }
+    }
+
+    @Override
+    public void send(String targetNodeId, ClusterMessage message) {
+        if (targetNodeId.equals(nodeId)) {
+            receiver.accept(message);
+            return;
+        }
+        BlockingQueue<ClusterMessage> outbox = outboxes.get(targetNodeId);
+        if (outbox != null) outbox.add(message);
+        else log.warn("Unknown cluster node {}", targetNodeId);
+    }
+
+    @Override
+    public void publish(ClusterMessage message) {
+        for (BlockingQueue<ClusterMessage> outbox : outboxes.values()) outbox.add(message);
+        receiver.accept(message);
+    }
+
+    /** Called by ClusterEndpoint with the messages of one request. */
+    void receive(String body, String presentedSecret) throws JsonProcessingException {
+        // Constant-time comparison, so the secret cannot be guessed byte by byte from response times
+        if (presentedSecret == null || !MessageDigest.isEqual(secretBytes, presentedSecret.getBytes(StandardCharsets.UTF_8))) {
+            throw new SecurityException("Bad cluster secret");
+        }
+        List<ClusterMessage> messages = Delta.MAPPER.readValue(body, new TypeReference<List<ClusterMessage>>() {});
+        for (ClusterMessage m : messages) receiver.accept(m);
+    }
+
+    private void drain(String baseUrl, BlockingQueue<ClusterMessage> outbox) {
+        URI uri = URI.create(baseUrl + "/internal/cluster");
+        List<ClusterMessage> batch = new ArrayList<>();
+        while (isRunning) {
+            try {
+                batch.add(outbox.take());
+                outbox.drainTo(batch, MAX_MESSAGES_PER_REQUEST - 1);
+                HttpRequest request = HttpRequest.newBuilder(uri)
+                        .timeout(Duration.ofSeconds(5))
+                        .header("Content-Type", "application/json")
+                        .header(SECRET_HEADER, secret)
+                        .POST(HttpRequest.BodyPublishers.ofString(Delta.MAPPER.writeValueAsString(batch)))
+                        .build();
+                HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() != 200) {
+                    log.warn("Cluster peer {} answered {}", baseUrl, response.statusCode());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                // The peer is down or unreachable: these messages are lost, its clients will resync
+                log.warn("Cluster send to {} failed: {}", baseUrl, e.getMessage());
+            }
+            batch.clear();
+        }
+    }
+
+    @Override
+    public void stop() {
+        isRunning = false;
+        for (Thread sender : senders) sender.interrupt();
+    }
+}
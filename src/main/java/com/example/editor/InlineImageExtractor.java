@@ -0,0 +1,103 @@
+package com.example.editor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Moves images that Quill embeds inline (pasted or dropped images become {"image": "data:...;base64,..."})
+ * into the UploadStore and replaces them with their /uploads URL, so documents, edits and join
+ * snapshots carry a short URL instead of the encoded bytes.
+ *
+ * Only raster types are extracted; anything else (e.g. SVG, which could carry script when served
+ * from our origin) stays inline.
+ */
+@Component
+public class InlineImageExtractor {
+
+    private static final Logger log = LoggerFactory.getLogger(InlineImageExtractor.class);
+
+    private static final String MARKER = "data:image/";
+    private static final Pattern DATA_URI = Pattern.compile("data:image/(png|jpeg|jpg|gif|webp);base64,", Pattern.CASE_INSENSITIVE);
+
+    private final UploadStore uploadStore;
+
+    public InlineImageExtractor(UploadStore uploadStore) {
+        this.uploadStore = uploadStore;
+    }
+
+    /** Cheap pre-check on raw JSON, so edits without images are never parsed twice. */
+    public static boolean mayContainInlineImages(String json) {
+        return json != null && json.contains(MARKER);
+    }
+
+    /** Returns delta with its inline images replaced by URLs (the same instance when there are none). */
+    public Delta extract(Delta delta) {
+        Delta result = null;
+        int index = 0;
+        for (Delta.Op op : delta.getOps()) {
+            Map<String, Object> replaced = op.getInsert() instanceof Map ? replace(op.getInsert()) : null;
+            if (replaced != null && result == null) {
+                result = new Delta();
+                for (int i = 0; i < index; i++) result.push(delta.getOps().get(i));
+            }
+            if (replaced != null) result.insert(replaced, op.getAttributes());
+            else if (result != null) result.push(op);
+            index++;
+        }
+        return result == null ? delta : result;
+    }
+
+    /**
+     * The change that turns a stored document into one without inline images: each image embed is
+     * replaced by a URL embed with the same attributes. Empty when there is nothing to replace.
+     */
+    public Delta replacements(Delta document) {
+        Delta change = new Delta();
+        int retained = 0;
+        int position = 0;
+        for (Delta.Op op : document.getOps()) {
+            Map<String, Object> replaced = op.getInsert() instanceof Map ? replace(op.getInsert()) : null;
+            if (replaced != null) {
+                change.retain(position - retained);
+                change.insert(replaced, op.getAttributes());
+                change.delete(1);
+                retained = position + 1;
+            }
+            position += op.getInsert() instanceof String ? ((String) op.getInsert()).length() : 1;
+        }
+        return change;
+    }
+
+    // The embed with its image stored and replaced by a URL, or null to leave it as it is
+    private Map<String, Object> replace(Object embed) {
+        Object image = ((Map<?, ?>) embed).get("image");
+        if (!(image instanceof String)) return null;
+        String uri = (String) image;
+        Matcher matcher = DATA_URI.matcher(uri);
+        if (!matcher.lookingAt()) return null;
+        String type = matcher.group(1).toLowerCase(Locale.ROOT);
+        byte[] base64 = uri.substring(matcher.end()).getBytes(StandardCharsets.US_ASCII);
+        try (InputStream in = Base64.getMimeDecoder().wrap(new ByteArrayInputStream(base64))) {
+            UploadStore.StoredFile stored = uploadStore.store(in, "inline." + ("jpeg".equals(type) ? "jpg" : type));
+            @SuppressWarnings("unchecked")
+            Map<String, Object> replaced = new LinkedHashMap<>((Map<String, Object>) embed);
+            replaced.put("image", stored.getUrl());
+            return replaced;
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Inline image left in place: {}", e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.editor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * One-off startup migration: moves the inline base64 images of documents stored before
+ * InlineImageExtractor existed into the upload store. Runs once per upload directory (a marker
+ * file records that it finished) unless disabled with editor.upload.migrate-inline-images=false.
+ * In a cluster each node migrates the documents it owns; the marker is only written once no
+ * document was left for another node.
+ */
+@Component
+public class InlineImageMigration implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(InlineImageMigration.class);
+
+    private static final String FIND_DOCUMENTS =
+            "SELECT doc_id FROM documents WHERE content LIKE '%data:image/%' " +
+            "UNION SELECT doc_id FROM document_blocks WHERE content LIKE '%data:image/%'";
+
+    private final JdbcTemplate jdbc;
+    private final EditorController controller;
+    private final ClusterService clusterService;
+    private final boolean enabled;
+    private final Path marker;
+
+    public InlineImageMigration(JdbcTemplate jdbc, EditorController controller, ClusterService clusterService,
+                                @Value("${editor.upload.migrate-inline-images:true}") boolean enabled,
+                                @Value("${editor.upload.dir:uploads}") String uploadDir) {
+        this.jdbc = jdbc;
+        this.controller = controller;
+        this.clusterService = clusterService;
+        this.enabled = enabled;
+        this.marker = Paths.get(uploadDir).resolve(".inline-images-migrated");
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        if (!enabled || Files.exists(marker)) return;
+        List<String> docIds = jdbc.queryForList(FIND_DOCUMENTS, String.class);
+        int migrated = 0;
+        int elsewhere = 0;
+        for (String docId : docIds) {
+            if (!clusterService.isLocal(docId)) elsewhere++;
+            else if (controller.migrateInlineImages(docId)) migrated++;
+        }
+        if (migrated > 0) log.info("🖼️ Moved inline images of {} document(s) into the upload store", migrated);
+        if (elsewhere > 0) return;
+        Files.createDirectories(marker.getParent());
+        Files.write(marker, new byte[0]);
+    }
+}
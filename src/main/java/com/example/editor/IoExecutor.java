@@ -0,0 +1,69 @@
+package com.example.editor;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.*;
+
+/**
+ * Where blocking work (JDBC) runs, depending on editor.execution.mode.
+ *
+ * PLATFORM (default): as before, callers block their own thread.
+ *
+ * VIRTUAL: DB work is handed to a dedicated executor of at most io-threads virtual threads (sized
+ * to the connection pool), and the STOMP inbound channel and Tomcat also run on virtual threads
+ * (see WebSocketConfig and ExecutionConfig). A join waiting for a cold load then parks a cheap
+ * virtual thread instead of holding a broker channel thread.
+ */
+@Component
+public class IoExecutor {
+
+    public enum Mode { PLATFORM, VIRTUAL }
+
+    private final Mode mode;
+    private final ExecutorService executor; // null in PLATFORM mode
+
+    public IoExecutor(@Value("${editor.execution.mode:PLATFORM}") Mode mode,
+                      @Value("${editor.execution.io-threads:10}") int ioThreads) {
+        this.mode = mode;
+        this.executor = mode == Mode.VIRTUAL
+                ? Executors.newFixedThreadPool(ioThreads, virtualThreads("Editor-IO-"))
+                : null;
+    }
+
+    public Mode getMode() { return mode; }
+
+    public boolean isVirtual() { return mode == Mode.VIRTUAL; }
+
+    public static ThreadFactory virtualThreads(String namePrefix) {
+        return Thread.ofVirtual().name(namePrefix, 0).factory();
+    }
+
+    /** Runs one blocking call: on the caller's thread, or on the I/O executor while the caller waits. */
+    public <T> T call(Callable<T> task) {
+        if (executor == null) {
+            try {
+                return task.call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }
+        try {
+            return executor.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new CompletionException(e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) executor.shutdown();
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.editor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * In-process transport: every node registered on the same network name lives in this JVM and
+ * messages are delivered synchronously on the sender's thread. Used for single-node deployments
+ * and to run several nodes side by side in tests.
+ */
+public class LoopbackClusterTransport implements ClusterTransport {
+
+    private static final Logger log = LoggerFactory.getLogger(LoopbackClusterTransport.class);
+
+    private static final Map<String, Map<String, Consumer<ClusterMessage>>> NETWORKS = new ConcurrentHashMap<>();
+
+    private final Map<String, Consumer<ClusterMessage>> nodes;
+    private String nodeId;
+
+    public LoopbackClusterTransport(String network) {
+        this.nodes = NETWORKS.computeIfAbsent(network, n -> new ConcurrentHashMap<>());
+    }
+
+    @Override
+    public void start(String nodeId, Consumer<ClusterMessage> receiver) {
+        this.nodeId = nodeId;
+        nodes.put(nodeId, receiver);
+    }
+
+    @Override
+    public void send(String targetNodeId, ClusterMessage message) {
+        Consumer<ClusterMessage> receiver = nodes.get(targetNodeId);
+        if (receiver != null) receiver.accept(message);
+        else log.warn("Cluster node {} is not reachable", targetNodeId);
+    }
+
+    @Override
+    public void publish(ClusterMessage message) {
+        for (Consumer<ClusterMessage> receiver : nodes.values()) receiver.accept(message);
+    }
+
+    @Override
+    public void stop() {
+        if (nodeId != null) nodes.remove(nodeId);
+    }
+}
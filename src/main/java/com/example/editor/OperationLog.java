@@ -0,0 +1,323 @@
+package com.example.editor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, write-ahead log of applied edits.
+ *
+ * Every edit is appended (docId, revision, delta) before it is broadcast. Appends go straight to
+ * the OS through a FileChannel; a flusher thread calls force() at most every fsync-interval-ms, so
+ * many edits share one fsync (group commit). Each append gets a position, and whenDurable() runs an
+ * action once the fsync that covers it is done (how edits are acknowledged to their senders). Full snapshots into the documents table are only
+ * written every K ops / T seconds, and recovery replays the log tail on top of the last snapshot.
+ *
+ * The log is split into segments. A closed segment is deleted once every document it mentions has
+ * been snapshotted at or past the last revision it holds.
+ *
+ * Record layout: [int payloadLength][int crc32(payload)][payload]
+ * payload:       [UTF docId][long revision][int deltaLength][deltaJson UTF-8 bytes]
+ */
+@Component
+public class OperationLog {
+
+    private static final Logger log = LoggerFactory.getLogger(OperationLog.class);
+
+    /** One logged edit. */
+    public static final class Record {
+        private final String docId;
+        private final long revision;
+        private final String delta;
+
+        Record(String docId, long revision, String delta) {
+            this.docId = docId;
+            this.revision = revision;
+            this.delta = delta;
+        }
+
+        public String getDocId() { return docId; }
+        public long getRevision() { return revision; }
+        public String getDelta() { return delta; }
+    }
+
+    private static final String SEGMENT_PREFIX = "oplog-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    // Anything larger is treated as a corrupt length field
+    private static final int MAX_RECORD_BYTES = 64 * 1024 * 1024;
+
+    private final String directory;
+    private final long fsyncIntervalMs;
+    private final long segmentBytes;
+
+    private Path dir;
+    private FileChannel active;
+    private volatile long activeSeq;
+    private volatile boolean unsynced = false;
+    // Positions: appends so far, and how many of them are fsynced. Appends are numbered under this object's monitor
+    private long appended = 0;
+    private volatile long durable = 0;
+    // Actions waiting for their position to be fsynced, earliest position first; guarded by itself
+    private final PriorityQueue<Waiter> waiters = new PriorityQueue<>(Comparator.comparingLong(w -> w.position));
+    private Thread flusherThread;
+    private volatile boolean isRunning = true;
+
+    // Highest revision logged per document, for each segment (closed and active)
+    private final Map<Long, Map<String, Long>> segmentMaxRevisions = new ConcurrentHashMap<>();
+    // Revision of the latest snapshot written to the DB, per document
+    private final Map<String, Long> snapshotRevisions = new ConcurrentHashMap<>();
+
+    public OperationLog(@Value("${editor.oplog.dir:./data/oplog}") String directory,
+                        @Value("${editor.oplog.fsync-interval-ms:10}") long fsyncIntervalMs,
+                        @Value("${editor.oplog.segment-bytes:16777216}") long segmentBytes) {
+        this.directory = directory;
+        this.fsyncIntervalMs = fsyncIntervalMs;
+        this.segmentBytes = segmentBytes;
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        dir = Paths.get(directory).toAbsolutePath().normalize();
+        Files.createDirectories(dir);
+        List<Long> existing = listSegments();
+        activeSeq = existing.isEmpty() ? 1 : existing.get(existing.size() - 1) + 1;
+        openActive();
+
+        flusherThread = new Thread(() -> {
+            while (isRunning) {
+                try {
+                    Thread.sleep(fsyncIntervalMs);
+                    sync();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (IOException e) {
+                    log.error("Operation log fsync failed: {}", e.getMessage());
+                }
+            }
+        });
+        flusherThread.setName("Editor-OpLog-Flusher");
+        flusherThread.setDaemon(true);
+        flusherThread.start();
+    }
+
+    private static final class Waiter {
+        final long position;
+        final Runnable action;
+
+        Waiter(long position, Runnable action) {
+            this.position = position;
+            this.action = action;
+        }
+    }
+
+    /**
+     * Appends one applied edit. Returns once the bytes are handed to the OS, with the position of the
+     * record; they are fsynced by the flusher thread within fsync-interval-ms.
+     */
+    public long append(String docId, long revision, String deltaJson) throws IOException {
+        byte[] payload = encode(docId, revision, deltaJson);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer buf = ByteBuffer.allocate(8 + payload.length);
+        buf.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+
+        synchronized (this) {
+            while (buf.hasRemaining()) active.write(buf);
+            segmentMaxRevisions.get(activeSeq).merge(docId, revision, Math::max);
+            unsynced = true;
+            long position = ++appended;
+            if (active.position() >= segmentBytes) rotate();
+            return position;
+        }
+    }
+
+    /** Position of the latest append: once it is durable, so is everything appended until now. */
+    public synchronized long lastPosition() {
+        return appended;
+    }
+
+    /**
+     * Runs action once everything up to position is fsynced: on the flusher thread, or right away
+     * when it already is. An action waits for as long as fsync keeps failing.
+     */
+    public void whenDurable(long position, Runnable action) {
+        synchronized (waiters) {
+            if (position > durable) {
+                waiters.add(new Waiter(position, action));
+                return;
+            }
+        }
+        action.run();
+    }
+
+    public void sync() throws IOException {
+        if (!unsynced) return;
+        FileChannel channel;
+        long position;
+        synchronized (this) {
+            unsynced = false;
+            channel = active;
+            position = appended;
+        }
+        // force() runs outside the append lock so lanes keep appending while the disk syncs
+        try {
+            channel.force(false);
+        } catch (ClosedChannelException e) {
+            // Segment was rotated meanwhile; rotate() already forced it
+        }
+        markDurable(position);
+    }
+
+    private void markDurable(long position) {
+        List<Runnable> due = new ArrayList<>();
+        synchronized (waiters) {
+            durable = Math.max(durable, position);
+            while (!waiters.isEmpty() && waiters.peek().position <= durable) due.add(waiters.poll().action);
+        }
+        for (Runnable action : due) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                log.warn("Action after operation log fsync failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Records that docId is durable in the documents table up to revision, and deletes closed
+     * segments that no longer hold anything newer than the snapshots.
+     */
+    public void markSnapshotted(String docId, long revision) {
+        snapshotRevisions.merge(docId, revision, Math::max);
+        List<Long> obsolete = new ArrayList<>();
+        for (Map.Entry<Long, Map<String, Long>> segment : segmentMaxRevisions.entrySet()) {
+            if (segment.getKey() == activeSeq) continue;
+            boolean covered = segment.getValue().entrySet().stream()
+                    .allMatch(e -> snapshotRevisions.getOrDefault(e.getKey(), -1L) >= e.getValue());
+            if (covered) obsolete.add(segment.getKey());
+        }
+        for (Long seq : obsolete) {
+            try {
+                Files.deleteIfExists(segmentPath(seq));
+                segmentMaxRevisions.remove(seq);
+            } catch (IOException e) {
+                log.warn("Could not delete log segment {}: {}", seq, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Reads every record still on disk, grouped by document and sorted by revision.
+     * A torn or corrupt record (crash in the middle of a write) ends its segment.
+     */
+    public Map<String, List<Record>> recover() throws IOException {
+        Map<String, List<Record>> byDoc = new HashMap<>();
+        for (Long seq : listSegments()) {
+            Map<String, Long> maxRevisions = segmentMaxRevisions.computeIfAbsent(seq, s -> new ConcurrentHashMap<>());
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segmentPath(seq))))) {
+                while (true) {
+                    Record record = readRecord(in);
+                    if (record == null) break;
+                    byDoc.computeIfAbsent(record.docId, d -> new ArrayList<>()).add(record);
+                    maxRevisions.merge(record.docId, record.revision, Math::max);
+                }
+            }
+        }
+        for (List<Record> records : byDoc.values()) records.sort(Comparator.comparingLong(Record::getRevision));
+        return byDoc;
+    }
+
+    private Record readRecord(DataInputStream in) throws IOException {
+        try {
+            int length = in.readInt();
+            int expectedCrc = in.readInt();
+            if (length <= 0 || length > MAX_RECORD_BYTES) return null;
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != expectedCrc) return null;
+
+            DataInputStream p = new DataInputStream(new ByteArrayInputStream(payload));
+            String docId = p.readUTF();
+            long revision = p.readLong();
+            byte[] delta = new byte[p.readInt()];
+            p.readFully(delta);
+            return new Record(docId, revision, new String(delta, StandardCharsets.UTF_8));
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static byte[] encode(String docId, long revision, String deltaJson) throws IOException {
+        byte[] delta = deltaJson.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(delta.length + docId.length() + 16);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(docId);
+        out.writeLong(revision);
+        out.writeInt(delta.length);
+        out.write(delta);
+        return bytes.toByteArray();
+    }
+
+    private void rotate() throws IOException {
+        active.force(false);
+        active.close();
+        activeSeq++;
+        openActive();
+    }
+
+    private void openActive() throws IOException {
+        active = FileChannel.open(segmentPath(activeSeq),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segmentMaxRevisions.put(activeSeq, new ConcurrentHashMap<>());
+    }
+
+    private List<Long> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(p -> p.getFileName().toString())
+                    .filter(n -> n.startsWith(SEGMENT_PREFIX) && n.endsWith(SEGMENT_SUFFIX))
+                    .map(n -> Long.parseLong(n.substring(SEGMENT_PREFIX.length(), n.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private Path segmentPath(long seq) {
+        return dir.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, seq, SEGMENT_SUFFIX));
+    }
+
+    @PreDestroy
+    public void close() {
+        isRunning = false;
+        if (flusherThread != null) flusherThread.interrupt();
+        long position;
+        synchronized (this) {
+            try {
+                active.force(false);
+                active.close();
+            } catch (IOException e) {
+                log.error("Could not close operation log: {}", e.getMessage());
+                return;
+            }
+            position = appended;
+        }
+        markDurable(position);
+    }
+}
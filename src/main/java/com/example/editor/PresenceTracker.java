@@ -0,0 +1,154 @@
+package com.example.editor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Who is connected, and who is in which document, with throttled updates for both.
+ *
+ * Sessions are kept in concurrent sets (one for the node, one per document), so a connect, join,
+ * leave or disconnect is O(1) whatever the number of sessions.
+ *
+ * Updates are rate-limited per document (and for the node-wide count): the first change after a
+ * quiet interval is sent at once, later ones are coalesced into a single update at the end of the
+ * interval. A connection storm on one document therefore costs at most one update per interval,
+ * sent only to that document's subscribers.
+ */
+public class PresenceTracker {
+
+    private static final class Entry {
+        final String docId; // null for the node-wide session count
+        final Set<String> sessions = ConcurrentHashMap.newKeySet();
+        long lastSentMillis;
+        boolean scheduled = false;
+        boolean retired = false; // sent its last (empty) update and removed from the map; join must use a new entry
+
+        Entry(String docId) { this.docId = docId; }
+    }
+
+    private final BiConsumer<String, Integer> documentSender;
+    private final IntConsumer sessionsSender;
+    private final long intervalMillis;
+    private final Entry connected = new Entry(null);
+    private final Map<String, Entry> documents = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    // Metrics
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * @param documentSender called with (docId, sessions in it) to publish a document's presence
+     * @param sessionsSender called with the number of sessions connected to this node
+     * @param intervalMillis minimum time between two updates of the same document (or of the node count)
+     */
+    public PresenceTracker(BiConsumer<String, Integer> documentSender, IntConsumer sessionsSender, long intervalMillis) {
+        this.documentSender = documentSender;
+        this.sessionsSender = sessionsSender;
+        this.intervalMillis = intervalMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Editor-Presence-Flusher");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public void connect(String sessionId) {
+        if (connected.sessions.add(sessionId)) changed(connected);
+    }
+
+    public void disconnect(String sessionId) {
+        if (connected.sessions.remove(sessionId)) changed(connected);
+    }
+
+    /** Asks for the node-wide count to be sent again (coalesced like any other change). */
+    public void refresh() {
+        changed(connected);
+    }
+
+    public void join(String docId, String sessionKey) {
+        while (true) {
+            Entry entry = documents.computeIfAbsent(docId, Entry::new);
+            synchronized (entry) {
+                if (entry.retired) continue;
+                if (!entry.sessions.add(sessionKey)) return;
+            }
+            changed(entry);
+            return;
+        }
+    }
+
+    public void leave(String docId, String sessionKey) {
+        Entry entry = documents.get(docId);
+        if (entry != null && entry.sessions.remove(sessionKey)) changed(entry);
+    }
+
+    public int sessions() { return connected.sessions.size(); }
+
+    public int sessions(String docId) {
+        Entry entry = documents.get(docId);
+        return entry == null ? 0 : entry.sessions.size();
+    }
+
+    /** The node's connected sessions, for the sessions gauge. */
+    public Set<String> connectedSessions() { return connected.sessions; }
+
+    private void changed(Entry entry) {
+        synchronized (entry) {
+            if (entry.scheduled) {
+                coalesced.increment();
+                return;
+            }
+            long wait = entry.lastSentMillis + intervalMillis - System.currentTimeMillis();
+            if (wait > 0) {
+                entry.scheduled = true;
+                scheduler.schedule(() -> send(entry), wait, TimeUnit.MILLISECONDS);
+                return;
+            }
+            send(entry);
+        }
+    }
+
+    private void send(Entry entry) {
+        synchronized (entry) {
+            if (entry.retired) return;
+            entry.scheduled = false;
+            entry.lastSentMillis = System.currentTimeMillis();
+            int count = entry.sessions.size();
+            updates.increment();
+            if (entry.docId == null) {
+                sessionsSender.accept(count);
+                return;
+            }
+            documentSender.accept(entry.docId, count);
+            // Only documents with somebody in them keep an entry; the next join starts a fresh one
+            if (count == 0) {
+                entry.retired = true;
+                documents.remove(entry.docId, entry);
+            }
+        }
+    }
+
+    /** Stops the flusher thread; updates still waiting for their interval are dropped. */
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("intervalMillis", intervalMillis);
+        stats.put("sessions", connected.sessions.size());
+        stats.put("documents", documents.size());
+        stats.put("updates", updates.sum());
+        stats.put("coalesced", coalesced.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.editor;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Revision history of every document, in document_revisions: the delta that produced each
+ * revision and, every snapshot-every revisions, the whole document at that revision. Any stored
+ * revision is rebuilt from the nearest snapshot at or before it with fewer than snapshot-every
+ * deltas composed.
+ *
+ * History is written by SnapshotWriter in the same transaction as the snapshot, from the history
+ * ring of the DocumentState; snapshots are composed forward from the content at the last recorded
+ * revision, which shares its untouched chunks with the live document. Revisions that fell out of
+ * the ring before they were recorded (more than editor.ot.history-size edits between two backups)
+ * are lost; an anchor snapshot at the current revision lets history continue from there.
+ *
+ * Compaction keeps storage bounded: beyond the newest keep-revisions revisions only every
+ * compacted-snapshot-every-th snapshot is kept (without its delta), and only keep-compacted-snapshots of them.
+ */
+@Component
+public class RevisionStore {
+
+    /** What one document adds to its history in a write: the deltas since its last recorded revision. */
+    public static final class Entry {
+        private final String docId;
+        private final DocumentState.Snapshot base;
+        private final boolean anchored;
+        // Deltas producing revisions base + 1 .. target, or null when the ring no longer holds them all
+        private final List<Delta> deltas;
+        private final DocumentState.Snapshot target;
+
+        Entry(DocumentState state, DocumentState.Snapshot target) {
+            this.docId = state.getDocId();
+            this.base = state.getRecorded();
+            this.anchored = state.isHistoryAnchored();
+            this.target = target;
+            this.deltas = target.getRevision() < base.getRevision() ? null : state.historyBetween(base.getRevision(), target.getRevision());
+        }
+    }
+
+    private static final String MERGE_REVISION =
+            "MERGE INTO document_revisions (doc_id, revision, delta, snapshot) KEY (doc_id, revision) VALUES (?, ?, ?, ?)";
+    private static final String INSERT_ANCHOR =
+            "INSERT INTO document_revisions (doc_id, revision, delta, snapshot) " +
+            "SELECT ?, ?, NULL, ? WHERE NOT EXISTS (SELECT 1 FROM document_revisions WHERE doc_id = ? AND revision = ?)";
+    private static final String SNAPSHOT_AT_OR_BEFORE =
+            "SELECT revision, snapshot FROM document_revisions WHERE doc_id = ? AND revision <= ? AND snapshot IS NOT NULL " +
+            "ORDER BY revision DESC LIMIT 1";
+    private static final String DELTAS_BETWEEN =
+            "SELECT revision, delta FROM document_revisions WHERE doc_id = ? AND revision > ? AND revision <= ? ORDER BY revision";
+    private static final String RANGE =
+            "SELECT MIN(revision) AS oldest, MAX(revision) AS newest FROM document_revisions WHERE doc_id = ?";
+    // Compaction, below the cutoff: drop all but the coarse snapshots, then their deltas, then the oldest coarse ones
+    private static final String COMPACT_DROP =
+            "DELETE FROM document_revisions WHERE doc_id = ? AND revision < ? AND (MOD(revision, ?) <> 0 OR snapshot IS NULL)";
+    private static final String COMPACT_DELTAS =
+            "UPDATE document_revisions SET delta = NULL WHERE doc_id = ? AND revision < ? AND delta IS NOT NULL";
+    private static final String COMPACT_EXPIRE =
+            "DELETE FROM document_revisions WHERE doc_id = ? AND revision < ?";
+
+    private final JdbcTemplate jdbc;
+    private final int snapshotEvery;
+    private final long keepRevisions;
+    private final int compactedSnapshotEvery;
+    private final int keepCompactedSnapshots;
+
+    public RevisionStore(JdbcTemplate jdbc,
+                         @Value("${editor.history.snapshot-every:100}") int snapshotEvery,
+                         @Value("${editor.history.keep-revisions:10000}") long keepRevisions,
+                         @Value("${editor.history.compacted-snapshot-every:1000}") int compactedSnapshotEvery,
+                         @Value("${editor.history.keep-compacted-snapshots:100}") int keepCompactedSnapshots) {
+        if (snapshotEvery < 1 || compactedSnapshotEvery % snapshotEvery != 0) {
+            throw new IllegalArgumentException("editor.history.compacted-snapshot-every must be a multiple of editor.history.snapshot-every");
+        }
+        this.jdbc = jdbc;
+        this.snapshotEvery = snapshotEvery;
+        this.keepRevisions = keepRevisions;
+        this.compactedSnapshotEvery = compactedSnapshotEvery;
+        this.keepCompactedSnapshots = keepCompactedSnapshots;
+    }
+
+    /**
+     * Writes the history of the entries; runs inside the caller's transaction. The caller marks
+     * each state recorded at its target once the transaction has committed.
+     */
+    void record(List<Entry> entries) {
+        List<Object[]> anchors = new ArrayList<>();
+        List<Object[]> revisions = new ArrayList<>();
+        List<Object[]> compactions = new ArrayList<>();
+        for (Entry entry : entries) {
+            long baseRevision = entry.base.getRevision();
+            if (entry.deltas == null) {
+                // Gap in the history: start again from the current revision
+                anchors.add(anchor(entry.docId, entry.target.getRevision(), entry.target.getRope()));
+                continue;
+            }
+            if (!entry.anchored) anchors.add(anchor(entry.docId, baseRevision, entry.base.getRope()));
+            Rope content = entry.base.getRope();
+            boolean snapshotted = false;
+            for (int i = 0; i < entry.deltas.size(); i++) {
+                long revision = baseRevision + 1 + i;
+                Delta delta = entry.deltas.get(i);
+                content = content.compose(delta);
+                String snapshot = null;
+                if (revision % snapshotEvery == 0) {
+                    snapshot = content.toDelta().toJson();
+                    snapshotted = true;
+                }
+                revisions.add(new Object[]{entry.docId, revision, delta.toJson(), snapshot});
+            }
+            // Compaction runs when a document gained a snapshot, i.e. at most once every snapshot-every revisions
+            // Rounded down to a snapshot, so the oldest kept revisions can still be rebuilt
+            long cutoff = (entry.target.getRevision() - keepRevisions) / snapshotEvery * snapshotEvery;
+            if (snapshotted && cutoff > 0) compactions.add(new Object[]{entry.docId, cutoff});
+        }
+        jdbc.batchUpdate(INSERT_ANCHOR, anchors);
+        jdbc.batchUpdate(MERGE_REVISION, revisions);
+
+        List<Object[]> drops = new ArrayList<>();
+        List<Object[]> expired = new ArrayList<>();
+        for (Object[] compaction : compactions) {
+            long cutoff = (Long) compaction[1];
+            drops.add(new Object[]{compaction[0], cutoff, compactedSnapshotEvery});
+            expired.add(new Object[]{compaction[0], cutoff - (long) keepCompactedSnapshots * compactedSnapshotEvery});
+        }
+        jdbc.batchUpdate(COMPACT_DROP, drops);
+        jdbc.batchUpdate(COMPACT_DELTAS, compactions);
+        jdbc.batchUpdate(COMPACT_EXPIRE, expired);
+    }
+
+    private static Object[] anchor(String docId, long revision, Rope content) {
+        return new Object[]{docId, revision, content.toDelta().toJson(), docId, revision};
+    }
+
+    /** The document at a stored revision, or null when it was never recorded or has been compacted away. */
+    public Delta contentAt(String docId, long revision) {
+        List<Map<String, Object>> snapshot = jdbc.queryForList(SNAPSHOT_AT_OR_BEFORE, docId, revision);
+        if (snapshot.isEmpty()) return null;
+        long from = ((Number) snapshot.get(0).get("revision")).longValue();
+        List<Delta> deltas = deltasBetween(docId, from, revision);
+        if (deltas == null) return null;
+        Rope content = Rope.of(Delta.fromJson((String) snapshot.get(0).get("snapshot")));
+        for (Delta delta : deltas) content = content.compose(delta);
+        return content.toDelta();
+    }
+
+    /**
+     * The deltas that produced revisions from + 1 to to, in order; null when any of them is not
+     * stored (never recorded or compacted).
+     */
+    public List<Delta> deltasBetween(String docId, long from, long to) {
+        List<Delta> deltas = new ArrayList<>();
+        long expected = from + 1;
+        for (Map<String, Object> row : jdbc.queryForList(DELTAS_BETWEEN, docId, from, to)) {
+            String delta = (String) row.get("delta");
+            if (((Number) row.get("revision")).longValue() != expected++ || delta == null) return null;
+            deltas.add(Delta.fromJson(delta));
+        }
+        return expected == to + 1 ? deltas : null;
+    }
+
+    /** Oldest and newest stored revision of a document (both null when it has no history). */
+    public Map<String, Object> range(String docId) {
+        Map<String, Object> row = jdbc.queryForMap(RANGE, docId);
+        Map<String, Object> range = new LinkedHashMap<>();
+        range.put("oldest", row.get("oldest"));
+        range.put("newest", row.get("newest"));
+        return range;
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.editor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory content of an open document: the document delta cut into chunks of about
+ * TARGET_CHUNK characters.
+ *
+ * An edit only composes the chunks it touches; every other chunk is shared with the previous
+ * revision, so a keystroke in a 5 MB document copies a few KB instead of the whole text. Chunks
+ * are also the unit of persistence (one document_blocks row each, see SnapshotWriter) and of
+ * streamed joins.
+ *
+ * Immutable, like Delta.
+ */
+public final class Rope {
+
+    static final int TARGET_CHUNK = 8 * 1024;
+    // Chunks grow up to MAX_CHUNK before they are split, and shrink to MIN_CHUNK before they are merged
+    static final int MAX_CHUNK = 2 * TARGET_CHUNK;
+    static final int MIN_CHUNK = TARGET_CHUNK / 4;
+
+    /** One piece of the document. Its JSON hash is computed once, when it is first persisted. */
+    public static final class Chunk {
+        private final Delta delta;
+        private final int length;
+        private final long bytes;
+        private volatile String hash;
+        private volatile int jsonLength;
+
+        Chunk(Delta delta) {
+            this.delta = delta;
+            this.length = delta.length();
+            this.bytes = estimateBytes(delta);
+        }
+
+        // Restored from a stored block whose hash is already known
+        Chunk(Delta delta, String hash, int jsonLength) {
+            this(delta);
+            this.hash = hash;
+            this.jsonLength = jsonLength;
+        }
+
+        public Delta getDelta() { return delta; }
+        public int getLength() { return length; }
+        public long getBytes() { return bytes; }
+
+        public String getHash() {
+            if (hash == null) {
+                String json = delta.toJson();
+                jsonLength = json.length();
+                hash = Document.hashContent(json);
+            }
+            return hash;
+        }
+
+        public int getJsonLength() {
+            getHash();
+            return jsonLength;
+        }
+    }
+
+    private static final Rope EMPTY = new Rope(Collections.emptyList());
+
+    private final List<Chunk> chunks;
+    private final int length;
+    private final long bytes;
+
+    private Rope(List<Chunk> chunks) {
+        this.chunks = Collections.unmodifiableList(chunks);
+        int length = 0;
+        long bytes = 64;
+        for (Chunk chunk : chunks) {
+            length += chunk.length;
+            bytes += chunk.bytes;
+        }
+        this.length = length;
+        this.bytes = bytes;
+    }
+
+    /** Cuts a whole document into chunks. */
+    public static Rope of(Delta document) {
+        List<Chunk> chunks = new ArrayList<>();
+        addSplit(chunks, document);
+        return chunks.isEmpty() ? EMPTY : new Rope(chunks);
+    }
+
+    /** Rebuilds a rope from stored blocks, keeping their boundaries (and so their hashes). */
+    static Rope ofChunks(List<Chunk> stored) {
+        List<Chunk> chunks = new ArrayList<>(stored.size());
+        for (Chunk chunk : stored) {
+            if (chunk.length > MAX_CHUNK) addSplit(chunks, chunk.delta);
+            else if (chunk.length > 0) chunks.add(chunk);
+        }
+        return new Rope(chunks);
+    }
+
+    public List<Chunk> getChunks() { return chunks; }
+
+    /** Document length in Quill units (characters, embeds count 1). */
+    public int length() { return length; }
+
+    /** Approximate heap footprint, used to bound the document cache. */
+    public long bytes() { return bytes; }
+
+    /** The whole document as one delta. Linear in its size; meant for joins and tests, not per edit. */
+    public Delta toDelta() {
+        List<Delta> deltas = new ArrayList<>(chunks.size());
+        for (Chunk chunk : chunks) deltas.add(chunk.delta);
+        return Delta.concat(deltas);
+    }
+
+    /** The document as consecutive deltas of at most about maxBytes each (at least one chunk each). */
+    public List<Delta> parts(long maxBytes) {
+        List<Delta> parts = new ArrayList<>();
+        List<Delta> current = new ArrayList<>();
+        long currentBytes = 0;
+        for (Chunk chunk : chunks) {
+            if (!current.isEmpty() && currentBytes + chunk.bytes > maxBytes) {
+                parts.add(Delta.concat(current));
+                current = new ArrayList<>();
+                currentBytes = 0;
+            }
+            current.add(chunk.delta);
+            currentBytes += chunk.bytes;
+        }
+        if (!current.isEmpty()) parts.add(Delta.concat(current));
+        return parts;
+    }
+
+    /** Returns the rope after applying change; chunks the change does not touch are reused as-is. */
+    public Rope compose(Delta change) {
+        if (chunks.isEmpty()) return of(new Delta().compose(change));
+
+        Delta.OpIterator changeIter = new Delta.OpIterator(change.getOps());
+        List<Chunk> result = new ArrayList<>(chunks.size() + 2);
+        int i = 0;
+        for (; i < chunks.size() && changeIter.hasNext(); i++) {
+            Chunk chunk = chunks.get(i);
+            Delta.Op next = changeIter.peek();
+            if (next.getRetain() != null && next.getAttributes() == null && changeIter.peekLength() >= chunk.length) {
+                changeIter.next(chunk.length);
+                result.add(chunk);
+                continue;
+            }
+            // The part of the change over this chunk; inserts at its end stay with it
+            Delta piece = new Delta();
+            int remaining = chunk.length;
+            while (changeIter.hasNext()) {
+                if (changeIter.peekType() == Delta.Type.INSERT) {
+                    piece.push(changeIter.next());
+                    continue;
+                }
+                if (remaining == 0) break;
+                Delta.Op op = changeIter.next(remaining);
+                remaining -= op.length();
+                piece.push(op);
+            }
+            addNormalized(result, chunk.delta.compose(piece));
+        }
+        result.addAll(chunks.subList(i, chunks.size()));
+        // Inserts past the end of the last chunk (a retain beyond the end changes nothing)
+        Delta tail = null;
+        while (changeIter.hasNext()) {
+            Delta.Op op = changeIter.next();
+            if (op.getInsert() == null) continue;
+            if (tail == null) tail = new Delta().retain(result.isEmpty() ? 0 : result.get(result.size() - 1).length);
+            tail.push(op);
+        }
+        if (tail != null) {
+            Delta last = result.isEmpty() ? new Delta() : result.remove(result.size() - 1).delta;
+            addNormalized(result, last.compose(tail));
+        }
+        return result.isEmpty() ? EMPTY : new Rope(result);
+    }
+
+    // Adds a composed chunk: dropped when empty, split when too long, merged into its predecessor when small
+    private static void addNormalized(List<Chunk> result, Delta delta) {
+        int length = delta.length();
+        if (length == 0) return;
+        if (length > MAX_CHUNK) {
+            addSplit(result, delta);
+            return;
+        }
+        if (length < MIN_CHUNK && !result.isEmpty()) {
+            Chunk previous = result.get(result.size() - 1);
+            if (previous.length + length <= TARGET_CHUNK) {
+                result.set(result.size() - 1, new Chunk(Delta.concat(List.of(previous.delta, delta))));
+                return;
+            }
+        }
+        result.add(new Chunk(delta));
+    }
+
+    // Cuts a document into TARGET_CHUNK pieces, never between the two halves of a surrogate pair
+    private static void addSplit(List<Chunk> result, Delta document) {
+        Delta current = new Delta();
+        int currentLength = 0;
+        for (Delta.Op op : document.getOps()) {
+            Object insert = op.getInsert();
+            if (insert instanceof String) {
+                String text = (String) insert;
+                int start = 0;
+                while (start < text.length()) {
+                    int end = Math.min(text.length(), start + (TARGET_CHUNK - currentLength));
+                    if (end < text.length() && end > start && Character.isHighSurrogate(text.charAt(end - 1))) end--;
+                    if (end == start) end = Math.min(text.length(), start + 2);
+                    current.insert(text.substring(start, end), op.getAttributes());
+                    currentLength += end - start;
+                    start = end;
+                    if (currentLength >= TARGET_CHUNK) {
+                        result.add(new Chunk(current));
+                        current = new Delta();
+                        currentLength = 0;
+                    }
+                }
+            } else if (insert != null) {
+                current.insert(insert, op.getAttributes());
+                // A large embed (e.g. an inline image) closes its chunk on its own
+                if (++currentLength >= TARGET_CHUNK || String.valueOf(insert).length() >= TARGET_CHUNK) {
+                    result.add(new Chunk(current));
+                    current = new Delta();
+                    currentLength = 0;
+                }
+            }
+        }
+        if (currentLength > 0) result.add(new Chunk(current));
+    }
+
+    // Strings cost ~2 bytes per char; each op carries object/map overhead on top
+    private static long estimateBytes(Delta content) {
+        long bytes = 48;
+        for (Delta.Op op : content.getOps()) {
+            bytes += 48;
+            Object insert = op.getInsert();
+            if (insert instanceof String) {
+                bytes += 2L * ((String) insert).length();
+            } else if (insert instanceof Map) {
+                for (Object value : ((Map<?, ?>) insert).values()) bytes += 32 + 2L * String.valueOf(value).length();
+            }
+            if (op.getAttributes() != null) bytes += 32L * op.getAttributes().size();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.editor;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.*;
+
+// Full-text search over titles and content, answered from the SearchIndex alone (never the documents table).
+// Scoped like the listing: one owner's documents (all documents when no username is given).
+@RestController
+public class SearchController {
+
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_QUERY_LENGTH = 500;
+
+    @Autowired private SearchIndex searchIndex;
+
+    @GetMapping("/api/search")
+    public ResponseEntity<?> search(@RequestParam("q") String query,
+                                    @RequestParam(required = false) String username,
+                                    @RequestParam(defaultValue = "0") int page,
+                                    @RequestParam(defaultValue = "20") int size) throws IOException {
+        if (page < 0 || size < 1 || size > MAX_PAGE_SIZE || query.length() > MAX_QUERY_LENGTH) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error",
+                    "page must be >= 0, size between 1 and " + MAX_PAGE_SIZE + ", q at most " + MAX_QUERY_LENGTH + " characters"));
+        }
+        String owner = (username == null || username.isEmpty()) ? null : username;
+        SearchIndex.Results results = searchIndex.search(query, owner, page, size);
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("query", query);
+        body.put("total", results.getTotal());
+        body.put("page", results.getPage());
+        body.put("size", results.getSize());
+        body.put("tookMicros", results.getTookMicros());
+        body.put("hits", results.getHits());
+        return ResponseEntity.ok(body);
+    }
+
+    @GetMapping("/api/stats/search")
+    public Map<String, Object> getSearchStats() {
+        return searchIndex.stats();
+    }
+}
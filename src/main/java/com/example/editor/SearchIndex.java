@@ -0,0 +1,660 @@
+package com.example.editor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Embedded full-text index over document titles and content, behind /api/search.
+ *
+ * - In memory: an inverted index (term -> documents and term frequencies), ranked with BM25;
+ *   title terms count TITLE_WEIGHT times.
+ * - On disk: an append-only log in editor.search.dir holding the latest title, owner and plain text
+ *   of every indexed document. It is replayed on startup and is where snippets are read from, so a
+ *   query never touches the documents table. It is compacted when mostly superseded records.
+ *
+ * Updates come from the backup pipeline (documents whose snapshot content changed) and are applied
+ * by a single indexer thread, off the backup thread. Queries run concurrently under a read lock.
+ * Documents stored before the index existed are indexed from the DB once, at startup; in a cluster
+ * each node indexes (and searches) the documents it owns. Like the document listing, a search can
+ * be limited to one owner's documents.
+ */
+@Component
+public class SearchIndex implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchIndex.class);
+
+    static final float K1 = 1.2f;
+    static final float B = 0.75f;
+    static final int TITLE_WEIGHT = 3;
+    private static final int MAX_TERM_LENGTH = 64;
+    private static final int SNIPPET_CHARS = 200;
+    private static final int MAX_TITLE_CHARS = 1000;
+    private static final long COMPACT_MIN_BYTES = 16L * 1024 * 1024;
+    // Logs of earlier versions, whose records have no owner: removed, and the index is built again
+    private static final List<String> OLD_FILES = List.of("index.log", "index.built");
+
+    /** One ranked result. The snippet is HTML: escaped text with matching words in &lt;mark&gt;. */
+    public static final class Hit {
+        private final String docId;
+        private final String title;
+        private final float score;
+        private final String snippet;
+
+        Hit(String docId, String title, float score, String snippet) {
+            this.docId = docId;
+            this.title = title;
+            this.score = score;
+            this.snippet = snippet;
+        }
+
+        public String getDocId() { return docId; }
+        public String getTitle() { return title; }
+        public float getScore() { return score; }
+        public String getSnippet() { return snippet; }
+    }
+
+    /** One page of results, with the total number of matching documents. */
+    public static final class Results {
+        private final List<Hit> hits;
+        private final int total;
+        private final int page;
+        private final int size;
+        private final long tookMicros;
+
+        Results(List<Hit> hits, int total, int page, int size, long tookMicros) {
+            this.hits = hits;
+            this.total = total;
+            this.page = page;
+            this.size = size;
+            this.tookMicros = tookMicros;
+        }
+
+        public List<Hit> getHits() { return hits; }
+        public int getTotal() { return total; }
+        public int getPage() { return page; }
+        public int getSize() { return size; }
+        public long getTookMicros() { return tookMicros; }
+    }
+
+    // An indexed document; its title and text live in the log record at recordOffset
+    private static final class Doc {
+        final int ordinal;
+        final String docId;
+        String title;
+        String owner;
+        String contentHash;
+        int length;          // weighted token count, for BM25 length normalisation
+        long recordOffset;
+        int recordLength;
+        long textOffset;
+        int textBytes;
+
+        Doc(int ordinal, String docId) {
+            this.ordinal = ordinal;
+            this.docId = docId;
+        }
+    }
+
+    // Documents containing one term, sorted by ordinal, with the term's (weighted) frequency in each
+    private static final class Postings {
+        int[] docs = new int[4];
+        int[] freqs = new int[4];
+        int size;
+
+        void put(int ordinal, int freq) {
+            int i = Arrays.binarySearch(docs, 0, size, ordinal);
+            if (i >= 0) {
+                freqs[i] = freq;
+                return;
+            }
+            i = -i - 1;
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            System.arraycopy(docs, i, docs, i + 1, size - i);
+            System.arraycopy(freqs, i, freqs, i + 1, size - i);
+            docs[i] = ordinal;
+            freqs[i] = freq;
+            size++;
+        }
+
+        void remove(int ordinal) {
+            int i = Arrays.binarySearch(docs, 0, size, ordinal);
+            if (i < 0) return;
+            System.arraycopy(docs, i + 1, docs, i, size - i - 1);
+            System.arraycopy(freqs, i + 1, freqs, i, size - i - 1);
+            size--;
+        }
+    }
+
+    private final Path dir;
+    private final Path file;
+    private final Path built;
+    private final JdbcTemplate jdbc;
+    private final ClusterService clusterService;
+    private final ColdStore coldStore;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ExecutorService indexer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "Editor-Search-Indexer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Guarded by lock; only the indexer thread writes
+    private final Map<String, Doc> docs = new HashMap<>();
+    private final List<Doc> byOrdinal = new ArrayList<>();
+    private final Map<String, Postings> postings = new HashMap<>();
+    private long totalLength;
+    private FileChannel channel;
+    // Written by the indexer thread only
+    private volatile long fileSize;
+    private volatile long liveBytes;
+
+    public SearchIndex(@Value("${editor.search.dir:./data/search}") String dir, JdbcTemplate jdbc, ClusterService clusterService,
+                       ColdStore coldStore) {
+        this.dir = Paths.get(dir).toAbsolutePath().normalize();
+        this.file = this.dir.resolve("index-2.log");
+        this.built = this.dir.resolve("index-2.built");
+        this.jdbc = jdbc;
+        this.clusterService = clusterService;
+        this.coldStore = coldStore;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        Files.createDirectories(dir);
+        for (String old : OLD_FILES) {
+            if (Files.deleteIfExists(dir.resolve(old))) log.info("🔎 Removed search index file of an earlier version: {}", old);
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // Loading runs on the indexer, so startup does not wait for it and updates queue up behind it
+        indexer.execute(() -> {
+            try {
+                long start = System.nanoTime();
+                load();
+                log.info("🔎 Search index loaded: {} document(s) in {} ms", docs.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            } catch (IOException e) {
+                log.error("Search index could not be loaded: {}", e.getMessage());
+            }
+        });
+    }
+
+    // Once the schema exists: index what is already in the DB, unless a previous build finished
+    @Override
+    public void run(ApplicationArguments args) {
+        if (Files.exists(built)) return;
+        indexer.execute(() -> {
+            try {
+                long start = System.nanoTime();
+                int indexed = buildFromDatabase();
+                Files.write(built, new byte[0]);
+                log.info("🔎 Search index built from the database: {} document(s) in {} ms", indexed, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            } catch (Exception e) {
+                log.error("Search index could not be built: {}", e.getMessage());
+            }
+        });
+    }
+
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        indexer.shutdown();
+        indexer.awaitTermination(10, TimeUnit.SECONDS);
+        channel.close();
+    }
+
+    // --- Updates ---
+
+    /**
+     * Queues a document for (re)indexing; skipped when its content hash is the one already indexed.
+     * A null owner keeps the one already indexed (looked up in the DB for a document new to the index).
+     */
+    public void update(String docId, String title, String owner, String contentHash, Rope content) {
+        indexer.execute(() -> {
+            try {
+                index(docId, title, owner, contentHash, plainText(content));
+            } catch (IOException e) {
+                log.warn("Search index update failed for {}: {}", docId, e.getMessage());
+            }
+        });
+    }
+
+    /** Indexes the rows a snapshot cycle wrote; rows whose content and title are already indexed are skipped. */
+    public void update(SnapshotWriter.Result result) {
+        for (SnapshotWriter.Row row : result.getPersisted()) {
+            DocumentState.Snapshot snap = row.getSnapshot();
+            update(row.getState().getDocId(), snap.getTitle(), null, row.getContentHash(), snap.getRope());
+        }
+    }
+
+    /** Waits until every queued update has been applied (for tests and benchmarks). */
+    void flush() throws InterruptedException {
+        try {
+            indexer.submit(() -> {}).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // Indexer thread only
+    private void index(String docId, String title, String owner, String contentHash, String text) throws IOException {
+        if (title != null && title.length() > MAX_TITLE_CHARS) title = title.substring(0, MAX_TITLE_CHARS);
+        if (title == null) title = "";
+        Doc existing = docs.get(docId);
+        if (owner == null) owner = existing != null ? existing.owner : ownerInDatabase(docId);
+        if (existing != null && contentHash != null && contentHash.equals(existing.contentHash) && title.equals(existing.title)
+                && Objects.equals(owner, existing.owner)) return;
+
+        // Terms of the indexed version, to take the document out of their postings
+        Map<String, Integer> oldTerms = existing == null ? Collections.emptyMap()
+                : termFrequencies(existing.title, readText(existing));
+        Map<String, Integer> newTerms = termFrequencies(title, text);
+
+        // Append the record: [length][docId][title][owner][hash][text bytes][text]
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(text.length() + 128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        out.writeUTF(docId);
+        out.writeUTF(title);
+        out.writeUTF(owner == null ? "" : owner);
+        out.writeUTF(contentHash == null ? "" : contentHash);
+        byte[] textBytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(textBytes.length);
+        int textStart = bytes.size();
+        out.write(textBytes);
+        ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+        record.putInt(0, record.remaining() - 4);
+        long offset = fileSize;
+        while (record.hasRemaining()) fileSize += channel.write(record, fileSize);
+
+        lock.writeLock().lock();
+        try {
+            Doc doc = existing;
+            if (doc == null) {
+                doc = new Doc(byOrdinal.size(), docId);
+                byOrdinal.add(doc);
+                docs.put(docId, doc);
+            } else {
+                liveBytes -= doc.recordLength;
+                totalLength -= doc.length;
+                for (String term : oldTerms.keySet()) {
+                    Postings p = postings.get(term);
+                    if (p == null) continue;
+                    p.remove(doc.ordinal);
+                    if (p.size == 0) postings.remove(term);
+                }
+            }
+            int length = 0;
+            for (Map.Entry<String, Integer> e : newTerms.entrySet()) {
+                postings.computeIfAbsent(e.getKey(), t -> new Postings()).put(doc.ordinal, e.getValue());
+                length += e.getValue();
+            }
+            doc.title = title;
+            doc.owner = owner;
+            doc.contentHash = contentHash;
+            doc.length = length;
+            doc.recordOffset = offset;
+            doc.recordLength = (int) (fileSize - offset);
+            doc.textOffset = offset + textStart;
+            doc.textBytes = textBytes.length;
+            totalLength += length;
+            liveBytes += doc.recordLength;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (fileSize > COMPACT_MIN_BYTES && fileSize > 2 * liveBytes) compact();
+    }
+
+    // Replays the log: the last record of each document wins
+    private void load() throws IOException {
+        long size = channel.size();
+        long position = 0;
+        Map<String, long[]> latest = new LinkedHashMap<>();
+        ByteBuffer header = ByteBuffer.allocate(6);
+        while (position + 6 <= size) {
+            // Only the document id is needed here: [length][id length][id]...
+            header.clear();
+            channel.read(header, position);
+            int length = header.getInt(0);
+            if (length <= 0 || position + 4 + length > size) break; // torn write at the end
+            ByteBuffer id = ByteBuffer.allocate(2 + (header.getShort(4) & 0xFFFF));
+            channel.read(id, position + 4);
+            String docId = new DataInputStream(new ByteArrayInputStream(id.array())).readUTF();
+            latest.put(docId, new long[]{position, length + 4});
+            position += 4 + length;
+        }
+        fileSize = position;
+        channel.truncate(position);
+
+        for (long[] at : latest.values()) {
+            indexExisting(readRecord(at[0], (int) at[1]), at[0], (int) at[1]);
+        }
+    }
+
+    private static final class Record {
+        String docId;
+        String title;
+        String owner;
+        String contentHash;
+        String text;
+        int textStart;
+    }
+
+    private Record readRecord(long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) throw new IOException("Truncated search index record");
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(buffer.array()));
+        Record r = new Record();
+        in.readInt();
+        r.docId = in.readUTF();
+        r.title = in.readUTF();
+        r.owner = in.readUTF();
+        r.contentHash = in.readUTF();
+        int textBytes = in.readInt();
+        r.textStart = length - textBytes;
+        r.text = new String(buffer.array(), r.textStart, textBytes, StandardCharsets.UTF_8);
+        return r;
+    }
+
+    // Indexes a record that is already in the log (startup load, compaction)
+    private void indexExisting(Record r, long offset, int length) {
+        Map<String, Integer> terms = termFrequencies(r.title, r.text);
+        lock.writeLock().lock();
+        try {
+            Doc doc = docs.get(r.docId);
+            if (doc == null) {
+                doc = new Doc(byOrdinal.size(), r.docId);
+                byOrdinal.add(doc);
+                docs.put(r.docId, doc);
+            }
+            int total = 0;
+            for (Map.Entry<String, Integer> e : terms.entrySet()) {
+                postings.computeIfAbsent(e.getKey(), t -> new Postings()).put(doc.ordinal, e.getValue());
+                total += e.getValue();
+            }
+            doc.title = r.title;
+            doc.owner = r.owner.isEmpty() ? null : r.owner;
+            doc.contentHash = r.contentHash.isEmpty() ? null : r.contentHash;
+            doc.length = total;
+            doc.recordOffset = offset;
+            doc.recordLength = length;
+            doc.textOffset = offset + r.textStart;
+            doc.textBytes = length - r.textStart;
+            totalLength += total;
+            liveBytes += length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Rewrites the log with only the latest record of each document, then swaps it in
+    private void compact() throws IOException {
+        Path tmp = dir.resolve("index.log.tmp");
+        Map<Doc, Long> moved = new HashMap<>();
+        long position = 0;
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (Doc doc : docs.values()) {
+                moved.put(doc, position);
+                position += channel.transferTo(doc.recordOffset, doc.recordLength, out.position(position));
+            }
+            out.force(false);
+        }
+        lock.writeLock().lock();
+        try {
+            channel.close();
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            for (Map.Entry<Doc, Long> e : moved.entrySet()) {
+                Doc doc = e.getKey();
+                long shift = e.getValue() - doc.recordOffset;
+                doc.recordOffset += shift;
+                doc.textOffset += shift;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("🔎 Search index compacted: {} -> {} bytes", fileSize, position);
+        fileSize = position;
+        liveBytes = position;
+    }
+
+    // Indexes every document this node owns, straight from the DB; documents already indexed with
+    // the same content hash are skipped, so an interrupted build simply starts over
+    private int buildFromDatabase() throws IOException {
+        List<Map<String, Object>> rows = jdbc.queryForList("SELECT doc_id, title, owner, content_hash, archive_segment, archive_offset FROM documents");
+        int indexed = 0;
+        for (Map<String, Object> row : rows) {
+            String docId = (String) row.get("doc_id");
+            if (!clusterService.isLocal(docId)) continue;
+            StringBuilder text = new StringBuilder();
+            if (row.get("archive_segment") != null) {
+                Rope archived = coldStore.read(((Number) row.get("archive_segment")).intValue(), ((Number) row.get("archive_offset")).longValue()).toRope();
+                index(docId, (String) row.get("title"), (String) row.get("owner"), (String) row.get("content_hash"), plainText(archived));
+                indexed++;
+                continue;
+            }
+            String content = jdbc.queryForObject("SELECT content FROM documents WHERE doc_id = ?", String.class, docId);
+            if (content != null) {
+                appendText(text, DocumentState.parseStoredContent(content));
+            } else {
+                for (String block : jdbc.queryForList(
+                        "SELECT content FROM document_blocks WHERE doc_id = ? ORDER BY block_index", String.class, docId)) {
+                    appendText(text, Delta.fromJson(block));
+                }
+            }
+            index(docId, (String) row.get("title"), (String) row.get("owner"), (String) row.get("content_hash"), text.toString());
+            indexed++;
+        }
+        return indexed;
+    }
+
+    // Owner of a document the index has not seen yet (first snapshot of a document created elsewhere)
+    private String ownerInDatabase(String docId) {
+        if (jdbc == null) return null;
+        List<String> owners = jdbc.queryForList("SELECT owner FROM documents WHERE doc_id = ?", String.class, docId);
+        return owners.isEmpty() ? null : owners.get(0);
+    }
+
+    // --- Queries ---
+
+    /**
+     * Ranked documents matching any word of the query (documents matching more words rank higher),
+     * among the documents of owner, or all documents when owner is null.
+     */
+    public Results search(String query, String owner, int page, int size) throws IOException {
+        long start = System.nanoTime();
+        Set<String> terms = new LinkedHashSet<>(tokenize(query == null ? "" : query));
+        lock.readLock().lock();
+        try {
+            int n = docs.size();
+            if (terms.isEmpty() || n == 0) return new Results(Collections.emptyList(), 0, page, size, 0);
+            float avgLength = Math.max(1f, (float) totalLength / n);
+            float[] scores = new float[byOrdinal.size()];
+            int[] matched = new int[byOrdinal.size()];
+            int matches = 0;
+            for (String term : terms) {
+                Postings p = postings.get(term);
+                if (p == null) continue;
+                float idf = (float) Math.log(1 + (n - p.size + 0.5) / (p.size + 0.5));
+                for (int i = 0; i < p.size; i++) {
+                    int ordinal = p.docs[i];
+                    if (owner != null && !owner.equals(byOrdinal.get(ordinal).owner)) continue;
+                    float tf = p.freqs[i];
+                    float norm = K1 * (1 - B + B * byOrdinal.get(ordinal).length / avgLength);
+                    if (scores[ordinal] == 0) matched[matches++] = ordinal;
+                    scores[ordinal] += idf * tf * (K1 + 1) / (tf + norm);
+                }
+            }
+
+            // Top (page + 1) * size by score, lowest on top of the heap
+            int wanted = (int) Math.min((long) (page + 1) * size, matches);
+            PriorityQueue<Integer> top = new PriorityQueue<>(Math.max(1, wanted),
+                    (a, b) -> scores[a] != scores[b] ? Float.compare(scores[a], scores[b]) : Integer.compare(b, a));
+            for (int i = 0; i < matches && wanted > 0; i++) {
+                int ordinal = matched[i];
+                if (top.size() < wanted) top.add(ordinal);
+                else if (top.comparator().compare(ordinal, top.peek()) > 0) {
+                    top.poll();
+                    top.add(ordinal);
+                }
+            }
+            List<Integer> ranked = new ArrayList<>(top);
+            ranked.sort(top.comparator().reversed());
+
+            List<Hit> hits = new ArrayList<>();
+            for (int i = page * size; i < ranked.size(); i++) {
+                Doc doc = byOrdinal.get(ranked.get(i));
+                hits.add(new Hit(doc.docId, doc.title, scores[doc.ordinal], snippet(readText(doc), terms)));
+            }
+            return new Results(hits, matches, page, size, (System.nanoTime() - start) / 1000);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("documents", docs.size());
+            stats.put("terms", postings.size());
+            stats.put("fileBytes", fileSize);
+            stats.put("liveBytes", liveBytes);
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private String readText(Doc doc) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(doc.textBytes);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, doc.textOffset + buffer.position()) < 0) throw new IOException("Truncated search index record");
+        }
+        return new String(buffer.array(), StandardCharsets.UTF_8);
+    }
+
+    // --- Text ---
+
+    static String plainText(Rope content) {
+        StringBuilder text = new StringBuilder(content.length());
+        for (Rope.Chunk chunk : content.getChunks()) appendText(text, chunk.getDelta());
+        return text.toString();
+    }
+
+    // Inserted text as-is; embeds (images, formulas) become a space
+    private static void appendText(StringBuilder text, Delta delta) {
+        for (Delta.Op op : delta.getOps()) {
+            Object insert = op.getInsert();
+            if (insert instanceof String) text.append((String) insert);
+            else if (insert != null) text.append(' ');
+        }
+    }
+
+    private static Map<String, Integer> termFrequencies(String title, String text) {
+        Map<String, Integer> terms = new HashMap<>();
+        for (String term : tokenize(title)) terms.merge(term, TITLE_WEIGHT, Integer::sum);
+        for (String term : tokenize(text)) terms.merge(term, 1, Integer::sum);
+        return terms;
+    }
+
+    /** Lower-cased runs of letters and digits; each CJK ideograph is a word of its own. */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        forEachToken(text, (start, end) -> tokens.add(text.substring(start, end).toLowerCase(Locale.ROOT)));
+        return tokens;
+    }
+
+    private interface TokenConsumer {
+        void accept(int start, int end);
+    }
+
+    private static void forEachToken(String text, TokenConsumer consumer) {
+        int i = 0;
+        int length = text.length();
+        while (i < length) {
+            int cp = text.codePointAt(i);
+            if (!Character.isLetterOrDigit(cp)) {
+                i += Character.charCount(cp);
+                continue;
+            }
+            int start = i;
+            i += Character.charCount(cp);
+            if (!Character.isIdeographic(cp)) {
+                while (i < length) {
+                    int next = text.codePointAt(i);
+                    if (!Character.isLetterOrDigit(next) || Character.isIdeographic(next)) break;
+                    i += Character.charCount(next);
+                }
+            }
+            if (i - start <= MAX_TERM_LENGTH) consumer.accept(start, i);
+        }
+    }
+
+    // About SNIPPET_CHARS of text around the first match, with every matching word marked
+    static String snippet(String text, Set<String> terms) {
+        int[] first = {-1};
+        forEachToken(text, (start, end) -> {
+            if (first[0] < 0 && terms.contains(text.substring(start, end).toLowerCase(Locale.ROOT))) first[0] = start;
+        });
+        int from = first[0] < 0 ? 0 : Math.max(0, first[0] - SNIPPET_CHARS / 4);
+        while (from > 0 && from < text.length() && !Character.isWhitespace(text.charAt(from - 1))) from--;
+        int to = Math.min(text.length(), from + SNIPPET_CHARS);
+        while (to < text.length() && !Character.isWhitespace(text.charAt(to))) to++;
+        String window = text.substring(from, to);
+
+        StringBuilder html = new StringBuilder(window.length() + 32);
+        if (from > 0) html.append("… ");
+        int[] copied = {0};
+        forEachToken(window, (start, end) -> {
+            if (!terms.contains(window.substring(start, end).toLowerCase(Locale.ROOT))) return;
+            escape(html, window.substring(copied[0], start));
+            html.append("<mark>");
+            escape(html, window.substring(start, end));
+            html.append("</mark>");
+            copied[0] = end;
+        });
+        escape(html, window.substring(copied[0]));
+        if (to < text.length()) html.append(" …");
+        return html.toString().replace('\n', ' ').trim();
+    }
+
+    private static void escape(StringBuilder html, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<': html.append("&lt;"); break;
+                case '>': html.append("&gt;"); break;
+                case '&': html.append("&amp;"); break;
+                case '"': html.append("&quot;"); break;
+                default: html.append(c);
+            }
+        }
+    }
+}
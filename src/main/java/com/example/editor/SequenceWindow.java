@@ -0,0 +1,41 @@
+package com.example.editor;
+
+/**
+ * Sliding window over one client's edit sequence numbers, to drop retransmitted edits: the highest
+ * seq applied plus one bit for each of the WIDTH seqs below it. Checking and recording are O(1).
+ *
+ * A client numbers its edits 1, 2, 3... and resends an edit with the same seq, so a seq at or below
+ * the window that is already marked has been applied. Seqs that fell off the bottom of the window
+ * are treated as duplicates too: a client only ever resends its newest unacknowledged edits.
+ */
+final class SequenceWindow {
+
+    static final int WIDTH = 64;
+
+    private long highest = 0;
+    private long applied = 1;       // bit i: seq (highest - i) was applied; seq 0 is never used
+    private long highestRevision = -1;
+
+    boolean isDuplicate(long seq) {
+        if (seq > highest) return false;
+        long offset = highest - seq;
+        return offset >= WIDTH || (applied & (1L << offset)) != 0;
+    }
+
+    /** Marks seq as applied, at the given revision. */
+    void record(long seq, long revision) {
+        if (seq > highest) {
+            long shift = seq - highest;
+            applied = shift >= WIDTH ? 1 : (applied << shift) | 1;
+            highest = seq;
+            highestRevision = revision;
+        } else if (highest - seq < WIDTH) {
+            applied |= 1L << (highest - seq);
+        }
+    }
+
+    /** The revision an applied seq produced, when it is the newest one; -1 otherwise. */
+    long revisionOf(long seq) {
+        return seq == highest ? highestRevision : -1;
+    }
+}
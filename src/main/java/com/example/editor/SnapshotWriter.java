@@ -0,0 +1,215 @@
+package com.example.editor;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Writes document snapshots, a whole backup cycle at a time: one transaction, JDBC batches
+ * instead of a findById + saveAndFlush per document.
+ *
+ * - Content lives in document_blocks, one row per Rope chunk. Only blocks whose hash differs from
+ *   the last written one are rewritten; documents.content is set to NULL.
+ * - Rows whose content hash matches the last written one only get their revision bumped.
+ * - A changed document that was archived (see ColdStore) comes back into the table: it was loaded
+ *   without block hashes, so all of its blocks are written, and its stub columns are cleared.
+ * - Updates only move a row forward (revision &lt; new revision), so a slower writer can never put
+ *   an older snapshot over a newer one.
+ * - Rows that do not exist yet are inserted, unless another writer created them meanwhile.
+ *
+ * - The history since the last write goes to the RevisionStore, in the same transaction.
+ *
+ * Writes are serialised (backup cycle vs. cache write-back): which blocks changed is decided
+ * against the hashes the previous write left in the DocumentState, so that write must be finished.
+ */
+@Component
+public class SnapshotWriter {
+
+    /** Row counts and timing of one write. */
+    public static final class Result {
+        private final List<Row> persisted = new ArrayList<>();
+        private int written;
+        private int inserted;
+        private int unchanged;
+        private int stale;
+        private int blocks;
+        private long nanos;
+
+        /** Rows now in the DB (stale ones excluded); their states are already marked persisted. */
+        public List<Row> getPersisted() { return persisted; }
+        public int getWritten() { return written; }
+        public int getInserted() { return inserted; }
+        public int getUnchanged() { return unchanged; }
+        public int getStale() { return stale; }
+        /** Blocks rewritten (unchanged blocks are skipped). */
+        public int getBlocks() { return blocks; }
+        public long getNanos() { return nanos; }
+    }
+
+    private static final String UPDATE_CONTENT =
+            "UPDATE documents SET content = NULL, content_hash = ?, content_length = ?, last_modified = ?, revision = ?, " +
+            "archive_segment = NULL, archive_offset = NULL, archived_at = NULL " +
+            "WHERE doc_id = ? AND (revision IS NULL OR revision < ?)";
+    private static final String UPDATE_REVISION =
+            "UPDATE documents SET revision = ? WHERE doc_id = ? AND (revision IS NULL OR revision < ?)";
+    private static final String INSERT_IF_ABSENT =
+            "INSERT INTO documents (doc_id, title, owner, content, content_hash, content_length, last_modified, revision) " +
+            "SELECT ?, 'Auto-Saved Doc', 'Anonymous', NULL, ?, ?, ?, ? WHERE NOT EXISTS (SELECT 1 FROM documents WHERE doc_id = ?)";
+    private static final String MERGE_BLOCK =
+            "MERGE INTO document_blocks (doc_id, block_index, content, content_hash) KEY (doc_id, block_index) VALUES (?, ?, ?, ?)";
+    private static final String DELETE_BLOCKS_FROM =
+            "DELETE FROM document_blocks WHERE doc_id = ? AND block_index >= ?";
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transaction;
+    private final RevisionStore revisionStore;
+    // One write at a time; held across the transaction, so not a monitor (see DocumentState.persistLock)
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public SnapshotWriter(JdbcTemplate jdbc, PlatformTransactionManager transactionManager, RevisionStore revisionStore) {
+        this.jdbc = jdbc;
+        this.revisionStore = revisionStore;
+        this.transaction = new TransactionTemplate(transactionManager);
+    }
+
+    /** One document's snapshot, hashed block by block before the transaction starts. */
+    public static final class Row {
+        private final DocumentState state;
+        private final DocumentState.Snapshot snapshot;
+        private final RevisionStore.Entry history;
+        private final long revision;
+        private final List<Rope.Chunk> chunks;
+        private final List<String> blockHashes;
+        private final String hash;
+        private final long contentLength;
+        private boolean unchanged;
+        private boolean persisted;
+        private long dirtySinceMillis;
+
+        Row(DocumentState state) {
+            DocumentState.Snapshot snap = state.snapshot();
+            this.state = state;
+            this.snapshot = snap;
+            this.history = new RevisionStore.Entry(state, snap);
+            this.revision = snap.getRevision();
+            this.chunks = snap.getRope().getChunks();
+            this.blockHashes = new ArrayList<>(chunks.size());
+            long length = 0;
+            // Chunks shared with the last snapshot already know their hash
+            for (Rope.Chunk chunk : chunks) {
+                blockHashes.add(chunk.getHash());
+                length += chunk.getJsonLength();
+            }
+            this.contentLength = length;
+            this.hash = Document.hashContent(String.join("\n", blockHashes));
+        }
+
+        public DocumentState getState() { return state; }
+        public DocumentState.Snapshot getSnapshot() { return snapshot; }
+        public long getRevision() { return revision; }
+        public String getContentHash() { return hash; }
+        /** When the oldest edit in this snapshot was applied (0 if none), read before it was marked persisted. */
+        public long getDirtySinceMillis() { return dirtySinceMillis; }
+    }
+
+    /** Writes the current snapshot of every state. */
+    public Result write(Collection<DocumentState> states) {
+        long start = System.nanoTime();
+        // Requirement g: Parallel Streams (reduction/processing) - serialising and hashing new blocks is the CPU-heavy part
+        List<Row> rows = states.parallelStream().map(Row::new).collect(Collectors.toList());
+        Result result = new Result();
+        lock.lock();
+        try {
+            if (!rows.isEmpty()) transaction.executeWithoutResult(status -> writeRows(rows, result));
+            for (Row row : rows) {
+                if (!row.persisted) continue;
+                row.dirtySinceMillis = row.state.getDirtySinceMillis();
+                row.state.markPersisted(row.revision, row.hash, row.blockHashes);
+                row.state.markRecorded(row.snapshot);
+                result.persisted.add(row);
+            }
+        } finally {
+            lock.unlock();
+        }
+        result.nanos = System.nanoTime() - start;
+        return result;
+    }
+
+    private void writeRows(List<Row> rows, Result result) {
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Row> changed = new ArrayList<>();
+        List<Row> unchanged = new ArrayList<>();
+        for (Row row : rows) {
+            row.unchanged = row.hash.equals(row.state.getPersistedContentHash());
+            (row.unchanged ? unchanged : changed).add(row);
+        }
+
+        List<Row> missing = new ArrayList<>();
+        int[] counts = jdbc.batchUpdate(UPDATE_CONTENT, changed.stream().map(r -> new Object[]{
+                r.hash, r.contentLength, now, r.revision, r.state.getDocId(), r.revision
+        }).collect(Collectors.toList()));
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                result.written++;
+                changed.get(i).persisted = true;
+            } else {
+                missing.add(changed.get(i));
+            }
+        }
+        counts = jdbc.batchUpdate(UPDATE_REVISION, unchanged.stream().map(r -> new Object[]{
+                r.revision, r.state.getDocId(), r.revision
+        }).collect(Collectors.toList()));
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                result.unchanged++;
+                unchanged.get(i).persisted = true;
+            } else {
+                missing.add(unchanged.get(i));
+            }
+        }
+
+        // Not updated: either the row does not exist yet or it already holds this revision or a newer one
+        counts = jdbc.batchUpdate(INSERT_IF_ABSENT, missing.stream().map(r -> new Object[]{
+                r.state.getDocId(), r.hash, r.contentLength, now, r.revision, r.state.getDocId()
+        }).collect(Collectors.toList()));
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                result.inserted++;
+                missing.get(i).persisted = true;
+            } else {
+                result.stale++;
+            }
+        }
+
+        // Blocks of the rows that moved forward
+        List<Object[]> blocks = new ArrayList<>();
+        List<Object[]> truncations = new ArrayList<>();
+        List<RevisionStore.Entry> history = new ArrayList<>();
+        for (Row row : rows) {
+            if (!row.persisted) continue;
+            history.add(row.history);
+            List<String> previous = row.state.getPersistedBlockHashes();
+            for (int i = 0; i < row.chunks.size(); i++) {
+                String blockHash = row.blockHashes.get(i);
+                if (previous != null && i < previous.size() && previous.get(i).equals(blockHash)) continue;
+                blocks.add(new Object[]{row.state.getDocId(), i, row.chunks.get(i).getDelta().toJson(), blockHash});
+            }
+            if (previous == null || previous.size() > row.chunks.size()) {
+                truncations.add(new Object[]{row.state.getDocId(), row.chunks.size()});
+            }
+        }
+        jdbc.batchUpdate(MERGE_BLOCK, blocks);
+        jdbc.batchUpdate(DELETE_BLOCKS_FROM, truncations);
+        result.blocks = blocks.size();
+        revisionStore.record(history);
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.editor;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed file store behind /upload and /uploads/{name}.
+ *
+ * A file is streamed into a temp file while its SHA-256 is computed, then moved to
+ * "{sha256}.{ext}". The same content uploaded again ends up at the same name, so duplicates share
+ * one file and the temp copy is simply discarded. Stored files never change, which lets them be
+ * served with immutable cache headers.
+ */
+@Component
+public class UploadStore {
+
+    /** Result of storing one file. */
+    public static final class StoredFile {
+        private final String fileName;
+        private final long size;
+        private final boolean duplicate;
+
+        StoredFile(String fileName, long size, boolean duplicate) {
+            this.fileName = fileName;
+            this.size = size;
+            this.duplicate = duplicate;
+        }
+
+        public String getFileName() { return fileName; }
+        public String getUrl() { return "/uploads/" + fileName; }
+        public long getSize() { return size; }
+        public boolean isDuplicate() { return duplicate; }
+    }
+
+    /** Thrown when an upload is larger than editor.upload.max-bytes. */
+    public static class TooLargeException extends IOException {
+        public TooLargeException(long maxBytes) { super("Upload exceeds " + maxBytes + " bytes"); }
+    }
+
+    private static final Pattern SAFE_EXTENSION = Pattern.compile("[a-z0-9]{1,10}");
+
+    private final Path root;
+    private final Path tempDir;
+    private final long maxBytes;
+
+    public UploadStore(@Value("${editor.upload.dir:uploads}") String dir,
+                       @Value("${editor.upload.max-bytes:52428800}") long maxBytes) throws IOException {
+        this.root = Paths.get(dir).toAbsolutePath().normalize();
+        // Inside the store so the final move is a same-filesystem rename
+        this.tempDir = root.resolve(".tmp");
+        this.maxBytes = maxBytes;
+        Files.createDirectories(tempDir);
+    }
+
+    public StoredFile store(InputStream in, String originalName) throws IOException {
+        Path temp = tempDir.resolve(UUID.randomUUID() + ".part");
+        try {
+            MessageDigest sha256 = sha256();
+            long size = 0;
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                int n;
+                while ((n = in.read(buffer.array())) != -1) {
+                    size += n;
+                    if (size > maxBytes) throw new TooLargeException(maxBytes);
+                    sha256.update(buffer.array(), 0, n);
+                    buffer.limit(n).position(0);
+                    while (buffer.hasRemaining()) out.write(buffer);
+                    buffer.clear();
+                }
+            }
+
+            String fileName = toHex(sha256.digest()) + extensionOf(originalName);
+            Path target = root.resolve(fileName);
+            if (Files.exists(target)) return new StoredFile(fileName, size, true);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                // A concurrent upload of the same content got there first
+                return new StoredFile(fileName, size, true);
+            }
+            return new StoredFile(fileName, size, false);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Resolves a file name from a /uploads URL, or null if it does not name a stored file.
+     * Also serves the UUID-named files stored before the store became content-addressed.
+     */
+    public Path resolve(String fileName) {
+        if (fileName.isEmpty() || fileName.startsWith(".")) return null;
+        Path path = root.resolve(fileName).normalize();
+        if (!root.equals(path.getParent()) || !Files.isRegularFile(path)) return null;
+        return path;
+    }
+
+    // ".png" from "Cat Photo.PNG"; no extension when the original has none or an odd one
+    static String extensionOf(String originalName) {
+        if (originalName == null) return "";
+        int dot = originalName.lastIndexOf('.');
+        if (dot < 0) return "";
+        String ext = originalName.substring(dot + 1).toLowerCase(Locale.ROOT);
+        return SAFE_EXTENSION.matcher(ext).matches() ? "." + ext : "";
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        return sb.toString();
+    }
+}
@@ -1,26 +1,105 @@
 package com.example.editor;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
-import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.config.annotation.DelegatingWebSocketMessageBrokerConfiguration;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.server.HandshakeInterceptor;
 
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+// The broker configuration itself is VirtualChannels below (what @EnableWebSocketMessageBroker would import)
 @Configuration
-@EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    @Autowired private WireFormatRegistry wireFormatRegistry;
+
+    // Clustered mode: relay /topic to an external broker so every node's subscribers get every broadcast
+    @Value("${editor.broker.relay.enabled:false}")
+    private boolean brokerRelay;
+    @Value("${editor.broker.relay.host:localhost}")
+    private String relayHost;
+    @Value("${editor.broker.relay.port:61613}")
+    private int relayPort;
+    @Value("${editor.broker.relay.login:guest}")
+    private String relayLogin;
+    @Value("${editor.broker.relay.passcode:guest}")
+    private String relayPasscode;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        // Enable a simple broker to broadcast messages to clients
-        config.enableSimpleBroker("/topic");
+        if (brokerRelay) {
+            config.enableStompBrokerRelay("/topic")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayLogin)
+                    .setClientPasscode(relayPasscode)
+                    .setSystemLogin(relayLogin)
+                    .setSystemPasscode(relayPasscode);
+        } else {
+            // Enable a simple broker to broadcast messages to clients
+            config.enableSimpleBroker("/topic");
+        }
         // Prefix for messages sent FROM clients to server
         config.setApplicationDestinationPrefixes("/app");
+        // Deliver each session's messages in the order they were published: clients apply edit
+        // batches strictly by revision
+        config.setPreservePublishOrder(true);
     }
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         // This is the URL clients will use to connect
         registry.addEndpoint("/ws").withSockJS();
+        // Plain WebSocket (no SockJS fallback): the only endpoint that can carry binary frames
+        registry.addEndpoint("/ws-raw").addInterceptors(new HandshakeInterceptor() {
+            @Override
+            public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                           WebSocketHandler wsHandler, Map<String, Object> attributes) {
+                attributes.put(WireFormatRegistry.RAW_WEBSOCKET_ATTRIBUTE, Boolean.TRUE);
+                return true;
+            }
+
+            @Override
+            public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                       WebSocketHandler wsHandler, Exception exception) {}
+        });
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        // Negotiates the wire format per connection and moves binary subscriptions to /topic/bin
+        registration.interceptors(wireFormatRegistry);
+    }
+
+    // ChannelRegistration only takes a ThreadPoolTaskExecutor, so the inbound executor is replaced here.
+    // Virtual execution mode: one virtual thread per inbound message, so a handler blocked on I/O parks
+    // instead of pinning a platform thread. Nothing to bound here; blocking DB work is bounded by the
+    // IoExecutor. The outbound channel keeps its pool: it only writes to sockets, in publish order
+    @Configuration
+    static class VirtualChannels extends DelegatingWebSocketMessageBrokerConfiguration {
+
+        @Autowired private IoExecutor ioExecutor;
+
+        @Bean
+        @Override
+        public TaskExecutor clientInboundChannelExecutor() {
+            return ioExecutor.isVirtual() ? virtualChannelExecutor("Editor-Inbound-") : super.clientInboundChannelExecutor();
+        }
+
+        private static TaskExecutor virtualChannelExecutor(String namePrefix) {
+            return new TaskExecutorAdapter(Executors.newThreadPerTaskExecutor(IoExecutor.virtualThreads(namePrefix)));
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,260 @@
+package com.example.editor;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compact binary encoding of outbound frames, used instead of JSON for clients that negotiated
+ * the binary wire format (see WireFormatRegistry). Mirrors decodeFrame() in main.js.
+ *
+ * <pre>
+ * frame    := kind:u8 docId:str body
+ * EDITS    := count:varint { revision:varint sender:str delta }*
+ * SNAPSHOT := title:str revision:varint deflated:u8 delta   (delta deflated/zlib when flag = 1)
+ * PART     := title:str revision:varint chunk:varint chunks:varint deflated:u8 delta  (streamed join)
+ * delta    := opCount:varint op*
+ * op       := tag:u8 value [attributes:str]   tag low bits 0 text insert (str), 1 embed insert
+ *             (JSON str), 2 retain (varint), 3 delete (varint); bit 0x80 = attributes (JSON str)
+ * str      := byteLength:varint utf8
+ * </pre>
+ *
+ * Text and lengths are written once, without the escaping of a JSON string nested in JSON.
+ */
+public final class WireCodec {
+
+    public static final byte KIND_EDITS = 1;
+    public static final byte KIND_SNAPSHOT = 2;
+    public static final byte KIND_SNAPSHOT_PART = 3;
+
+    // Snapshots smaller than this are not worth deflating
+    static final int DEFLATE_THRESHOLD = 1024;
+
+    private static final int TAG_TEXT = 0, TAG_EMBED = 1, TAG_RETAIN = 2, TAG_DELETE = 3, HAS_ATTRIBUTES = 0x80;
+
+    private WireCodec() {}
+
+    public static byte[] encodeEdits(EditBatch batch) {
+        Writer out = new Writer(64);
+        out.writeByte(KIND_EDITS);
+        out.writeString(batch.getDocId());
+        out.writeVarint(batch.getEdits().size());
+        for (DocMessage edit : batch.getEdits()) {
+            out.writeVarint(edit.getRevision() != null ? edit.getRevision() : 0);
+            out.writeString(edit.getSender());
+            writeDelta(out, Delta.fromJson(edit.getContent()));
+        }
+        return out.toByteArray();
+    }
+
+    public static byte[] encodeSnapshot(DocMessage snapshot) {
+        Writer delta = new Writer(256);
+        writeDelta(delta, Delta.fromJson(snapshot.getContent()));
+        boolean deflate = delta.size() >= DEFLATE_THRESHOLD;
+        byte[] deltaBytes = deflate ? deflate(delta.toByteArray()) : delta.toByteArray();
+
+        boolean part = snapshot.getChunks() != null;
+        Writer out = new Writer(deltaBytes.length + 64);
+        out.writeByte(part ? KIND_SNAPSHOT_PART : KIND_SNAPSHOT);
+        out.writeString(snapshot.getDocId());
+        out.writeString(snapshot.getTitle());
+        out.writeVarint(snapshot.getRevision() != null ? snapshot.getRevision() : 0);
+        if (part) {
+            out.writeVarint(snapshot.getChunk());
+            out.writeVarint(snapshot.getChunks());
+        }
+        out.writeByte(deflate ? 1 : 0);
+        out.write(deltaBytes, 0, deltaBytes.length);
+        return out.toByteArray();
+    }
+
+    /** Decodes a frame back into the objects the JSON format would carry (EditBatch or DocMessage). */
+    public static Object decode(byte[] frame) {
+        Reader in = new Reader(frame);
+        int kind = in.readByte();
+        String docId = in.readString();
+        if (kind == KIND_EDITS) {
+            int count = (int) in.readVarint();
+            List<DocMessage> edits = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                long revision = in.readVarint();
+                String sender = in.readString();
+                DocMessage edit = new DocMessage(readDelta(in).toJson(), sender, docId);
+                edit.setRevision(revision);
+                edits.add(edit);
+            }
+            return new EditBatch(docId, edits);
+        }
+        if (kind == KIND_SNAPSHOT || kind == KIND_SNAPSHOT_PART) {
+            String title = in.readString();
+            long revision = in.readVarint();
+            Integer chunk = kind == KIND_SNAPSHOT_PART ? (int) in.readVarint() : null;
+            Integer chunks = kind == KIND_SNAPSHOT_PART ? (int) in.readVarint() : null;
+            boolean deflated = in.readByte() == 1;
+            Reader deltaIn = deflated ? new Reader(inflate(in.remaining())) : in;
+            DocMessage snapshot = new DocMessage(readDelta(deltaIn).toJson(), "Server", docId, title);
+            snapshot.setRevision(revision);
+            snapshot.setChunk(chunk);
+            snapshot.setChunks(chunks);
+            return snapshot;
+        }
+        throw new IllegalArgumentException("Unknown frame kind " + kind);
+    }
+
+    // --- Delta ---
+
+    private static void writeDelta(Writer out, Delta delta) {
+        out.writeVarint(delta.getOps().size());
+        for (Delta.Op op : delta.getOps()) {
+            int flags = op.getAttributes() != null ? HAS_ATTRIBUTES : 0;
+            if (op.getInsert() instanceof String) {
+                out.writeByte(TAG_TEXT | flags);
+                out.writeString((String) op.getInsert());
+            } else if (op.getInsert() != null) {
+                out.writeByte(TAG_EMBED | flags);
+                out.writeString(toJson(op.getInsert()));
+            } else if (op.getRetain() != null) {
+                out.writeByte(TAG_RETAIN | flags);
+                out.writeVarint(op.getRetain());
+            } else {
+                out.writeByte(TAG_DELETE);
+                out.writeVarint(op.getDelete());
+            }
+            if (flags != 0) out.writeString(toJson(op.getAttributes()));
+        }
+    }
+
+    private static Delta readDelta(Reader in) {
+        int count = (int) in.readVarint();
+        List<Delta.Op> ops = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int tag = in.readByte();
+            Delta.Op op = new Delta.Op();
+            switch (tag & ~HAS_ATTRIBUTES) {
+                case TAG_TEXT: op.setInsert(in.readString()); break;
+                case TAG_EMBED: op.setInsert(fromJson(in.readString(), new TypeReference<Object>() {})); break;
+                case TAG_RETAIN: op.setRetain((int) in.readVarint()); break;
+                case TAG_DELETE: op.setDelete((int) in.readVarint()); break;
+                default: throw new IllegalArgumentException("Unknown op tag " + tag);
+            }
+            if ((tag & HAS_ATTRIBUTES) != 0) op.setAttributes(fromJson(in.readString(), new TypeReference<Map<String, Object>>() {}));
+            ops.add(op);
+        }
+        return new Delta(ops);
+    }
+
+    private static String toJson(Object value) {
+        try {
+            return Delta.MAPPER.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private static <T> T fromJson(String json, TypeReference<T> type) {
+        try {
+            return Delta.MAPPER.readValue(json, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    // --- Compression (zlib format, which the browser's DecompressionStream('deflate') reads) ---
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 64);
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished()) out.write(buffer, 0, deflater.deflate(buffer));
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    private static byte[] inflate(byte[] data) {
+        Inflater inflater = new Inflater();
+        inflater.setInput(data);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+        byte[] buffer = new byte[8192];
+        try {
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && inflater.needsInput()) throw new IllegalArgumentException("Truncated snapshot");
+                out.write(buffer, 0, n);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException(e);
+        } finally {
+            inflater.end();
+        }
+        return out.toByteArray();
+    }
+
+    // --- Primitives ---
+
+    private static final class Writer extends ByteArrayOutputStream {
+        Writer(int size) { super(size); }
+
+        void writeByte(int b) { write(b); }
+
+        void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void writeString(String s) {
+            byte[] utf8 = (s == null ? "" : s).getBytes(StandardCharsets.UTF_8);
+            writeVarint(utf8.length);
+            write(utf8, 0, utf8.length);
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] data;
+        private int pos;
+
+        Reader(byte[] data) { this.data = data; }
+
+        int readByte() {
+            if (pos >= data.length) throw new IllegalArgumentException("Truncated frame");
+            return data[pos++] & 0xFF;
+        }
+
+        long readVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        String readString() {
+            int length = (int) readVarint();
+            if (length < 0 || length > data.length - pos) throw new IllegalArgumentException("Truncated frame");
+            String s = new String(data, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return s;
+        }
+
+        byte[] remaining() {
+            byte[] rest = Arrays.copyOfRange(data, pos, data.length);
+            pos = data.length;
+            return rest;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.editor;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-connection wire format negotiation.
+ *
+ * A client connected to the raw WebSocket endpoint (/ws-raw) may send "wire-format: binary" in its
+ * CONNECT frame. Its subscriptions to document and history topics are then moved to the matching
+ * /topic/bin/... destination, where the server publishes WireCodec frames instead of JSON.
+ * SockJS connections always stay on JSON: SockJS can only carry text frames.
+ *
+ * The registry counts binary subscribers per JSON destination, so frames are only encoded for
+ * destinations somebody actually listens to in binary.
+ */
+@Component
+public class WireFormatRegistry implements ChannelInterceptor {
+
+    public static final String WIRE_FORMAT_HEADER = "wire-format";
+    // Set by the handshake of the raw WebSocket endpoint
+    static final String RAW_WEBSOCKET_ATTRIBUTE = "editor.rawWebSocket";
+    private static final String BINARY_ATTRIBUTE = "editor.binaryWire";
+    private static final String BINARY_PREFIX = "/topic/bin/";
+
+    // sessionId -> (subscriptionId -> JSON destination)
+    private final Map<String, Map<String, String>> binarySubscriptions = new ConcurrentHashMap<>();
+    private final Map<String, Integer> binarySubscribers = new ConcurrentHashMap<>();
+
+    public static boolean supportsBinary(String destination) {
+        return destination != null && (destination.startsWith("/topic/document/") || destination.startsWith("/topic/history/"));
+    }
+
+    public static String binaryDestination(String destination) {
+        return BINARY_PREFIX + destination.substring("/topic/".length());
+    }
+
+    public boolean hasBinarySubscribers(String destination) {
+        return binarySubscribers.containsKey(destination);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+        StompCommand command = accessor.getCommand();
+        String sessionId = accessor.getSessionId();
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        if (command == null || sessionId == null || attributes == null) return message;
+
+        switch (command) {
+            case CONNECT:
+            case STOMP:
+                if ("binary".equals(accessor.getFirstNativeHeader(WIRE_FORMAT_HEADER))
+                        && Boolean.TRUE.equals(attributes.get(RAW_WEBSOCKET_ATTRIBUTE))) {
+                    attributes.put(BINARY_ATTRIBUTE, Boolean.TRUE);
+                }
+                return message;
+            case SUBSCRIBE:
+                String destination = accessor.getDestination();
+                if (!Boolean.TRUE.equals(attributes.get(BINARY_ATTRIBUTE)) || !supportsBinary(destination)) return message;
+                binarySubscriptions.computeIfAbsent(sessionId, s -> new ConcurrentHashMap<>())
+                        .put(accessor.getSubscriptionId(), destination);
+                binarySubscribers.merge(destination, 1, Integer::sum);
+                accessor.setDestination(binaryDestination(destination));
+                return MessageBuilder.createMessage(message.getPayload(), accessor.getMessageHeaders());
+            case UNSUBSCRIBE:
+                Map<String, String> subscriptions = binarySubscriptions.get(sessionId);
+                if (subscriptions != null) release(subscriptions.remove(accessor.getSubscriptionId()));
+                return message;
+            case DISCONNECT:
+                Map<String, String> all = binarySubscriptions.remove(sessionId);
+                if (all != null) all.values().forEach(this::release);
+                return message;
+            default:
+                return message;
+        }
+    }
+
+    private void release(String destination) {
+        if (destination != null) binarySubscribers.computeIfPresent(destination, (d, n) -> n > 1 ? n - 1 : null);
+    }
+}
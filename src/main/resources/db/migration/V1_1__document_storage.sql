@@ -0,0 +1,24 @@
+-- Columns and tables added before migrations existed: listing metadata, snapshot revisions, block
+-- storage and revision history. IF NOT EXISTS, since databases Hibernate created later (ddl-auto=update)
+-- already have some or all of them when they are baselined at V1.
+ALTER TABLE documents ADD COLUMN IF NOT EXISTS revision BIGINT;
+ALTER TABLE documents ADD COLUMN IF NOT EXISTS content_length BIGINT;
+ALTER TABLE documents ADD COLUMN IF NOT EXISTS last_modified TIMESTAMP;
+ALTER TABLE documents ADD COLUMN IF NOT EXISTS content_hash VARCHAR(255);
+CREATE INDEX IF NOT EXISTS idx_documents_owner ON documents (owner);
+
+CREATE TABLE IF NOT EXISTS document_blocks (
+    block_index INTEGER NOT NULL,
+    doc_id VARCHAR(255) NOT NULL,
+    content CLOB,
+    content_hash VARCHAR(255),
+    PRIMARY KEY (block_index, doc_id)
+);
+
+CREATE TABLE IF NOT EXISTS document_revisions (
+    doc_id VARCHAR(255) NOT NULL,
+    revision BIGINT NOT NULL,
+    delta CLOB,
+    snapshot CLOB,
+    PRIMARY KEY (doc_id, revision)
+);
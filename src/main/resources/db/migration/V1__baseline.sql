@@ -0,0 +1,15 @@
+-- The original schema, as Hibernate (ddl-auto=update) created it before migrations existed. Databases
+-- created that way are baselined at this version instead of running it; V1_1 adds everything since.
+CREATE TABLE users (
+    username VARCHAR(255) NOT NULL,
+    password VARCHAR(255),
+    PRIMARY KEY (username)
+);
+
+CREATE TABLE documents (
+    doc_id VARCHAR(255) NOT NULL,
+    title VARCHAR(255),
+    content CLOB,
+    owner VARCHAR(255),
+    PRIMARY KEY (doc_id)
+);
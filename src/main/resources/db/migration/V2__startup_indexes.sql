@@ -0,0 +1,4 @@
+-- Cache warm-up reads the most recently modified documents
+CREATE INDEX IF NOT EXISTS idx_documents_last_modified ON documents (last_modified);
+-- Blocks are loaded by document; the primary key starts with block_index, so it cannot serve that
+CREATE INDEX IF NOT EXISTS idx_document_blocks_doc ON document_blocks (doc_id, block_index);
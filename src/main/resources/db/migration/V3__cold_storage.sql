@@ -0,0 +1,6 @@
+-- Documents archived to cold segments (ColdStore): where the content is, and since when
+ALTER TABLE documents ADD COLUMN IF NOT EXISTS archive_segment INT;
+ALTER TABLE documents ADD COLUMN IF NOT EXISTS archive_offset BIGINT;
+ALTER TABLE documents ADD COLUMN IF NOT EXISTS archived_at TIMESTAMP;
+-- Compaction lists the documents of one segment
+CREATE INDEX IF NOT EXISTS idx_documents_archive_segment ON documents (archive_segment);
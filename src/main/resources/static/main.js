@@ -1,4 +1,4 @@
-console.log("Main.js V26 Loaded (Enhanced Features + English Comments)");
+console.log("Main.js V37 Loaded (Delta-only OT protocol, optional binary wire format, edit retry, streamed snapshots, reconnect catch-up, per-document presence, numbered and acknowledged edits, unsaved warning, catch-up on revision gaps, NUL-safe STOMP client)");
 
 var stompClient = null;
 var quill = null;
@@ -118,89 +118,396 @@ function uploadFileToServer(file, type) {
 }
 
 // --- WEBSOCKET LOGIC ---
+// Wire format: JSON over SockJS by default. Opening the page with &wire=binary connects over a
+// plain WebSocket and asks for compact binary frames instead (see WireCodec.java).
+var binaryWire = urlParams.get('wire') === 'binary' && 'WebSocket' in window && 'DecompressionStream' in window;
+var inboundChain = Promise.resolve();
+
+// Reconnect: a dropped connection is reopened with backoff. Once the document has been loaded, the
+// rejoin carries our last revision and the server answers with only the edits we missed.
+var joined = false;
+var awaitingCatchUp = false;
+var reconnectDelay = 0;
+var reconnectTimer = null;
+
+function scheduleReconnect() {
+    if (reconnectTimer) return;
+    reconnectDelay = Math.min(reconnectDelay ? reconnectDelay * 2 : 500, 10000);
+    document.getElementById("save-status").innerHTML = '<i class="fa-solid fa-plug-circle-xmark"></i> Offline, reconnecting...';
+    reconnectTimer = setTimeout(function () {
+        reconnectTimer = null;
+        connect();
+    }, reconnectDelay + Math.random() * reconnectDelay);
+}
+
+// The STOMP client is @stomp/stompjs: binary frames carry NUL bytes (WireCodec), and it reads bodies
+// by content-length instead of cutting frames at the first NUL like stomp.js 2.x did.
 function connect() {
-    var socket = new SockJS('/ws');
-    stompClient = Stomp.over(socket);
-    stompClient.debug = null; // Disable debug logs for cleaner console
-
-    stompClient.connect({}, function (frame) {
-        console.log("Connected to WebSocket");
-
-        // 1. Subscribe to document updates (Real-time sync)
-        stompClient.subscribe(`/topic/document/${currentDocId}`, function (msg) {
-            var m = JSON.parse(msg.body);
-            // Only update if the sender is NOT myself (based on Connection ID)
-            if(m.sender !== myConnectionId && quill) {
-                try {
-                    var contentObj = JSON.parse(m.content);
-                    if(contentObj.delta) quill.updateContents(contentObj.delta);
-                } catch(e) {
-                    // Fallback for full content replacement
-                    if(quill.root.innerHTML !== m.content) quill.root.innerHTML = m.content;
-                }
-            }
-        });
+    var headers = {};
+    if (binaryWire) headers['wire-format'] = 'binary';
+    stompClient = new StompJs.Client({
+        webSocketFactory: function () {
+            return binaryWire
+                ? new WebSocket((location.protocol === 'https:' ? 'wss://' : 'ws://') + location.host + '/ws-raw')
+                : new SockJS('/ws');
+        },
+        connectHeaders: headers,
+        reconnectDelay: 0, // We reconnect ourselves (scheduleReconnect), with backoff and a catch-up rejoin
+        debug: function () {}, // Disable debug logs for cleaner console
+        onConnect: onConnected,
+        onStompError: function (frame) {
+            console.warn("STOMP error:", frame.headers['message']);
+        },
+        onWebSocketClose: function (event) {
+            // Lost (or never got) the connection: edits typed meanwhile stay buffered until we are back
+            console.warn("WebSocket closed:", event.code, event.reason);
+            scheduleReconnect();
+        }
+    });
+    stompClient.activate();
+}
 
-        // 2. Subscribe to document history (Load on join)
-        // We subscribe to a unique topic specific to this connection ID
-        stompClient.subscribe('/topic/history/' + myConnectionId, function (msg) {
-            console.log("📥 RECEIVED HISTORY!");
-            var body = JSON.parse(msg.body);
-
-            // A. Set Editor Content
-            var c = body.content;
-            if(c) {
-                try {
-                    var s = JSON.parse(c);
-                    quill.setContents(s.fullDoc ? s.fullDoc : s);
-                } catch (e) {
-                    quill.root.innerHTML = c;
-                }
-            }
-            // B. Set Document Title
-            if (body.title) {
-                document.getElementById("doc-title").innerText = body.title;
-                document.title = body.title;
-            }
-        });
+function onConnected(frame) {
+    console.log("Connected to WebSocket" + (binaryWire ? " (binary frames)" : ""));
+    reconnectDelay = 0;
 
-        // 3. Subscribe to User Count updates
-        stompClient.subscribe('/topic/users', function (msg) {
-            var d = document.getElementById("user-count");
-            if(d) d.innerHTML = '<i class="fa-solid fa-users"></i> ' + JSON.parse(msg.body).content;
-        });
+    // 1. Subscribe to document updates (Real-time sync)
+    stompClient.subscribe(`/topic/document/${currentDocId}`, inbound(handleEditBatch));
 
-        // 4. Actively request current user count upon connection
-        stompClient.send('/app/users', {}, {});
+    // 2. Subscribe to document history (Load on join, or resync after a rejected edit)
+    // We subscribe to a unique topic specific to this connection ID
+    stompClient.subscribe('/topic/history/' + myConnectionId, inbound(handleSnapshot));
 
-        // 5. Send Join Request to server
-        stompClient.send(`/app/join/${currentDocId}`, {}, JSON.stringify({
-            'sender': myConnectionId,
-            'docId': currentDocId
-        }));
+    // 3. Subscribe to control messages for this connection (edit acknowledged, or rejected under overload)
+    stompClient.subscribe('/topic/control/' + myConnectionId, function (msg) {
+        var control = JSON.parse(msg.body);
+        if (control.content === 'ack') handleAck(control);
+        else if (control.content === 'unsaved') handleUnsaved(control);
+        else handleRejectedEdit(control);
+    });
+
+    // 4. Subscribe to User Count updates, and to who is in this document
+    stompClient.subscribe('/topic/users', function (msg) {
+        onlineCount = JSON.parse(msg.body).content;
+        renderPresence();
+    });
+    stompClient.subscribe(`/topic/presence/${currentDocId}`, function (msg) {
+        docPresenceCount = JSON.parse(msg.body).content;
+        renderPresence();
     });
+
+    // 5. Actively request current user count upon connection
+    stompClient.publish({ destination: '/app/users', body: '{}' });
+
+    // 6. Send Join Request to server (a rejoin says which revision we already have)
+    sendJoin();
+}
+
+// Presence badge: people in this document, and online overall (both updated at most twice a second)
+var onlineCount = 0;
+var docPresenceCount = null;
+function renderPresence() {
+    var d = document.getElementById("user-count");
+    if (!d) return;
+    d.innerHTML = '<i class="fa-solid fa-users"></i> ' + (docPresenceCount != null ? docPresenceCount + ' here · ' : '') + onlineCount + ' online';
+}
+
+// Decodes a frame in either format. Binary snapshots may need async decompression, so frames
+// are handled strictly one after another to keep them in revision order.
+function inbound(handler) {
+    return function (msg) {
+        inboundChain = inboundChain
+            .then(function () {
+                return msg.headers['content-type'] === 'application/octet-stream' ? decodeFrame(msg.binaryBody) : JSON.parse(msg.body);
+            })
+            .then(handler)
+            .catch(function (e) { console.error("Bad frame:", e); });
+    };
+}
+
+// Each frame is a batch of edits in revision order; every edit carries one transformed
+// delta and the revision it produced. Revisions must follow on from serverRevision one by one:
+// when one is missing, the rest is held and the missed edits are fetched with a rejoin.
+function handleEditBatch(batch) {
+    if (!quill || !batch.edits) return;
+    // Before the first snapshot, mid-way through a streamed one, or waiting for the catch-up after a
+    // rejoin: apply once it is in
+    if (!joined || snapshotParts || awaitingCatchUp) {
+        heldBatches.push(batch);
+        return;
+    }
+    for (var i = 0; i < batch.edits.length; i++) {
+        var m = batch.edits[i];
+        if (m.revision == null || m.revision <= serverRevision) continue;
+        if (m.revision !== serverRevision + 1) {
+            console.warn("Missed revision " + (serverRevision + 1) + ", catching up");
+            heldBatches.push({ edits: batch.edits.slice(i) });
+            sendJoin();
+            return;
+        }
+        if (m.sender === myConnectionId) {
+            serverAck(m.revision);
+        } else {
+            applyRemote(new Delta(typeof m.content === 'string' ? JSON.parse(m.content) : m.content), m.revision);
+        }
+    }
+}
+
+// A first join gets the snapshot; once joined, the join says which revision we have and is
+// answered with the edits since (handleCatchUp), or the snapshot when they are out of reach
+function sendJoin() {
+    var join = { 'sender': myConnectionId, 'docId': currentDocId };
+    if (joined) {
+        join.revision = serverRevision;
+        awaitingCatchUp = true;
+    }
+    stompClient.publish({ destination: `/app/join/${currentDocId}`, body: JSON.stringify(join) });
+}
+
+// Large documents arrive as several parts (chunk i of chunks), each a delta for one stretch of the document
+var snapshotParts = null;
+var heldBatches = [];
+
+function handleSnapshot(body) {
+    // Rejoin answered with the edits we missed instead of the whole document
+    if (body.edits) return handleCatchUp(body);
+    if (body.chunks > 1) {
+        if (!snapshotParts || snapshotParts.revision !== body.revision) {
+            snapshotParts = { revision: body.revision, ops: new Array(body.chunks), received: 0 };
+        }
+        if (!snapshotParts.ops[body.chunk]) {
+            var part = typeof body.content === 'string' ? JSON.parse(body.content) : body.content;
+            snapshotParts.ops[body.chunk] = part.ops;
+            snapshotParts.received++;
+        }
+        if (snapshotParts.received < body.chunks) return;
+        body.content = { ops: [].concat.apply([], snapshotParts.ops) };
+        snapshotParts = null;
+    }
+    console.log("📥 RECEIVED HISTORY!");
+
+    // A. Set Editor Content (full snapshot resets the OT state)
+    var c = body.content;
+    if(c) {
+        try {
+            var s = typeof c === 'string' ? JSON.parse(c) : c;
+            quill.setContents(s.fullDoc ? s.fullDoc : s, 'api');
+        } catch (e) {
+            quill.root.innerHTML = c;
+        }
+    }
+    serverRevision = body.revision != null ? body.revision : 0;
+    pendingDelta = null;
+    bufferedDelta = null;
+    ackedSeq = editSeq; // unacknowledged edits were dropped: the snapshot is what the server has
+    updateSaveStatus();
+    joined = true;
+    awaitingCatchUp = false;
+
+    // B. Set Document Title
+    if (body.title) {
+        document.getElementById("doc-title").innerText = body.title;
+        document.title = body.title;
+    }
+
+    // C. Edits that arrived while the parts were coming in (older ones are skipped by revision)
+    var held = heldBatches;
+    heldBatches = [];
+    held.forEach(handleEditBatch);
+}
+
+// The missed edits arrive like a broadcast batch: our own ones ack pendingDelta, the others are
+// transformed and applied. A pending edit that is not among them never reached the server, so it
+// is sent again; then whatever was typed while offline follows.
+function handleCatchUp(batch) {
+    awaitingCatchUp = false;
+    handleEditBatch(batch);
+    // Sent again with the same seq: if the first copy did get through, the server drops this one
+    if (pendingDelta) sendDelta(pendingDelta);
+    else flushEdits();
+    updateSaveStatus();
+
+    var held = heldBatches;
+    heldBatches = [];
+    held.forEach(handleEditBatch);
+}
+
+// --- BINARY WIRE FORMAT (decoder for WireCodec.java) ---
+// The body is the frame's bytes (Uint8Array), exactly content-length of them.
+function decodeFrame(bytes) {
+    var r = { bytes: bytes, pos: 0 };
+
+    var kind = r.bytes[r.pos++];
+    var docId = readString(r);
+    if (kind === 1) {
+        var count = readVarint(r), edits = [];
+        for (var n = 0; n < count; n++) {
+            var revision = readVarint(r);
+            var sender = readString(r);
+            edits.push({ revision: revision, sender: sender, docId: docId, content: readDelta(r) });
+        }
+        return { docId: docId, edits: edits };
+    }
+    if (kind === 2 || kind === 3) {
+        var title = readString(r);
+        var rev = readVarint(r);
+        var chunk = kind === 3 ? readVarint(r) : null;
+        var chunks = kind === 3 ? readVarint(r) : null;
+        var deflated = r.bytes[r.pos++] === 1;
+        var rest = r.bytes.subarray(r.pos);
+        var deltaBytes = deflated
+            ? new Response(new Blob([rest]).stream().pipeThrough(new DecompressionStream('deflate'))).arrayBuffer()
+            : Promise.resolve(rest);
+        return deltaBytes.then(function (buf) {
+            var content = readDelta({ bytes: new Uint8Array(buf), pos: 0 });
+            return { docId: docId, title: title, revision: rev, sender: "Server", content: content, chunk: chunk, chunks: chunks };
+        });
+    }
+    throw new Error("Unknown frame kind " + kind);
+}
+
+function readVarint(r) {
+    var value = 0, scale = 1, b;
+    do {
+        b = r.bytes[r.pos++];
+        value += (b & 0x7f) * scale;
+        scale *= 128;
+    } while (b & 0x80);
+    return value;
+}
+
+var utf8Decoder = new TextDecoder();
+function readString(r) {
+    var length = readVarint(r);
+    var s = utf8Decoder.decode(r.bytes.subarray(r.pos, r.pos + length));
+    r.pos += length;
+    return s;
+}
+
+function readDelta(r) {
+    var count = readVarint(r), ops = [];
+    for (var i = 0; i < count; i++) {
+        var tag = r.bytes[r.pos++], op = {};
+        switch (tag & 0x7f) {
+            case 0: op.insert = readString(r); break;
+            case 1: op.insert = JSON.parse(readString(r)); break;
+            case 2: op.retain = readVarint(r); break;
+            case 3: op.delete = readVarint(r); break;
+        }
+        if (tag & 0x80) op.attributes = JSON.parse(readString(r));
+        ops.push(op);
+    }
+    return { ops: ops };
+}
+
+// --- OPERATIONAL TRANSFORM (client side) ---
+// serverRevision: last revision received from the server.
+// pendingDelta:   sent to the server, waiting for its echo (which moves serverRevision).
+// bufferedDelta:  typed while pendingDelta is in flight, sent once it is echoed.
+// Only deltas travel over the wire; the full document is only received on join/resync.
+// Every edit is numbered (editSeq) and a resend keeps its number, so the server applies it at most
+// once; the server acknowledges each edit once it is logged and fsynced (ackedSeq), which is what
+// "Saved" means.
+var Delta = Quill.import('delta');
+var serverRevision = 0;
+var pendingDelta = null;
+var bufferedDelta = null;
+var editSeq = 0;
+var pendingSeq = 0;
+var ackedSeq = 0;
+
+function sendDelta(delta) {
+    stompClient.publish({ destination: `/app/edit/${currentDocId}`, body: JSON.stringify({
+        'content': JSON.stringify(delta),
+        'sender': myConnectionId,
+        'docId': currentDocId,
+        'revision': serverRevision,
+        'seq': pendingSeq
+    }) });
+}
+
+function flushEdits() {
+    if (!pendingDelta && bufferedDelta && stompClient && stompClient.connected) {
+        pendingDelta = bufferedDelta;
+        bufferedDelta = null;
+        pendingSeq = ++editSeq;
+        sendDelta(pendingDelta);
+    }
+}
+
+function handleAck(ack) {
+    if (ack.seq > ackedSeq) ackedSeq = ack.seq;
+    updateSaveStatus();
+}
+
+// Saved once every edit typed so far has been acknowledged
+var saveWaiters = [];
+// The edit was applied but the server could not store it yet: it stays "not saved" (no retry, the
+// edit is not lost from the document) until a later edit is acknowledged
+function handleUnsaved(control) {
+    document.getElementById("save-status").innerHTML = '<i class="fa-solid fa-triangle-exclamation"></i> Not saved: server storage error';
+}
+
+function allSaved() {
+    return ackedSeq >= editSeq && !bufferedDelta;
+}
+
+function updateSaveStatus() {
+    if (!allSaved()) return;
+    document.getElementById("save-status").innerHTML = '<i class="fa-solid fa-cloud"></i> Saved to Drive';
+    var waiters = saveWaiters;
+    saveWaiters = [];
+    waiters.forEach(function (resolve) { resolve(true); });
+}
+
+// Our own edit came back: it is now part of revision `revision`
+function serverAck(revision) {
+    serverRevision = revision;
+    pendingDelta = null;
+    retryDelay = 0;
+    flushEdits();
+}
+
+// The server was too busy to take our pending edit. Back off (exponentially, with jitter) and send
+// it again; pendingDelta is kept transformed against remote edits, so it is still valid then.
+var retryDelay = 0;
+function handleRejectedEdit(control) {
+    if (!pendingDelta) return;
+    retryDelay = Math.min(retryDelay ? retryDelay * 2 : 100, 5000);
+    document.getElementById("save-status").innerHTML = '<i class="fa-solid fa-hourglass-half"></i> Server busy, retrying...';
+    setTimeout(function () {
+        if (pendingDelta && stompClient && stompClient.connected) sendDelta(pendingDelta);
+    }, retryDelay + Math.random() * retryDelay);
+}
+
+// Somebody else's edit: transform it over our unacknowledged edits before applying it,
+// and transform our edits over it so they still apply on the server's new state.
+function applyRemote(delta, revision) {
+    serverRevision = revision;
+    if (pendingDelta) {
+        var p = delta.transform(pendingDelta, true);
+        delta = pendingDelta.transform(delta, false);
+        pendingDelta = p;
+    }
+    if (bufferedDelta) {
+        var b = delta.transform(bufferedDelta, true);
+        delta = bufferedDelta.transform(delta, false);
+        bufferedDelta = b;
+    }
+    quill.updateContents(delta, 'api');
 }
 
 // Auto-save Listener
-var saveTimeout;
 if (quill) {
     quill.on('text-change', function(delta, oldDelta, source) {
-        if (source === 'user' && stompClient && stompClient.connected) {
+        if (source === 'user') {
             // Update status to "Saving..."
             document.getElementById("save-status").innerHTML = '<i class="fa-solid fa-sync fa-spin"></i> Saving...';
 
-            // Send delta to server
-            stompClient.send(`/app/edit/${currentDocId}`, {}, JSON.stringify({
-                'content': JSON.stringify({ delta: delta, fullDoc: quill.getContents() }),
-                'sender': myConnectionId,
-                'docId': currentDocId
-            }));
-
-            // Reset timeout to show "Saved" after 1 second of inactivity
-            clearTimeout(saveTimeout);
-            saveTimeout = setTimeout(function(){
-                document.getElementById("save-status").innerHTML = '<i class="fa-solid fa-cloud"></i> Saved to Drive';
-            }, 1000);
+            // Queue the delta; it is sent right away unless an earlier edit is still waiting for its echo.
+            // The status goes back to "Saved" when the server acknowledges the last edit
+            bufferedDelta = bufferedDelta ? bufferedDelta.compose(delta) : delta;
+            flushEdits();
         }
     });
 }
@@ -209,24 +516,27 @@ if (quill) {
 function manualSave() {
     if (!stompClient || !stompClient.connected) return alert("Offline!");
 
-    // Force send full document content
-    stompClient.send(`/app/edit/${currentDocId}`, {}, JSON.stringify({
-        'content': JSON.stringify({ fullDoc: quill.getContents() }),
-        'sender': myConnectionId,
-        'docId': currentDocId
-    }));
+    // Every edit is already on its way to the server: nothing is sent again, the button only
+    // reports "Saved!" once the server has acknowledged all of them
+    flushEdits();
 
     // UI Feedback for button
     var btn = document.querySelector(".btn-save");
-    var originalText = btn.innerHTML;
-
-    btn.innerHTML = '<i class="fa-solid fa-check"></i> Saved!';
-    btn.style.backgroundColor = "#137333"; // Green color
+    btn.innerHTML = '<i class="fa-solid fa-sync fa-spin"></i> Saving...';
 
-    setTimeout(() => {
-        btn.innerHTML = '<i class="fa-regular fa-floppy-disk"></i> Save';
-        btn.style.backgroundColor = "#1a73e8"; // Revert to Blue
-    }, 1000);
+    var saved = allSaved() ? Promise.resolve(true) : new Promise(function (resolve) {
+        saveWaiters.push(resolve);
+        setTimeout(function () { resolve(false); }, 5000);
+    });
+    saved.then(function (ok) {
+        btn.innerHTML = ok ? '<i class="fa-solid fa-check"></i> Saved!' : '<i class="fa-solid fa-triangle-exclamation"></i> Not saved yet';
+        btn.style.backgroundColor = ok ? "#137333" : "#d93025"; // Green, or red while edits are still unacknowledged
+
+        setTimeout(() => {
+            btn.innerHTML = '<i class="fa-regular fa-floppy-disk"></i> Save';
+            btn.style.backgroundColor = "#1a73e8"; // Revert to Blue
+        }, 1000);
+    });
 }
 
 // Start connection
@@ -0,0 +1,173 @@
+package com.example.editor;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// End-to-end test of the binary wire format on /ws-raw: boots the app and speaks raw STOMP to it the
+// way main.js does with ?wire=binary. Frames are read like @stomp/stompjs reads them: headers up to
+// the blank line, then exactly content-length bytes of body. WireCodec bodies contain NUL bytes, so a
+// client that cuts frames at the first NUL (stomp.js 2.x) cannot read them; test 1 checks they do.
+//
+// The browser itself is checked by hand: open index.html?docId=<id>&wire=binary in two windows, type
+// in one and see the text in the other; the console must show no "Bad frame" errors.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "editor.warmup.documents=0")
+public class BinaryWireTest {
+
+    @DynamicPropertySource
+    static void dataDirectories(DynamicPropertyRegistry registry) throws IOException {
+        Path dir = Files.createTempDirectory("editor-wire");
+        registry.add("spring.datasource.url", () -> "jdbc:h2:mem:" + dir.getFileName() + ";DB_CLOSE_DELAY=-1");
+        registry.add("editor.oplog.dir", () -> dir.resolve("oplog").toString());
+        registry.add("editor.upload.dir", () -> dir.resolve("uploads").toString());
+        registry.add("editor.search.dir", () -> dir.resolve("search").toString());
+        registry.add("editor.cold.dir", () -> dir.resolve("cold").toString());
+    }
+
+    @LocalServerPort
+    private int port;
+
+    private WebSocketSession session;
+
+    // One STOMP frame as the client library hands it over
+    private static final class Frame {
+        final String command;
+        final String contentType;
+        final byte[] body;
+
+        Frame(String command, String contentType, byte[] body) {
+            this.command = command;
+            this.contentType = contentType;
+            this.body = body;
+        }
+    }
+
+    private final BlockingQueue<Frame> frames = new LinkedBlockingQueue<>();
+
+    @AfterEach
+    public void close() throws IOException {
+        if (session != null) session.close();
+    }
+
+    private void connect() throws Exception {
+        session = new StandardWebSocketClient().doHandshake(new AbstractWebSocketHandler() {
+            @Override
+            protected void handleTextMessage(WebSocketSession s, TextMessage message) {
+                frames.add(parse(message.asBytes()));
+            }
+
+            @Override
+            protected void handleBinaryMessage(WebSocketSession s, BinaryMessage message) {
+                ByteBuffer payload = message.getPayload();
+                byte[] bytes = new byte[payload.remaining()];
+                payload.get(bytes);
+                frames.add(parse(bytes));
+            }
+        }, "ws://localhost:" + port + "/ws-raw").get(10, TimeUnit.SECONDS);
+        send("CONNECT\naccept-version:1.2\nhost:localhost\nwire-format:binary\nheart-beat:0,0\n\n");
+        assertEquals("CONNECTED", next(f -> true).command);
+    }
+
+    // Headers up to the blank line, then content-length bytes; never split at a NUL inside the body
+    private static Frame parse(byte[] bytes) {
+        int start = 0;
+        while (start < bytes.length && (bytes[start] == '\n' || bytes[start] == '\r')) start++; // heart-beats
+        int end = start;
+        while (!(bytes[end] == '\n' && bytes[end + 1] == '\n')) end++;
+        String[] lines = new String(bytes, start, end - start, StandardCharsets.UTF_8).split("\n");
+        String contentType = null;
+        int length = -1;
+        for (int i = 1; i < lines.length; i++) {
+            if (lines[i].startsWith("content-type:")) contentType = lines[i].substring("content-type:".length());
+            if (lines[i].startsWith("content-length:")) length = Integer.parseInt(lines[i].substring("content-length:".length()));
+        }
+        int bodyStart = end + 2;
+        if (length < 0) {
+            length = 0;
+            while (bytes[bodyStart + length] != 0) length++;
+        }
+        assertEquals(0, bytes[bodyStart + length], "A frame ends with NUL right after its content-length bytes");
+        return new Frame(lines[0], contentType, Arrays.copyOfRange(bytes, bodyStart, bodyStart + length));
+    }
+
+    private void send(String frame) throws IOException {
+        session.sendMessage(new TextMessage(frame + "\0"));
+    }
+
+    private void sendJson(String destination, String json) throws IOException {
+        send("SEND\ndestination:" + destination + "\ncontent-type:application/json\n\n" + json);
+    }
+
+    private interface Match {
+        boolean test(Frame frame);
+    }
+
+    private Frame next(Match match) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            Frame frame = frames.poll(100, TimeUnit.MILLISECONDS);
+            if (frame != null && match.test(frame)) return frame;
+        }
+        return null;
+    }
+
+    private static boolean binary(Frame frame) {
+        return "MESSAGE".equals(frame.command) && "application/octet-stream".equals(frame.contentType);
+    }
+
+    private static boolean containsNul(byte[] body) {
+        for (byte b : body) if (b == 0) return true;
+        return false;
+    }
+
+    // ✅ Test 1: The join snapshot and edit broadcasts arrive as binary frames with NUL bytes, intact
+    @Test
+    public void test1_BinaryFramesSurviveNulBytes() throws Exception {
+        connect();
+        String docId = UUID.randomUUID().toString();
+        send("SUBSCRIBE\nid:0\ndestination:/topic/document/" + docId + "\n\n");
+        send("SUBSCRIBE\nid:1\ndestination:/topic/history/tester\n\n");
+
+        // Subscriptions are registered asynchronously: join until the snapshot comes back
+        Frame snapshotFrame = null;
+        for (int attempt = 0; attempt < 20 && snapshotFrame == null; attempt++) {
+            sendJson("/app/join/" + docId, "{\"sender\":\"tester\",\"docId\":\"" + docId + "\"}");
+            snapshotFrame = next(f -> binary(f) && f.body[0] == WireCodec.KIND_SNAPSHOT);
+        }
+        assertNotNull(snapshotFrame, "No binary snapshot");
+        assertTrue(containsNul(snapshotFrame.body), "A small snapshot has a zero deflate flag");
+        DocMessage snapshot = (DocMessage) WireCodec.decode(snapshotFrame.body);
+        assertEquals(docId, snapshot.getDocId());
+        assertEquals(0L, snapshot.getRevision());
+
+        sendJson("/app/edit/" + docId, "{\"content\":\"{\\\"ops\\\":[{\\\"insert\\\":\\\"héllo\\\"}]}\",\"sender\":\"tester\"," +
+                "\"docId\":\"" + docId + "\",\"revision\":0,\"seq\":1}");
+        Frame editFrame = next(f -> binary(f) && f.body[0] == WireCodec.KIND_EDITS);
+        assertNotNull(editFrame, "No binary edit batch");
+        assertTrue(containsNul(editFrame.body), "Text inserts are tagged 0");
+        EditBatch batch = (EditBatch) WireCodec.decode(editFrame.body);
+        assertEquals(1, batch.getEdits().size());
+        assertEquals(1L, batch.getEdits().get(0).getRevision());
+        assertEquals(new Delta().insert("héllo"), Delta.fromJson(batch.getEdits().get(0).getContent()));
+    }
+}
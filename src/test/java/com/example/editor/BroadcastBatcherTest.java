@@ -0,0 +1,50 @@
+package com.example.editor;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+// Tests for per-document broadcast batching
+public class BroadcastBatcherTest {
+
+    // ✅ Test 1: A burst of edits goes out as a few frames, in order, with nothing lost
+    @Test
+    public void test1_BurstIsBatchedInOrder() throws InterruptedException {
+        List<EditBatch> frames = new CopyOnWriteArrayList<>();
+        BroadcastBatcher batcher = new BroadcastBatcher((docId, batch) -> frames.add(batch), 20, 50);
+
+        for (long rev = 1; rev <= 120; rev++) {
+            DocMessage edit = new DocMessage("{}", "alice", "doc");
+            edit.setRevision(rev);
+            batcher.submit("doc", edit);
+        }
+        TimeUnit.MILLISECONDS.sleep(100);
+        batcher.shutdown();
+
+        List<Long> revisions = new ArrayList<>();
+        for (EditBatch frame : frames) frame.getEdits().forEach(e -> revisions.add(e.getRevision()));
+        assertEquals(120, revisions.size(), "No edit may be lost");
+        for (int i = 0; i < revisions.size(); i++) assertEquals(i + 1, revisions.get(i).longValue());
+
+        assertTrue(frames.size() <= 3, "120 edits should fit in 3 frames of at most 50, got " + frames.size());
+        assertEquals(3L, batcher.stats().get("frames"));
+        System.out.println("   📦 Broadcast stats: " + batcher.stats());
+    }
+
+    // ✅ Test 2: A lone edit is still delivered once its window expires
+    @Test
+    public void test2_SingleEditFlushedAfterWindow() throws InterruptedException {
+        List<EditBatch> frames = new CopyOnWriteArrayList<>();
+        BroadcastBatcher batcher = new BroadcastBatcher((docId, batch) -> frames.add(batch), 10, 50);
+
+        batcher.submit("doc", new DocMessage("{}", "bob", "doc"));
+        assertTrue(frames.isEmpty(), "Edit should wait for its window");
+        TimeUnit.MILLISECONDS.sleep(200);
+        assertEquals(1, frames.size());
+        batcher.shutdown();
+    }
+}
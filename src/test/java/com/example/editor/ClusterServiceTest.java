@@ -0,0 +1,112 @@
+package com.example.editor;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Tests for clustered mode: two nodes wired together over the in-process transport
+public class ClusterServiceTest {
+
+    // Records what one node's editor and subscribers receive
+    private static class Node implements ClusterService.Handler {
+        final List<String> edits = new CopyOnWriteArrayList<>();
+        final Map<String, Object> delivered = new ConcurrentHashMap<>();
+        volatile long presence = -1;
+        final ClusterService cluster;
+
+        Node(String nodeId, String network) {
+            cluster = new ClusterService(nodeId, Arrays.asList("node-1", "node-2"),
+                    new LoopbackClusterTransport(network), delivered::put, false);
+            cluster.start(this);
+        }
+
+        public void onEdit(String docId, DocMessage message) { edits.add(docId); }
+        public void onJoin(String docId, DocMessage message, String sessionKey, String originNode) {
+            cluster.deliver(originNode, "/topic/history/" + message.getSender(), message);
+        }
+        public void onLeave(String docId, String sessionKey) {}
+        public void onPresenceChanged(long totalSessions) { presence = totalSessions; }
+    }
+
+    // ✅ Test 1: Every document has exactly one owner and edits reach it from either node
+    @Test
+    public void test1_EditsAreRoutedToTheOwner() {
+        Node a = new Node("node-1", "test1");
+        Node b = new Node("node-2", "test1");
+
+        int ownedByA = 0;
+        for (int i = 0; i < 200; i++) {
+            String docId = "doc-" + i;
+            assertNotEquals(a.cluster.isLocal(docId), b.cluster.isLocal(docId), "Exactly one owner per document");
+            assertEquals(a.cluster.ownerOf(docId), b.cluster.ownerOf(docId), "Nodes must agree on the owner");
+            if (a.cluster.isLocal(docId)) ownedByA++;
+
+            // Arrives on node-2; goes wherever the document lives
+            if (b.cluster.isLocal(docId)) b.onEdit(docId, new DocMessage("{}", "bob", docId));
+            else b.cluster.forwardEdit(docId, new DocMessage("{}", "bob", docId));
+        }
+        assertEquals(200, a.edits.size() + b.edits.size());
+        assertEquals(ownedByA, a.edits.size());
+        assertTrue(ownedByA > 50 && ownedByA < 150, "Documents should be spread over both nodes, node-1 owns " + ownedByA);
+
+        a.cluster.stop();
+        b.cluster.stop();
+    }
+
+    // ✅ Test 2: Broadcasts reach both nodes' subscribers; a remote join's snapshot goes back to its node
+    @Test
+    public void test2_BroadcastAndDelivery() {
+        Node a = new Node("node-1", "test2");
+        Node b = new Node("node-2", "test2");
+
+        a.cluster.broadcast("/topic/document/x", new DocMessage("{}", "alice", "x"));
+        assertTrue(a.delivered.containsKey("/topic/document/x"));
+        assertTrue(b.delivered.containsKey("/topic/document/x"));
+
+        String remoteDoc = "doc-0";
+        for (int i = 0; a.cluster.isLocal(remoteDoc); i++) remoteDoc = "doc-" + i;
+        a.cluster.forwardJoin(remoteDoc, new DocMessage("", "carol", remoteDoc), "session-1");
+        assertTrue(a.delivered.containsKey("/topic/history/carol"), "Snapshot must come back to the joining node");
+        assertFalse(b.delivered.containsKey("/topic/history/carol"));
+
+        a.cluster.stop();
+        b.cluster.stop();
+    }
+
+    // ✅ Test 3: Presence is the sum of the sessions on every node, including ones started later
+    @Test
+    public void test3_PresenceIsClusterWide() {
+        Node a = new Node("node-1", "test3");
+        a.cluster.updateLocalSessions(3);
+        Node b = new Node("node-2", "test3");
+        b.cluster.updateLocalSessions(2);
+
+        assertEquals(5, a.presence);
+        assertEquals(5, b.presence);
+
+        a.cluster.stop();
+        b.cluster.stop();
+    }
+
+    // ✅ Test 4: The http transport needs a secret, and only accepts requests presenting exactly that secret
+    @Test
+    public void test4_HttpTransportRequiresSecret() throws Exception {
+        Map<String, String> peers = Map.of("node-1", "http://localhost:1");
+        assertThrows(IllegalStateException.class, () -> new HttpClusterTransport(peers, ""));
+        assertThrows(IllegalStateException.class, () -> new HttpClusterTransport(peers, null));
+
+        HttpClusterTransport transport = new HttpClusterTransport(peers, "s3cret");
+        List<ClusterMessage> received = new CopyOnWriteArrayList<>();
+        transport.start("node-1", received::add);
+        assertThrows(SecurityException.class, () -> transport.receive("[]", ""));
+        assertThrows(SecurityException.class, () -> transport.receive("[]", null));
+        assertThrows(SecurityException.class, () -> transport.receive("[]", "s3cre"));
+        transport.receive("[]", "s3cret");
+        transport.stop();
+    }
+}
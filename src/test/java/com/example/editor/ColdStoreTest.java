@@ -0,0 +1,186 @@
+package com.example.editor;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+// Tests for the cold tier: archiving idle documents to segments, reading them back and compaction
+public class ColdStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private DriverManagerDataSource dataSource;
+    private JdbcTemplate jdbc;
+    private SnapshotWriter writer;
+    private ClusterService cluster;
+    private ColdStore store;
+
+    @BeforeEach
+    public void createTables() throws Exception {
+        dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE documents (doc_id VARCHAR(255) PRIMARY KEY, title VARCHAR(255), content CLOB, owner VARCHAR(255), " +
+                "revision BIGINT, content_length BIGINT, last_modified TIMESTAMP, content_hash VARCHAR(255), " +
+                "archive_segment INT, archive_offset BIGINT, archived_at TIMESTAMP)");
+        jdbc.execute("CREATE TABLE document_blocks (doc_id VARCHAR(255), block_index INT, content CLOB, content_hash VARCHAR(255), " +
+                "PRIMARY KEY (doc_id, block_index))");
+        jdbc.execute("CREATE TABLE document_revisions (doc_id VARCHAR(255), revision BIGINT, delta CLOB, snapshot CLOB, " +
+                "PRIMARY KEY (doc_id, revision))");
+        writer = new SnapshotWriter(jdbc, new DataSourceTransactionManager(dataSource), new RevisionStore(jdbc, 100, 10000, 1000, 100));
+        cluster = new ClusterService("node-1", List.of("node-1"), null, null, false);
+        store = open(64 * 1024 * 1024);
+    }
+
+    @AfterEach
+    public void close() {
+        store.stop();
+    }
+
+    private ColdStore open(long segmentBytes) throws Exception {
+        ColdStore opened = new ColdStore(dir.toString(), 90, 60, 2, segmentBytes, jdbc,
+                new DataSourceTransactionManager(dataSource), cluster, null);
+        opened.open();
+        return opened;
+    }
+
+    // A document stored in blocks, last modified daysAgo days ago
+    private DocumentState save(String docId, String text, int daysAgo) {
+        DocumentState state = new DocumentState(docId, "Doc", new Delta().insert(text + "\n"), 0, 16);
+        state.replay(new Delta(), 1);
+        writer.write(List.of(state));
+        jdbc.update("UPDATE documents SET last_modified = ? WHERE doc_id = ?",
+                Timestamp.from(Instant.now().minus(Duration.ofDays(daysAgo))), docId);
+        return state;
+    }
+
+    private Map<String, Object> row(String docId) {
+        return jdbc.queryForMap("SELECT * FROM documents WHERE doc_id = ?", docId);
+    }
+
+    private int blocks(String docId) {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM document_blocks WHERE doc_id = ?", Integer.class, docId);
+    }
+
+    private ColdStore.Content read(ColdStore from, String docId) throws Exception {
+        Map<String, Object> row = row(docId);
+        return from.read(((Number) row.get("archive_segment")).intValue(), ((Number) row.get("archive_offset")).longValue());
+    }
+
+    private static String large(String word) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20000; i++) text.append(word).append(' ').append(i).append(". ");
+        return text.toString();
+    }
+
+    // ✅ Test 1: Idle documents become stubs with their blocks in a compressed segment; recent ones stay
+    @Test
+    public void test1_ArchivesIdleDocuments() throws Exception {
+        DocumentState idle = save("idle", large("lorem ipsum"), 200);
+        save("recent", "edited yesterday", 1);
+
+        assertEquals(1, store.archiveIdle(Instant.now().minus(Duration.ofDays(90))));
+
+        Map<String, Object> stub = row("idle");
+        assertNotNull(stub.get("archive_segment"));
+        assertNotNull(stub.get("archived_at"));
+        assertEquals(idle.getPersistedContentHash(), stub.get("content_hash"), "The stub keeps the content hash");
+        assertEquals(0, blocks("idle"));
+        assertNull(row("recent").get("archive_segment"));
+        assertTrue(blocks("recent") > 0);
+
+        ColdStore.Content content = read(store, "idle");
+        assertFalse(content.isLegacy());
+        assertEquals(idle.snapshot().getContent().toJson(), content.toRope().toDelta().toJson());
+        assertEquals(idle.getPersistedBlockHashes(), content.getBlockHashes());
+        assertTrue((Double) store.stats().get("compressionRatio") < 0.5, "Repetitive text should compress well");
+    }
+
+    // ✅ Test 2: Cached documents are skipped; legacy content rows (even without last_modified) are archived as they are
+    @Test
+    public void test2_SkipsCachedAndKeepsLegacyContent() throws Exception {
+        save("open", "someone has this open", 200);
+        jdbc.update("INSERT INTO documents (doc_id, title, content, revision, last_modified) VALUES (?, ?, ?, ?, ?)",
+                "legacy", "Old", "<p>plain old html</p>", null, Timestamp.from(Instant.now().minus(Duration.ofDays(400))));
+        jdbc.update("INSERT INTO documents (doc_id, title, content) VALUES ('older', 'Before last_modified', 'ancient')");
+        DocumentCache cache = new DocumentCache(10_000_000,
+                docId -> new DocumentState(docId, "Doc", new Delta().insert("x\n"), 0, 16), state -> {});
+        cache.get("open");
+        store.start(cache);
+
+        assertEquals(2, store.archiveIdle(Instant.now().minus(Duration.ofDays(90))));
+
+        assertNull(row("open").get("archive_segment"), "A cached document must not be archived");
+        assertEquals("ancient", read(store, "older").getBlocks().get(0), "No last_modified counts as idle");
+        assertNull(row("legacy").get("content"));
+        ColdStore.Content legacy = read(store, "legacy");
+        assertTrue(legacy.isLegacy());
+        assertEquals("<p>plain old html</p>", legacy.getBlocks().get(0));
+        assertTrue(legacy.toRope().toDelta().toJson().contains("plain old html"));
+        assertTrue(cache.reserve("legacy"), "The archiver must release its reservations");
+    }
+
+    // ✅ Test 3: A rehydrated document that changes comes back into the table with all of its blocks
+    @Test
+    public void test3_ChangedDocumentLeavesColdStorage() throws Exception {
+        DocumentState original = save("doc", large("dolor"), 200);
+        store.archiveIdle(Instant.now().minus(Duration.ofDays(90)));
+        Map<String, Object> stub = row("doc");
+
+        // What the cache loader does (see EditorController.newState)
+        ColdStore.Content content = store.rehydrate(((Number) stub.get("archive_segment")).intValue(), ((Number) stub.get("archive_offset")).longValue());
+        DocumentState state = new DocumentState("doc", "Doc", content.toRope(), 1, 16);
+        state.markPersisted(1, (String) stub.get("content_hash"), null);
+        assertEquals(1L, store.stats().get("rehydrated"));
+
+        state.replay(new Delta().insert("Edited. "), 2);
+        writer.write(List.of(state));
+
+        Map<String, Object> back = row("doc");
+        assertNull(back.get("archive_segment"));
+        assertNull(back.get("archived_at"));
+        assertEquals(original.getPersistedBlockHashes().size(), blocks("doc"));
+        assertEquals(2L, ((Number) back.get("revision")).longValue());
+    }
+
+    // ✅ Test 4: Compaction moves live records out of mostly dead segments and deletes the emptied ones
+    @Test
+    public void test4_CompactsSegments() throws Exception {
+        save("big", large("text"), 200);
+        save("small", "a short note", 200);
+        store.archiveIdle(Instant.now().minus(Duration.ofDays(90)));
+        String before = read(store, "small").toRope().toDelta().toJson();
+        // "big" was edited since: its record in segment 1 is dead
+        jdbc.update("UPDATE documents SET archive_segment = NULL, archive_offset = NULL, last_modified = CURRENT_TIMESTAMP WHERE doc_id = 'big'");
+
+        store.stop();
+        store = open(1); // reopened (the segments are found again); every record now starts a new segment
+        save("other", "another note", 200);
+        store.archiveIdle(Instant.now().minus(Duration.ofDays(90)));
+        assertEquals(2, ((Number) row("other").get("archive_segment")).intValue());
+
+        assertEquals(1, store.compact());
+
+        assertEquals(3, ((Number) row("small").get("archive_segment")).intValue());
+        assertEquals(before, read(store, "small").toRope().toDelta().toJson());
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(2, files.count(), "The emptied segment should be deleted");
+        }
+        assertEquals(1L, store.stats().get("segmentsDeleted"));
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.editor;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// Tests for the server-side Quill delta and the OT performed by DocumentState
+public class DeltaTest {
+
+    // ✅ Test 1: compose applies a change to a document
+    @Test
+    public void test1_Compose() {
+        Delta doc = new Delta().insert("Hello\n");
+        Delta change = new Delta().retain(5).insert(" World");
+        assertEquals(new Delta().insert("Hello World\n"), doc.compose(change));
+
+        Delta bold = new Delta().retain(5, Collections.singletonMap("bold", true));
+        Delta expected = new Delta().insert("Hello", Collections.singletonMap("bold", true)).insert("\n");
+        assertEquals(expected, doc.compose(bold));
+
+        Delta delete = new Delta().retain(1).delete(3);
+        assertEquals(new Delta().insert("Ho\n"), doc.compose(delete));
+    }
+
+    // ✅ Test 2: Two concurrent edits converge whichever order they are applied in
+    @Test
+    public void test2_TransformConverges() {
+        Delta doc = new Delta().insert("abc\n");
+        Delta a = new Delta().retain(1).insert("X");      // aXbc
+        Delta b = new Delta().retain(2).delete(1).insert("Y"); // abY
+
+        Delta viaA = doc.compose(a).compose(a.transform(b, true));
+        Delta viaB = doc.compose(b).compose(b.transform(a, false));
+        assertEquals(viaA, viaB);
+        assertEquals(new Delta().insert("aXbY\n"), viaA);
+    }
+
+    // ✅ Test 3: The server rebases a stale edit over the edits it missed
+    @Test
+    public void test3_StaleEditIsTransformed() {
+        DocumentState state = new DocumentState("doc", "Doc", DocumentState.parseStoredContent(""), 0, 10);
+
+        DocumentState.Applied first = state.apply(new Delta().insert("world"), 0);
+        assertEquals(1, first.getRevision());
+
+        // Typed against revision 0, before "world" arrived
+        DocumentState.Applied second = state.apply(new Delta().insert("hello "), 0);
+        assertEquals(2, second.getRevision());
+        assertEquals(new Delta().insert("worldhello \n"), state.snapshot().getContent());
+    }
+
+    // ✅ Test 4: Edits that cannot be rebased are rejected so the client resyncs
+    @Test
+    public void test4_RejectsUnrecoverableEdits() {
+        DocumentState state = new DocumentState("doc", "Doc", DocumentState.parseStoredContent(""), 0, 2);
+        for (int i = 0; i < 3; i++) assertNotNull(state.apply(new Delta().insert("x"), i));
+
+        assertNull(state.apply(new Delta().insert("y"), 0), "Base revision has left the history ring");
+        assertNull(state.apply(new Delta().insert("y"), 99), "Base revision from the future");
+        assertNull(state.apply(new Delta().retain(50).insert("y"), 3), "Delta longer than the document");
+
+        DocumentState wide = new DocumentState("doc", "Doc", DocumentState.parseStoredContent(""), 0, 1000);
+        wide.apply(new Delta().insert("x"), 0);
+        assertNull(wide.apply(new Delta().insert("y"), -2), "Negative base revision");
+
+        // Loaded at revision 5 (from the DB, cold storage, a shard move): the ring holds nothing before it
+        DocumentState loaded = new DocumentState("doc", "Doc", DocumentState.parseStoredContent("abc"), 5, 1000);
+        assertNull(loaded.apply(new Delta().insert("y"), 3), "Base revision older than the load");
+        assertNotNull(loaded.apply(new Delta().insert("y"), 5));
+        assertEquals(6, loaded.getRevision());
+    }
+
+    // ✅ Test 5: Legacy stored formats are understood and JSON round-trips
+    @Test
+    public void test5_StoredContentFormats() {
+        Delta fromLegacy = DocumentState.parseStoredContent("{\"delta\":{\"ops\":[]},\"fullDoc\":{\"ops\":[{\"insert\":\"hi\\n\"}]}}");
+        assertEquals(new Delta().insert("hi\n"), fromLegacy);
+        assertEquals(new Delta().insert("plain\n"), DocumentState.parseStoredContent("plain"));
+        assertEquals(fromLegacy, Delta.fromJson(fromLegacy.toJson()));
+        assertEquals("{\"ops\":[{\"insert\":\"hi\\n\"}]}", fromLegacy.toJson());
+    }
+
+    // ✅ Test 6: A rejoining client catches up from the history ring, with the sender of each missed edit
+    @Test
+    public void test6_CatchUpFromHistoryRing() {
+        DocumentState state = new DocumentState("doc", "Doc", DocumentState.parseStoredContent(""), 0, 3);
+        state.apply(new Delta().insert("a"), 0, "alice");
+        Delta atOne = state.snapshot().getContent();
+        state.apply(new Delta().insert("b"), 1, "bob");
+        state.apply(new Delta().retain(2).insert("c"), 2, "alice");
+
+        Delta caughtUp = atOne;
+        for (Delta delta : state.historyBetween(1, 3)) caughtUp = caughtUp.compose(delta);
+        assertEquals(state.snapshot().getContent(), caughtUp);
+        assertEquals(List.of("bob", "alice"), state.sendersBetween(1, 3));
+        assertTrue(state.historyBetween(3, 3).isEmpty(), "Nothing missed");
+        assertNull(state.historyBetween(0, 3), "A full ring behind: the next edit may be overwriting the oldest slot");
+        assertNull(state.sendersBetween(0, 3));
+
+        state.apply(new Delta().insert("d"), 3, "bob");
+        assertNull(state.historyBetween(0, 4), "Gap larger than the ring: full snapshot instead");
+        state.replay(new Delta().insert("e"), 5);
+        assertEquals(Arrays.asList("bob", null), state.sendersBetween(3, 5), "Replayed edits have no sender");
+    }
+}
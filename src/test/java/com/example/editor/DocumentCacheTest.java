@@ -0,0 +1,118 @@
+package com.example.editor;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Tests for the byte-bounded document cache
+public class DocumentCacheTest {
+
+    private final List<String> writtenBack = new CopyOnWriteArrayList<>();
+
+    private DocumentState load(String docId) {
+        // ~20 KB of text per document
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; i++) text.append("0123456789");
+        return new DocumentState(docId, "Doc " + docId, DocumentState.parseStoredContent(text.toString()), 0, 10);
+    }
+
+    private void writeBack(DocumentState state) {
+        writtenBack.add(state.getDocId());
+        state.markPersisted(state.getRevision());
+    }
+
+    // ✅ Test 1: The cache stays under its byte budget, evicting least recently used documents
+    @Test
+    public void test1_EvictsLeastRecentlyUsedByBytes() {
+        DocumentCache cache = new DocumentCache(100_000, this::load, this::writeBack);
+        for (int i = 0; i < 10; i++) cache.get("doc-" + i);
+        assertTrue(cache.bytes() > 100_000);
+
+        cache.get("doc-0"); // touch the oldest so it becomes most recently used
+        cache.evictIfNeeded();
+
+        assertTrue(cache.bytes() <= 90_000, "Cache should evict down to 90% of its budget");
+        assertNotNull(cache.getIfPresent("doc-0"), "Recently used document must survive");
+        assertNull(cache.getIfPresent("doc-1"), "Least recently used document should be evicted");
+        assertTrue((Long) cache.stats().get("evictions") > 0);
+    }
+
+    // ✅ Test 2: Pinned documents are never evicted; dirty ones are written back first
+    @Test
+    public void test2_PinnedKeptAndDirtyWrittenBack() {
+        DocumentCache cache = new DocumentCache(50_000, this::load, this::writeBack);
+        cache.pin("pinned");
+        cache.withState("dirty", s -> s.apply(new Delta().insert("x"), 0));
+        for (int i = 0; i < 5; i++) cache.get("doc-" + i);
+
+        cache.evictIfNeeded();
+
+        assertNotNull(cache.getIfPresent("pinned"), "Pinned document must not be evicted");
+        assertNull(cache.getIfPresent("dirty"));
+        assertTrue(writtenBack.contains("dirty"), "Dirty document must be written back before eviction");
+
+        // An evicted document is reloaded transparently on the next access
+        long misses = (Long) cache.stats().get("misses");
+        assertNotNull(cache.get("dirty"));
+        assertEquals(misses + 1, (long) (Long) cache.stats().get("misses"));
+    }
+
+    // ✅ Test 3: Many clients joining a cold document at once cause a single load
+    @Test
+    public void test3_ConcurrentColdLoadsAreCoalesced() throws InterruptedException {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        DocumentCache cache = new DocumentCache(10_000_000, docId -> {
+            loads.incrementAndGet();
+            try { release.await(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+            return load(docId);
+        }, this::writeBack);
+
+        int joiners = 50;
+        ExecutorService pool = Executors.newFixedThreadPool(joiners);
+        CountDownLatch done = new CountDownLatch(joiners);
+        Set<DocumentState> seen = ConcurrentHashMap.newKeySet();
+        for (int i = 0; i < joiners; i++) {
+            pool.submit(() -> {
+                seen.add(cache.pin("cold"));
+                done.countDown();
+            });
+        }
+        Thread.sleep(200); // let every joiner reach the cache while the first load is still running
+        release.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        pool.shutdown();
+        assertEquals(1, loads.get(), "All joiners should share one DB load");
+        assertEquals(1, seen.size(), "All joiners should get the same state");
+    }
+
+    // ✅ Test 4: A reserved document is not loaded until it is released; cached documents cannot be reserved
+    @Test
+    public void test4_ReserveHoldsOffLoads() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        DocumentCache cache = new DocumentCache(10_000_000, docId -> {
+            loads.incrementAndGet();
+            return load(docId);
+        }, this::writeBack);
+        cache.get("open");
+        assertFalse(cache.reserve("open"), "A cached document cannot be reserved");
+
+        assertTrue(cache.reserve("cold"));
+        assertFalse(cache.reserve("cold"), "A document can only be reserved once");
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Future<DocumentState> joiner = pool.submit(() -> cache.get("cold"));
+        Thread.sleep(200);
+        assertFalse(joiner.isDone(), "The load must wait for the reservation");
+        assertEquals(1, loads.get());
+
+        cache.release("cold");
+        assertEquals("cold", joiner.get(5, TimeUnit.SECONDS).getDocId());
+        assertEquals(2, loads.get());
+        pool.shutdown();
+    }
+}
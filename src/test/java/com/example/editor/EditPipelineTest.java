@@ -0,0 +1,148 @@
+package com.example.editor;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.LockSupport;
+
+// Tests for the sharded edit pipeline that replaced the single Editor-Worker-Thread
+public class EditPipelineTest {
+
+    // ✅ Test 1: Edits of one document must come out in the order they went in
+    @Test
+    public void test1_PerDocumentOrdering() throws InterruptedException {
+        printHeader("Pipeline Test 1: Per-Document Ordering");
+
+        int docs = 32;
+        int editsPerDoc = 500;
+        EditPipeline pipeline = new EditPipeline(4, "Test-Lane");
+        pipeline.start();
+
+        Map<String, List<Integer>> applied = new ConcurrentHashMap<>();
+        for (int d = 0; d < docs; d++) applied.put("doc-" + d, new ArrayList<>());
+
+        // One producer per document, all producers running at the same time
+        ExecutorService producers = Executors.newFixedThreadPool(8);
+        CountDownLatch done = new CountDownLatch(docs * editsPerDoc);
+        for (int d = 0; d < docs; d++) {
+            String docId = "doc-" + d;
+            producers.submit(() -> {
+                for (int seq = 0; seq < editsPerDoc; seq++) {
+                    int s = seq;
+                    try {
+                        pipeline.submit(docId, () -> {
+                            // Only the owning lane ever touches this list, so no locking is needed
+                            applied.get(docId).add(s);
+                            done.countDown();
+                        });
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS), "❌ Edits were not all processed in time");
+        producers.shutdown();
+        pipeline.shutdown(1000);
+
+        applied.forEach((docId, seqs) -> {
+            assertEquals(editsPerDoc, seqs.size(), "❌ Lost edits for " + docId);
+            for (int i = 0; i < seqs.size(); i++) {
+                assertEquals(i, seqs.get(i).intValue(), "❌ Out-of-order edit for " + docId);
+            }
+        });
+        System.out.println("   ✅ Passed: " + docs * editsPerDoc + " edits applied in per-document order.");
+    }
+
+    // ✅ Test 2: Load test - throughput should go up as lanes are added
+    @Test
+    public void test2_ThroughputScalesWithLanes() throws InterruptedException {
+        printHeader("Pipeline Test 2: Throughput vs. Lane Count");
+
+        int[] laneCounts = {1, 2, 4, 8};
+        double[] throughput = new double[laneCounts.length];
+        for (int i = 0; i < laneCounts.length; i++) {
+            throughput[i] = runLoad(laneCounts[i], 64, 1600);
+            System.out.printf("   🚀 [%d lane(s)]: %8.0f edits/s%n", laneCounts[i], throughput[i]);
+        }
+
+        assertTrue(throughput[1] > throughput[0] * 1.3, "❌ 2 lanes should beat 1 lane");
+        assertTrue(throughput[2] > throughput[1] * 1.3, "❌ 4 lanes should beat 2 lanes");
+        System.out.println("   ✅ Passed: Throughput increases with the number of lanes.");
+    }
+
+    // Each edit "costs" ~200µs of non-CPU time (like a broadcast or log write), spread over many documents
+    private double runLoad(int lanes, int docs, int edits) throws InterruptedException {
+        EditPipeline pipeline = new EditPipeline(lanes, "Load-Lane");
+        pipeline.start();
+        CountDownLatch done = new CountDownLatch(edits);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < edits; i++) {
+            pipeline.submit("doc-" + (i % docs), () -> {
+                LockSupport.parkNanos(200_000);
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS), "❌ Load run did not finish");
+        long elapsed = System.nanoTime() - start;
+        pipeline.shutdown(1000);
+        return edits / (elapsed / 1_000_000_000.0);
+    }
+
+    // ✅ Test 3: Admission is bounded per document and per lane; rejected tasks are reported
+    @Test
+    public void test3_RejectsWhenFull() throws InterruptedException {
+        printHeader("Pipeline Test 3: Bounded Admission (REJECT)");
+        EditPipeline pipeline = new EditPipeline(1, "Bounded-Lane", 5, 3, EditPipeline.OverloadPolicy.REJECT, 0);
+        // Not started: nothing drains, so the limits are hit deterministically
+
+        for (int i = 0; i < 3; i++) assertTrue(pipeline.submit("hot", () -> {}));
+        assertFalse(pipeline.submit("hot", () -> {}), "Per-document limit reached");
+        assertEquals(3, pipeline.pending("hot"));
+
+        assertTrue(pipeline.submit("other-1", () -> {}));
+        assertTrue(pipeline.submit("other-2", () -> {}));
+        assertFalse(pipeline.submit("other-3", () -> {}), "Lane capacity reached");
+        assertEquals(0, pipeline.pending("other-3"), "A rejected task must not count as pending");
+
+        pipeline.start();
+        pipeline.shutdown(1000);
+        assertEquals(0, pipeline.pending("hot"), "Finished tasks release their slot");
+        System.out.println("   ✅ Rejected past 3 per document and 5 per lane");
+    }
+
+    // ✅ Test 4: BLOCK waits for room, and only fails once the timeout has passed
+    @Test
+    public void test4_BlockPolicyWaitsForRoom() throws InterruptedException {
+        printHeader("Pipeline Test 4: Bounded Admission (BLOCK)");
+        EditPipeline pipeline = new EditPipeline(1, "Blocking-Lane", 1, 100, EditPipeline.OverloadPolicy.BLOCK, 100);
+        CountDownLatch release = new CountDownLatch(1);
+        pipeline.start();
+        pipeline.submit("a", () -> {
+            try { release.await(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+        });
+        Thread.sleep(50); // the lane is now busy with the first task
+        assertTrue(pipeline.submit("b", () -> {}), "The queue still has room for one");
+
+        long start = System.nanoTime();
+        assertFalse(pipeline.submit("c", () -> {}), "Queue full and the lane stuck: times out");
+        long waitedMillis = (System.nanoTime() - start) / 1_000_000;
+        assertTrue(waitedMillis >= 90, "Producer should have been held back, waited " + waitedMillis + " ms");
+
+        release.countDown();
+        assertTrue(pipeline.submit("c", () -> {}), "Room again once the lane moves on");
+        pipeline.shutdown(1000);
+    }
+
+    private void printHeader(String title) {
+        System.out.println("\n=================================================");
+        System.out.println(title);
+        System.out.println("=================================================");
+    }
+}
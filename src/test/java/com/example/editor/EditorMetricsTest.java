@@ -0,0 +1,37 @@
+package com.example.editor;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Tests that the components' own counters show up as meters
+public class EditorMetricsTest {
+
+    // ✅ Test 1: Cache and pipeline numbers are readable through the registry
+    @Test
+    public void test1_ComponentsAreBound() throws InterruptedException {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        EditorMetrics metrics = new EditorMetrics(registry);
+
+        DocumentCache cache = new DocumentCache(1_000_000,
+                docId -> new DocumentState(docId, "Doc", DocumentState.parseStoredContent("hello"), 0, 10), s -> {});
+        metrics.bindCache(cache);
+        cache.get("a");
+        cache.get("a");
+        assertEquals(1.0, registry.get("editor.cache.entries").gauge().value());
+        assertEquals(1.0, registry.get("editor.cache.hits").functionCounter().count());
+        assertEquals(1.0, registry.get("editor.cache.misses").functionCounter().count());
+
+        EditPipeline pipeline = new EditPipeline(1, "Metrics-Test-Lane");
+        metrics.bindPipeline(pipeline);
+        pipeline.submit("a", () -> {}); // not started yet, so it stays queued
+        assertEquals(1.0, registry.get("editor.pipeline.queue.depth").gauge().value());
+
+        metrics.record(metrics.editLatency, TimeUnit.MILLISECONDS.toNanos(3));
+        metrics.editRejected("unrecoverable");
+        assertEquals(1, registry.get("editor.edit.latency").timer().count());
+        assertEquals(1.0, registry.get("editor.edits.rejected").tag("reason", "unrecoverable").counter().count());
+    }
+}
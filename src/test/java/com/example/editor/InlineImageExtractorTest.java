@@ -0,0 +1,68 @@
+package com.example.editor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Map;
+
+// Tests for moving inline base64 images out of deltas and into the upload store
+public class InlineImageExtractorTest {
+
+    @TempDir
+    Path dir;
+
+    private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', 1, 2, 3, 4};
+
+    private static Map<String, Object> image(String src) {
+        return Collections.singletonMap("image", src);
+    }
+
+    private static String dataUri(String type, byte[] bytes) {
+        return "data:image/" + type + ";base64," + Base64.getEncoder().encodeToString(bytes);
+    }
+
+    // ✅ Test 1: An edit pasting an image is rewritten to its upload URL; the bytes land in the store
+    @Test
+    public void test1_ExtractsFromEdits() throws IOException {
+        UploadStore store = new UploadStore(dir.toString(), 1024);
+        InlineImageExtractor extractor = new InlineImageExtractor(store);
+
+        Delta edit = new Delta().retain(3).insert(image(dataUri("png", PNG)), Collections.singletonMap("width", "120"));
+        assertTrue(InlineImageExtractor.mayContainInlineImages(edit.toJson()));
+        Delta extracted = extractor.extract(edit);
+
+        Delta.Op op = extracted.getOps().get(1);
+        String url = (String) ((Map<?, ?>) op.getInsert()).get("image");
+        assertTrue(url.matches("/uploads/[0-9a-f]{64}\\.png"), url);
+        assertEquals("120", op.getAttributes().get("width"));
+        assertArrayEquals(PNG, Files.readAllBytes(store.resolve(url.substring("/uploads/".length()))));
+
+        Delta plain = new Delta().insert("no images");
+        assertSame(plain, extractor.extract(plain));
+        Delta svg = new Delta().insert(image(dataUri("svg+xml", "<svg/>".getBytes())));
+        assertSame(svg, extractor.extract(svg), "SVG stays inline");
+    }
+
+    // ✅ Test 2: The migration change swaps each inline image of a stored document for a URL, in place
+    @Test
+    public void test2_ReplacementsForStoredDocuments() throws IOException {
+        InlineImageExtractor extractor = new InlineImageExtractor(new UploadStore(dir.toString(), 1024));
+        Delta doc = new Delta().insert("ab").insert(image(dataUri("png", PNG)))
+                .insert("cd").insert(image("/uploads/old.png")).insert(image(dataUri("jpeg", PNG))).insert("\n");
+
+        Delta migrated = doc.compose(extractor.replacements(doc));
+
+        assertEquals(doc.length(), migrated.length());
+        assertFalse(migrated.toJson().contains("data:image/"));
+        assertEquals("ab", migrated.getOps().get(0).getInsert());
+        assertEquals(image("/uploads/old.png"), migrated.getOps().get(3).getInsert());
+        assertTrue(((String) ((Map<?, ?>) migrated.getOps().get(4).getInsert()).get("image")).endsWith(".jpg"));
+        assertTrue(extractor.replacements(migrated).getOps().isEmpty());
+    }
+}
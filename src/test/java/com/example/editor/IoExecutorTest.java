@@ -0,0 +1,57 @@
+package com.example.editor;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+// Tests for the PLATFORM / VIRTUAL execution modes of blocking work
+public class IoExecutorTest {
+
+    // ✅ Test 1: PLATFORM runs calls on the caller's thread
+    @Test
+    public void test1_PlatformRunsInline() {
+        IoExecutor io = new IoExecutor(IoExecutor.Mode.PLATFORM, 4);
+        Thread caller = Thread.currentThread();
+        assertSame(caller, io.call(Thread::currentThread));
+        io.shutdown();
+    }
+
+    // ✅ Test 2: VIRTUAL runs on virtual threads, never more than io-threads at a time
+    @Test
+    public void test2_VirtualIsBoundedAndVirtual() throws InterruptedException {
+        IoExecutor io = new IoExecutor(IoExecutor.Mode.VIRTUAL, 3);
+        assertTrue(io.call(() -> Thread.currentThread().isVirtual()));
+
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        List<Thread> callers = IntStream.range(0, 50).mapToObj(i -> new Thread(() -> io.call(() -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(2);
+            seen.add(String.valueOf(i));
+            return running.decrementAndGet();
+        }))).collect(Collectors.toList());
+        callers.forEach(Thread::start);
+        for (Thread caller : callers) caller.join();
+
+        assertEquals(50, seen.size(), "Every call completed");
+        assertTrue(maxRunning.get() <= 3, "At most io-threads concurrent calls, saw " + maxRunning.get());
+        io.shutdown();
+    }
+
+    // ✅ Test 3: Exceptions reach the caller unchanged
+    @Test
+    public void test3_ExceptionsPropagate() {
+        IoExecutor io = new IoExecutor(IoExecutor.Mode.VIRTUAL, 2);
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> io.call(() -> { throw new IllegalStateException("db down"); }));
+        assertEquals("db down", e.getMessage());
+        io.shutdown();
+    }
+}
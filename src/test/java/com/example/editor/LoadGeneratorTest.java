@@ -0,0 +1,318 @@
+package com.example.editor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.messaging.simp.stomp.*;
+import org.springframework.web.socket.client.WebSocketClient;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+import static org.junit.jupiter.api.Assertions.*;
+
+import javax.websocket.ContainerProvider;
+import javax.websocket.WebSocketContainer;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Load generator for the real-time edit flow: boots the whole app on a random port and drives it with
+// simulated editor clients that speak the main.js protocol (join, delta edits against the last
+// revision, one edit in flight with the rest buffered, retry when rejected). Reports the
+// edit-to-broadcast latency (edit sent -> its own echo on /topic/document), throughput and heap use.
+//
+// Skipped unless -Deditor.load=true, e.g.
+//   mvn -B test -Dtest=LoadGeneratorTest -Deditor.load=true -Deditor.load.clients=2000 -Deditor.load.docs=50
+//
+// Settings (system properties, defaults in brackets):
+//   editor.load.clients   [200]     simulated clients, spread round-robin over the documents
+//   editor.load.docs      [10]      documents
+//   editor.load.seconds   [20]      measured duration, once every client has joined
+//   editor.load.typing    [normal]  keystrokes per second per client: slow 0.5, normal 3, fast 10
+//   editor.load.doc-size  [small]   initial size of every document: small 1 KB, medium 100 KB, large 1 MB
+//   editor.load.transport [sockjs]  sockjs (/ws, like main.js) or raw (/ws-raw)
+//
+// Clients and server share this JVM: the heap figures include the clients, and so does the CPU.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "editor.warmup.documents=0")
+@EnabledIfSystemProperty(named = "editor.load", matches = "true")
+public class LoadGeneratorTest {
+
+    // A fresh database and data directories for every run (a leftover operation log would be replayed)
+    @DynamicPropertySource
+    static void dataDirectories(DynamicPropertyRegistry registry) throws IOException {
+        Path dir = Files.createTempDirectory("editor-load");
+        registry.add("spring.datasource.url", () -> "jdbc:h2:mem:" + dir.getFileName() + ";DB_CLOSE_DELAY=-1");
+        registry.add("editor.oplog.dir", () -> dir.resolve("oplog").toString());
+        registry.add("editor.upload.dir", () -> dir.resolve("uploads").toString());
+        registry.add("editor.search.dir", () -> dir.resolve("search").toString());
+        registry.add("editor.cold.dir", () -> dir.resolve("cold").toString());
+    }
+
+    private static final Map<String, Double> TYPING = Map.of("slow", 0.5, "normal", 3.0, "fast", 10.0);
+    private static final Map<String, Integer> DOC_SIZE = Map.of("small", 1024, "medium", 100 * 1024, "large", 1024 * 1024);
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    private final int clients = Integer.getInteger("editor.load.clients", 200);
+    private final int docs = Integer.getInteger("editor.load.docs", 10);
+    private final int seconds = Integer.getInteger("editor.load.seconds", 20);
+    private final String typing = System.getProperty("editor.load.typing", "normal");
+    private final String docSize = System.getProperty("editor.load.doc-size", "small");
+    private final boolean sockJs = !"raw".equals(System.getProperty("editor.load.transport", "sockjs"));
+
+    // Shared by every client; only recorded while measuring
+    private final ConcurrentHistogram latencyMicros = new ConcurrentHistogram(TimeUnit.SECONDS.toMicros(60), 3);
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong echoed = new AtomicLong();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong resyncs = new AtomicLong();
+    private volatile boolean measuring = false;
+    private volatile long measureFromNanos = Long.MAX_VALUE;
+
+    private ScheduledExecutorService keyboard;
+
+    // One simulated browser tab (main.js), editing one document
+    private class Client extends StompSessionHandlerAdapter {
+        final String id;
+        final String docId;
+        final double keysPerSecond;
+        final CountDownLatch joined = new CountDownLatch(1);
+        StompSession session;
+
+        // main.js client state, guarded by this
+        long serverRevision;
+        boolean hasDocument;
+        String pendingDelta;     // sent, waiting for its echo
+        long pendingSeq;
+        long pendingSentNanos;
+        int bufferedChars;       // typed while an edit is in flight
+        long seq;
+        int snapshotParts;
+
+        Client(int n, String docId, double keysPerSecond) {
+            this.id = "load-" + n;
+            this.docId = docId;
+            this.keysPerSecond = keysPerSecond;
+        }
+
+        @Override
+        public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+            this.session = session;
+            session.subscribe("/topic/document/" + docId, handler(EditBatch.class, batch -> onBatch((EditBatch) batch)));
+            session.subscribe("/topic/history/" + id, handler(DocMessage.class, m -> onSnapshot((DocMessage) m)));
+            session.subscribe("/topic/control/" + id, handler(DocMessage.class, m -> onControl((DocMessage) m)));
+            session.send("/app/join/" + docId, Map.of("sender", id, "docId", docId));
+        }
+
+        synchronized void onSnapshot(DocMessage snapshot) {
+            // Large documents come in parts; the revision is known once the last one is in
+            if (snapshot.getChunks() != null && snapshot.getChunks() > 1 && ++snapshotParts < snapshot.getChunks()) return;
+            snapshotParts = 0;
+            if (hasDocument) resyncs.incrementAndGet();
+            serverRevision = snapshot.getRevision() != null ? snapshot.getRevision() : 0;
+            pendingDelta = null;
+            bufferedChars = 0;
+            hasDocument = true;
+            joined.countDown();
+        }
+
+        synchronized void onBatch(EditBatch batch) {
+            if (measuring) received.addAndGet(batch.getEdits().size());
+            for (DocMessage edit : batch.getEdits()) {
+                if (edit.getRevision() == null || edit.getRevision() <= serverRevision) continue;
+                serverRevision = edit.getRevision();
+                if (id.equals(edit.getSender()) && pendingDelta != null) {
+                    if (measuring && pendingSentNanos >= measureFromNanos) {
+                        latencyMicros.recordValue(Math.min(latencyMicros.getHighestTrackableValue(),
+                                TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - pendingSentNanos)));
+                        echoed.incrementAndGet();
+                    }
+                    pendingDelta = null;
+                }
+                // Remote edits would be transformed against ours here; every simulated edit inserts at
+                // the start of the document, so the server's rebase alone keeps them valid
+            }
+            if (pendingDelta == null && bufferedChars > 0) sendBuffered();
+        }
+
+        synchronized void onControl(DocMessage control) {
+            if ("ack".equals(control.getContent()) || pendingDelta == null) return;
+            // Rejected under overload: back off and send the same edit (same seq) again
+            rejected.incrementAndGet();
+            keyboard.schedule(this::resend, 100 + ThreadLocalRandom.current().nextInt(100), TimeUnit.MILLISECONDS);
+        }
+
+        synchronized void keystroke() {
+            if (!hasDocument || session == null || !session.isConnected()) return;
+            bufferedChars++;
+            if (pendingDelta == null) sendBuffered();
+        }
+
+        private void sendBuffered() {
+            pendingDelta = "{\"ops\":[{\"insert\":\"" + "x".repeat(bufferedChars) + "\"}]}";
+            pendingSeq = ++seq;
+            bufferedChars = 0;
+            send();
+        }
+
+        private synchronized void resend() {
+            if (pendingDelta != null) send();
+        }
+
+        private void send() {
+            Map<String, Object> edit = new HashMap<>();
+            edit.put("content", pendingDelta);
+            edit.put("sender", id);
+            edit.put("docId", docId);
+            edit.put("revision", serverRevision);
+            edit.put("seq", pendingSeq);
+            pendingSentNanos = System.nanoTime();
+            if (measuring) sent.incrementAndGet();
+            session.send("/app/edit/" + docId, edit);
+        }
+
+        // Keystrokes arrive at random, keysPerSecond on average
+        void typeNext() {
+            double delaySeconds = -Math.log(1 - ThreadLocalRandom.current().nextDouble()) / keysPerSecond;
+            keyboard.schedule(() -> {
+                keystroke();
+                typeNext();
+            }, (long) (delaySeconds * 1_000_000), TimeUnit.MICROSECONDS);
+        }
+
+        @Override
+        public void handleTransportError(StompSession session, Throwable exception) {
+            System.err.println("Transport error for " + id + ": " + exception.getMessage());
+        }
+    }
+
+    private static StompFrameHandler handler(Class<?> type, java.util.function.Consumer<Object> onMessage) {
+        return new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) { return type; }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) { onMessage.accept(payload); }
+        };
+    }
+
+    // Documents of the requested size, stored like any saved document so the first join loads them from the DB
+    private List<String> seedDocuments(int bytes) throws Exception {
+        List<String> docIds = new ArrayList<>();
+        StringBuilder text = new StringBuilder(bytes + 100);
+        Random random = new Random(42);
+        while (text.length() < bytes) text.append(random.nextInt(10) == 0 ? "\n" : "lorem ipsum ");
+        String content = JSON.writeValueAsString(Map.of("ops", List.of(Map.of("insert", text + "\n"))));
+        for (int i = 0; i < docs; i++) {
+            String docId = "load-doc-" + i;
+            jdbc.update("INSERT INTO documents (doc_id, title, content, owner, revision, content_length, last_modified) VALUES (?, ?, ?, ?, 0, ?, ?)",
+                    docId, "Load " + i, content, "load", content.length(), new Timestamp(System.currentTimeMillis()));
+            docIds.add(docId);
+        }
+        return docIds;
+    }
+
+    // Tomcat allocates each session's text buffer up front, so it is sized for the largest frame this
+    // run can see (a whole snapshot, or one part of a large one) rather than generously
+    private WebSocketStompClient stompClient(int docBytes) {
+        WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+        container.setDefaultMaxTextMessageBufferSize(Math.min(docBytes * 3 + 64 * 1024, 1024 * 1024));
+        WebSocketClient webSocket = new StandardWebSocketClient(container);
+        WebSocketStompClient stomp = new WebSocketStompClient(sockJs
+                ? new SockJsClient(List.of(new WebSocketTransport(webSocket)))
+                : webSocket);
+        stomp.setMessageConverter(new MappingJackson2MessageConverter());
+        stomp.setInboundMessageSizeLimit(1024 * 1024);
+        return stomp;
+    }
+
+    // ✅ Test 1: Thousands of clients editing concurrently; every edit is echoed back to its sender
+    @Test
+    public void test1_EditLoad() throws Exception {
+        Double keysPerSecond = TYPING.get(typing);
+        Integer bytes = DOC_SIZE.get(docSize);
+        assertNotNull(keysPerSecond, "editor.load.typing must be one of " + TYPING.keySet());
+        assertNotNull(bytes, "editor.load.doc-size must be one of " + DOC_SIZE.keySet());
+
+        List<String> docIds = seedDocuments(bytes);
+        keyboard = Executors.newScheduledThreadPool(2, r -> {
+            Thread t = new Thread(r, "Load-Keyboard");
+            t.setDaemon(true);
+            return t;
+        });
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        AtomicLong peakHeap = new AtomicLong();
+        keyboard.scheduleAtFixedRate(() -> peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max),
+                0, 200, TimeUnit.MILLISECONDS);
+
+        // Connect and join, a few at a time like a real reconnect wave would not
+        WebSocketStompClient stomp = stompClient(bytes);
+        String url = sockJs ? "http://localhost:" + port + "/ws" : "ws://localhost:" + port + "/ws-raw";
+        List<Client> all = new ArrayList<>();
+        long joinStart = System.nanoTime();
+        for (int i = 0; i < clients; i++) {
+            Client client = new Client(i, docIds.get(i % docs), keysPerSecond);
+            all.add(client);
+            stomp.connect(url, client);
+            if (i % 50 == 49) client.joined.await(30, TimeUnit.SECONDS);
+        }
+        for (Client client : all) assertTrue(client.joined.await(60, TimeUnit.SECONDS), client.id + " never received its snapshot");
+        long joinMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - joinStart);
+
+        // Type for a few seconds before measuring, so the JIT and the caches have settled
+        all.forEach(Client::typeNext);
+        Thread.sleep(Math.min(5000, seconds * 250L));
+        long start = System.nanoTime();
+        measureFromNanos = start;
+        measuring = true;
+        Thread.sleep(seconds * 1000L);
+        measuring = false;
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        keyboard.shutdownNow();
+
+        long heapAfterRun = memory.getHeapMemoryUsage().getUsed();
+        System.gc();
+        long heapAfterGc = memory.getHeapMemoryUsage().getUsed();
+        for (Client client : all) {
+            if (client.session != null && client.session.isConnected()) client.session.disconnect();
+        }
+        stomp.stop();
+
+        System.out.printf("%n=== Load: %d clients on %d documents (%s typing, %s documents, %s) ===%n",
+                clients, docs, typing, docSize, sockJs ? "SockJS" : "raw WebSocket");
+        System.out.printf("Joined all clients in %d ms%n", joinMillis);
+        System.out.printf("Edits sent %d, echoed %d, rejected %d, resyncs %d in %.1f s%n",
+                sent.get(), echoed.get(), rejected.get(), resyncs.get(), elapsed);
+        System.out.printf("Throughput: %.0f edits/s applied, %.0f edits/s delivered to clients%n",
+                echoed.get() / elapsed, received.get() / elapsed);
+        System.out.printf("Edit-to-broadcast latency: p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms%n",
+                latencyMicros.getValueAtPercentile(50) / 1000.0, latencyMicros.getValueAtPercentile(99) / 1000.0,
+                latencyMicros.getValueAtPercentile(99.9) / 1000.0, latencyMicros.getMaxValue() / 1000.0);
+        System.out.printf("Heap (server and clients): peak %d MB, after the run %d MB, after GC %d MB%n%n",
+                peakHeap.get() >> 20, heapAfterRun >> 20, heapAfterGc >> 20);
+
+        assertTrue(echoed.get() > 0, "No edit was echoed back");
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.editor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+// Tests for the append-only operation log used for edit durability
+public class OperationLogTest {
+
+    @TempDir
+    Path tempDir;
+
+    // ✅ Test 1: Everything appended is read back per document, in revision order
+    @Test
+    public void test1_AppendAndRecover() throws Exception {
+        OperationLog log = new OperationLog(tempDir.toString(), 5, 1 << 20);
+        log.open();
+        for (int rev = 1; rev <= 100; rev++) {
+            log.append("a", rev, "{\"ops\":[{\"insert\":\"a" + rev + "\"}]}");
+            log.append("b", rev, "{\"ops\":[{\"insert\":\"b" + rev + "\"}]}");
+        }
+        log.close();
+
+        Map<String, List<OperationLog.Record>> recovered = reopenAndRecover();
+        assertEquals(100, recovered.get("a").size());
+        assertEquals(100, recovered.get("b").size());
+        assertEquals(1, recovered.get("a").get(0).getRevision());
+        assertEquals("{\"ops\":[{\"insert\":\"b100\"}]}", recovered.get("b").get(99).getDelta());
+    }
+
+    // ✅ Test 2: A torn write at the end of a segment (crash mid-append) is ignored
+    @Test
+    public void test2_TornTailIsIgnored() throws Exception {
+        OperationLog log = new OperationLog(tempDir.toString(), 5, 1 << 20);
+        log.open();
+        log.append("a", 1, "{\"ops\":[{\"insert\":\"x\"}]}");
+        log.append("a", 2, "{\"ops\":[{\"insert\":\"y\"}]}");
+        log.close();
+
+        Path segment;
+        try (Stream<Path> files = Files.list(tempDir)) {
+            segment = files.filter(p -> p.toFile().length() > 0).findFirst().orElseThrow(AssertionError::new);
+        }
+        try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ch.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 40, 1, 2, 3})); // header of a record that never finished
+        }
+
+        List<OperationLog.Record> records = reopenAndRecover().get("a");
+        assertEquals(2, records.size());
+    }
+
+    // ✅ Test 3: Closed segments are deleted once snapshots cover them
+    @Test
+    public void test3_SnapshottedSegmentsAreDeleted() throws Exception {
+        OperationLog log = new OperationLog(tempDir.toString(), 5, 256); // tiny segments
+        log.open();
+        for (int rev = 1; rev <= 50; rev++) log.append("a", rev, "{\"ops\":[{\"insert\":\"0123456789\"}]}");
+        long before = countSegments();
+        assertTrue(before > 2, "Expected the log to rotate");
+
+        log.markSnapshotted("a", 50);
+        assertEquals(1, countSegments(), "Only the active segment should remain");
+        log.close();
+    }
+
+    private Map<String, List<OperationLog.Record>> reopenAndRecover() throws Exception {
+        OperationLog log = new OperationLog(tempDir.toString(), 5, 1 << 20);
+        log.open();
+        try {
+            return log.recover();
+        } finally {
+            log.close();
+        }
+    }
+
+    private long countSegments() throws Exception {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.count();
+        }
+    }
+
+    // ✅ Test 4: An action waiting for a position runs once an fsync covers it, not before
+    @Test
+    public void test4_WhenDurable() throws Exception {
+        OperationLog log = new OperationLog(tempDir.toString(), 60_000, 1 << 20); // the flusher stays asleep
+        log.open();
+        List<Long> acked = new CopyOnWriteArrayList<>();
+        long first = log.append("a", 1, "{\"ops\":[{\"insert\":\"x\"}]}");
+        log.whenDurable(first, () -> acked.add(1L));
+        assertTrue(acked.isEmpty(), "Appended but not fsynced yet");
+
+        log.sync();
+        assertEquals(List.of(1L), acked);
+
+        long second = log.append("a", 2, "{\"ops\":[{\"insert\":\"y\"}]}");
+        assertEquals(first + 1, second);
+        log.whenDurable(second, () -> acked.add(2L));
+        log.whenDurable(first, () -> acked.add(3L));
+        assertEquals(List.of(1L, 3L), acked, "Already durable: runs right away");
+        log.close();
+        assertEquals(List.of(1L, 3L, 2L), acked, "Closing forces the log");
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.editor;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Tests for per-document presence and its throttled updates
+public class PresenceTrackerTest {
+
+    // ✅ Test 1: A join storm on one document becomes one immediate update plus one coalesced update
+    @Test
+    public void test1_CoalescesUpdatesPerDocument() throws InterruptedException {
+        List<String> sent = new CopyOnWriteArrayList<>();
+        CountDownLatch sentAll = new CountDownLatch(3);
+        PresenceTracker tracker = new PresenceTracker((docId, count) -> {
+            sent.add(docId + "=" + count);
+            sentAll.countDown();
+        }, count -> {}, 200);
+
+        for (int i = 0; i < 100; i++) tracker.join("a", "s" + i);
+        tracker.join("b", "s0");
+        assertEquals(List.of("a=1", "b=1"), sent, "First change of each document goes out at once");
+
+        assertTrue(sentAll.await(2, TimeUnit.SECONDS));
+        assertEquals(List.of("a=1", "b=1", "a=100"), sent, "The other 99 joins arrive as one update");
+        // The second join schedules the trailing update, the remaining 98 ride along with it
+        assertEquals(98L, tracker.stats().get("coalesced"));
+        tracker.shutdown();
+    }
+
+    // ✅ Test 2: Leaving removes the session; an empty document sends a last update and is forgotten
+    @Test
+    public void test2_EmptyDocumentsAreDropped() throws InterruptedException {
+        List<String> sent = new CopyOnWriteArrayList<>();
+        PresenceTracker tracker = new PresenceTracker((docId, count) -> sent.add(docId + "=" + count), count -> {}, 50);
+
+        tracker.join("a", "s1");
+        tracker.join("a", "s1"); // a rejoin of the same session changes nothing
+        Thread.sleep(100);
+        tracker.leave("a", "s1");
+        assertEquals(0, tracker.sessions("a"));
+        assertEquals(List.of("a=1", "a=0"), sent);
+        assertEquals(0, tracker.stats().get("documents"));
+
+        tracker.join("a", "s2");
+        assertEquals(1, tracker.sessions("a"));
+        assertEquals("a=1", sent.get(sent.size() - 1));
+        tracker.shutdown();
+    }
+
+    // ✅ Test 3: Connects and disconnects update the node-wide count, throttled the same way
+    @Test
+    public void test3_NodeSessionCount() throws InterruptedException {
+        AtomicInteger last = new AtomicInteger(-1);
+        AtomicInteger updates = new AtomicInteger();
+        PresenceTracker tracker = new PresenceTracker((docId, count) -> {}, count -> {
+            last.set(count);
+            updates.incrementAndGet();
+        }, 100);
+
+        for (int i = 0; i < 50; i++) tracker.connect("s" + i);
+        for (int i = 0; i < 10; i++) tracker.disconnect("s" + i);
+        tracker.disconnect("unknown");
+        assertEquals(40, tracker.sessions());
+
+        Thread.sleep(300);
+        assertEquals(40, last.get());
+        assertEquals(2, updates.get());
+        tracker.shutdown();
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.editor;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// Tests for the revision history written alongside snapshots, against an in-memory H2 database
+public class RevisionStoreTest {
+
+    private JdbcTemplate jdbc;
+    private RevisionStore store;
+    private SnapshotWriter writer;
+
+    @BeforeEach
+    public void createTables() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE documents (doc_id VARCHAR(255) PRIMARY KEY, title VARCHAR(255), content CLOB, owner VARCHAR(255), " +
+                "revision BIGINT, content_length BIGINT, last_modified TIMESTAMP, content_hash VARCHAR(255), " +
+                "archive_segment INT, archive_offset BIGINT, archived_at TIMESTAMP)");
+        jdbc.execute("CREATE TABLE document_blocks (doc_id VARCHAR(255), block_index INT, content CLOB, content_hash VARCHAR(255), " +
+                "PRIMARY KEY (doc_id, block_index))");
+        jdbc.execute("CREATE TABLE document_revisions (doc_id VARCHAR(255), revision BIGINT, delta CLOB, snapshot CLOB, " +
+                "PRIMARY KEY (doc_id, revision))");
+        // Snapshot every 5 revisions; beyond the newest 20 keep every 10th, at most 2 of them
+        store = new RevisionStore(jdbc, 5, 20, 10, 2);
+        writer = new SnapshotWriter(jdbc, new DataSourceTransactionManager(dataSource), store);
+    }
+
+    // Applies count edits, writing a snapshot every writeEvery of them; returns the content at each revision
+    private List<String> edit(DocumentState state, int count, int writeEvery) {
+        List<String> contents = new ArrayList<>();
+        contents.add(state.snapshot().getContent().toJson());
+        for (int i = 1; i <= count; i++) {
+            Delta change = i % 3 == 0
+                    ? new Delta().retain(1).delete(1)
+                    : new Delta().retain(i % 4).insert("e" + i, i % 2 == 0 ? Map.of("bold", true) : null);
+            assertNotNull(state.apply(change, state.getRevision()));
+            contents.add(state.snapshot().getContent().toJson());
+            if (i % writeEvery == 0) writer.write(List.of(state));
+        }
+        return contents;
+    }
+
+    // ✅ Test 1: Every revision written so far is rebuilt exactly, from snapshots every 5 revisions
+    @Test
+    public void test1_RebuildsEveryRecordedRevision() {
+        DocumentState state = new DocumentState("a", "Doc", new Delta().insert("start\n"), 0, 64);
+        List<String> contents = edit(state, 23, 7);
+        writer.write(List.of(state));
+
+        for (int revision = 0; revision <= 23; revision++) {
+            assertEquals(contents.get(revision), store.contentAt("a", revision).toJson(), "revision " + revision);
+        }
+        // The anchor at revision 0 plus 5, 10, 15 and 20
+        assertEquals(5, jdbc.queryForObject("SELECT COUNT(*) FROM document_revisions WHERE snapshot IS NOT NULL", Integer.class));
+        assertNull(store.contentAt("a", 24));
+    }
+
+    // ✅ Test 2: A diff composes the deltas in between; revisions not yet written come from the open document
+    @Test
+    public void test2_DiffsAndUnrecordedRevisions() {
+        DocumentState state = new DocumentState("a", "Doc", new Delta().insert("start\n"), 0, 64);
+        List<String> contents = edit(state, 16, 8);
+
+        List<Delta> deltas = store.deltasBetween("a", 3, 14);
+        assertEquals(11, deltas.size());
+        Delta document = store.contentAt("a", 3);
+        for (Delta delta : deltas) document = document.compose(delta);
+        assertEquals(contents.get(14), document.toJson());
+
+        // Two more edits after the last write
+        contents.addAll(edit(state, 2, 100).subList(1, 3));
+        assertEquals(16, state.getRecorded().getRevision());
+        assertEquals(contents.get(18), state.contentAt(18).toJson());
+        assertEquals(2, state.historyBetween(16, 18).size());
+        assertNull(store.deltasBetween("a", 14, 18));
+    }
+
+    // ✅ Test 3: Old revisions are compacted to every 10th snapshot, and the oldest of those expire
+    @Test
+    public void test3_CompactsOldRevisions() {
+        DocumentState state = new DocumentState("a", "Doc", new Delta().insert("start\n"), 0, 64);
+        List<String> contents = edit(state, 60, 4);
+
+        // Revisions 40..60 in full; 20 and 30 as snapshots only; nothing older
+        assertEquals(contents.get(41), store.contentAt("a", 41).toJson());
+        assertEquals(contents.get(40), store.contentAt("a", 40).toJson());
+        assertEquals(contents.get(30), store.contentAt("a", 30).toJson());
+        assertEquals(contents.get(20), store.contentAt("a", 20).toJson());
+        assertNull(store.contentAt("a", 35));
+        assertNull(store.contentAt("a", 10));
+        assertNull(store.deltasBetween("a", 30, 45));
+        assertEquals(23, jdbc.queryForObject("SELECT COUNT(*) FROM document_revisions", Integer.class));
+        assertEquals(20L, ((Number) store.range("a").get("oldest")).longValue());
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.editor;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+// Tests for the chunked in-memory document content
+public class RopeTest {
+
+    private static String text(int length, long seed) {
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder(length);
+        while (sb.length() < length) sb.append((char) ('a' + random.nextInt(26))).append(random.nextInt(40) == 0 ? "\n" : "");
+        return sb.toString();
+    }
+
+    // ✅ Test 1: Random edits give exactly what Delta.compose gives on the whole document
+    @Test
+    public void test1_MatchesWholeDocumentCompose() {
+        Random random = new Random(7);
+        Delta doc = new Delta().insert(text(100_000, 1)).insert("\n");
+        Rope rope = Rope.of(doc);
+        assertTrue(rope.getChunks().size() > 5, "A 100K document is cut into chunks");
+
+        for (int i = 0; i < 2000; i++) {
+            int length = doc.length();
+            int at = random.nextInt(length);
+            Delta change = new Delta().retain(at);
+            switch (random.nextInt(4)) {
+                case 0: change.insert(text(1 + random.nextInt(30), i)); break;
+                case 1: change.delete(Math.min(1 + random.nextInt(300), length - at - 1)); break;
+                case 2: change.retain(Math.min(1 + random.nextInt(5000), length - at), Collections.singletonMap("bold", true)); break;
+                default: change.insert(Collections.singletonMap("image", "/uploads/" + i + ".png"));
+            }
+            doc = doc.compose(change);
+            rope = rope.compose(change);
+            assertEquals(doc.length(), rope.length());
+        }
+        assertEquals(doc, rope.toDelta());
+        for (Rope.Chunk chunk : rope.getChunks()) assertTrue(chunk.getLength() <= Rope.MAX_CHUNK);
+    }
+
+    // ✅ Test 2: A keystroke only replaces the chunk it lands in
+    @Test
+    public void test2_EditReusesUntouchedChunks() {
+        Rope rope = Rope.of(new Delta().insert(text(200_000, 2)).insert("\n"));
+        Rope edited = rope.compose(new Delta().retain(100_000).insert("x"));
+
+        assertEquals(rope.getChunks().size(), edited.getChunks().size());
+        int replaced = 0;
+        for (int i = 0; i < rope.getChunks().size(); i++) {
+            if (rope.getChunks().get(i) != edited.getChunks().get(i)) replaced++;
+        }
+        assertEquals(1, replaced);
+        assertEquals(rope.length() + 1, edited.length());
+    }
+
+    // ✅ Test 3: Chunk boundaries never split a surrogate pair, and parts cover the whole document
+    @Test
+    public void test3_SurrogatesAndParts() {
+        StringBuilder emoji = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) emoji.append("😀");
+        Rope rope = Rope.of(new Delta().insert("a" + emoji + "\n"));
+        for (Rope.Chunk chunk : rope.getChunks()) {
+            String first = (String) chunk.getDelta().getOps().get(0).getInsert();
+            assertFalse(Character.isLowSurrogate(first.charAt(0)), "Chunk starts inside a surrogate pair");
+        }
+
+        List<Delta> parts = rope.parts(20_000);
+        assertTrue(parts.size() > 1);
+        assertEquals(rope.toDelta(), Delta.concat(parts));
+    }
+}
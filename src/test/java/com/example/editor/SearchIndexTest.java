@@ -0,0 +1,147 @@
+package com.example.editor;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+// Tests for the full-text search index: ranking, snippets, incremental updates and the on-disk log
+public class SearchIndexTest {
+
+    @TempDir
+    Path dir;
+
+    private JdbcTemplate jdbc;
+    private ClusterService cluster;
+    private SearchIndex index;
+
+    @BeforeEach
+    public void createTables() throws Exception {
+        jdbc = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbc.execute("CREATE TABLE documents (doc_id VARCHAR(255) PRIMARY KEY, title VARCHAR(255), content CLOB, owner VARCHAR(255), " +
+                "revision BIGINT, content_length BIGINT, last_modified TIMESTAMP, content_hash VARCHAR(255), " +
+                "archive_segment INT, archive_offset BIGINT, archived_at TIMESTAMP)");
+        jdbc.execute("CREATE TABLE document_blocks (doc_id VARCHAR(255), block_index INT, content CLOB, content_hash VARCHAR(255), " +
+                "PRIMARY KEY (doc_id, block_index))");
+        cluster = new ClusterService("node-1", List.of("node-1"), null, null, false);
+        index = open();
+    }
+
+    @AfterEach
+    public void close() throws Exception {
+        index.stop();
+    }
+
+    private SearchIndex open() throws Exception {
+        SearchIndex opened = new SearchIndex(dir.toString(), jdbc, cluster, null);
+        opened.start();
+        return opened;
+    }
+
+    private void update(String docId, String title, String text) throws InterruptedException {
+        update(docId, title, "alice", text);
+    }
+
+    private void update(String docId, String title, String owner, String text) throws InterruptedException {
+        index.update(docId, title, owner, UUID.randomUUID().toString(), Rope.of(new Delta().insert(text + "\n")));
+        index.flush();
+    }
+
+    private List<String> docIds(SearchIndex.Results results) {
+        return results.getHits().stream().map(SearchIndex.Hit::getDocId).collect(Collectors.toList());
+    }
+
+    // ✅ Test 1: Title matches and documents matching more words rank first; snippets mark the matches
+    @Test
+    public void test1_RanksAndHighlights() throws Exception {
+        update("a", "Meeting notes", "We talked about the budget for next year.");
+        update("b", "Budget 2024", "Numbers for the budget <draft> & more.");
+        update("c", "Shopping", "Milk, eggs, bread.");
+        update("d", "Plans", "The budget and the meeting were both postponed.");
+
+        SearchIndex.Results results = index.search("budget", null, 0, 10);
+        assertEquals(3, results.getTotal());
+        assertEquals("b", docIds(results).get(0), "Title and two mentions rank first");
+        assertEquals("Numbers for the <mark>budget</mark> &lt;draft&gt; &amp; more.", results.getHits().get(0).getSnippet());
+
+        assertEquals(List.of("a", "d", "b"), docIds(index.search("BUDGET meeting", null, 0, 10)), "Both words beat one; the title counts more");
+        assertEquals(List.of("b"), docIds(index.search("budget meeting", null, 1, 2)), "Second page of two");
+        assertEquals(0, index.search("nothing", null, 0, 10).getTotal());
+        assertEquals(0, index.search("  ", null, 0, 10).getTotal());
+    }
+
+    // ✅ Test 2: Updates replace a document's old words, and the index survives a restart from its log
+    @Test
+    public void test2_UpdatesAndReload() throws Exception {
+        update("a", "Doc", "alpha beta");
+        update("b", "Other", "gamma");
+        update("a", "Doc", "beta delta 東京");
+
+        assertEquals(0, index.search("alpha", null, 0, 10).getTotal());
+        assertEquals(List.of("a"), docIds(index.search("delta", null, 0, 10)));
+        assertEquals(List.of("a"), docIds(index.search("京", null, 0, 10)), "Ideographs are words of their own");
+
+        index.stop();
+        index = open();
+        index.flush();
+        assertEquals(2, index.stats().get("documents"));
+        assertEquals(0, index.search("alpha", null, 0, 10).getTotal());
+        assertEquals("beta <mark>delta</mark> 東京", index.search("delta", null, 0, 10).getHits().get(0).getSnippet());
+        assertEquals(List.of("b"), docIds(index.search("gamma", null, 0, 10)));
+    }
+
+    // ✅ Test 3: Documents already in the database are indexed once at startup, from blocks or legacy content
+    @Test
+    public void test3_BuildsFromDatabase() throws Exception {
+        jdbc.update("INSERT INTO documents (doc_id, title, content, owner, content_hash) VALUES ('a', 'Legacy', ?, 'bob', 'h1')",
+                new Delta().insert("stored inline\n").toJson());
+        jdbc.update("INSERT INTO documents (doc_id, title, content_hash) VALUES ('b', 'Blocks', 'h2')");
+        jdbc.update("INSERT INTO document_blocks VALUES ('b', 0, ?, 'x')", new Delta().insert("first block ").toJson());
+        jdbc.update("INSERT INTO document_blocks VALUES ('b', 1, ?, 'y')", new Delta().insert("second block\n").toJson());
+
+        index.run(null);
+        index.flush();
+        assertEquals(List.of("a"), docIds(index.search("inline", null, 0, 10)));
+        assertEquals(List.of("b"), docIds(index.search("second", null, 0, 10)));
+        assertEquals(List.of("a"), docIds(index.search("inline", "bob", 0, 10)), "The owner comes from the row");
+
+        // Finished once: the next start only replays the log
+        jdbc.update("INSERT INTO documents (doc_id, title, content) VALUES ('c', 'Later', '')");
+        index.stop();
+        index = open();
+        index.run(null);
+        index.flush();
+        assertEquals(2, index.stats().get("documents"));
+    }
+
+    // ✅ Test 4: A search can be limited to one owner's documents; the owner survives updates without one and restarts
+    @Test
+    public void test4_ScopedToOwner() throws Exception {
+        update("a", "Alice's notes", "alice", "shared word");
+        update("b", "Bob's notes", "bob", "shared word");
+        jdbc.update("INSERT INTO documents (doc_id, title, owner) VALUES ('c', 'Carol''s notes', 'carol')");
+        update("c", "Carol's notes", null, "shared word"); // first snapshot: the owner is looked up
+
+        assertEquals(3, index.search("shared", null, 0, 10).getTotal());
+        SearchIndex.Results bob = index.search("shared", "bob", 0, 10);
+        assertEquals(1, bob.getTotal());
+        assertEquals(List.of("b"), docIds(bob));
+        assertEquals(List.of("c"), docIds(index.search("shared", "carol", 0, 10)));
+        assertEquals(0, index.search("shared", "mallory", 0, 10).getTotal());
+
+        update("a", "Alice's notes", null, "shared word, edited"); // snapshot updates carry no owner
+        index.stop();
+        index = open();
+        index.flush();
+        assertEquals(List.of("a"), docIds(index.search("edited", "alice", 0, 10)));
+        assertEquals(0, index.search("edited", "bob", 0, 10).getTotal());
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.editor;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+// Tests for edit deduplication: the per-sender SequenceWindow and how DocumentState uses it
+public class SequenceWindowTest {
+
+    // ✅ Test 1: A resent edit (same sender and seq) is applied once; a rejected one can be sent again
+    @Test
+    public void test1_DuplicateEditsAreAppliedOnce() {
+        DocumentState state = new DocumentState("doc", "Doc", DocumentState.parseStoredContent(""), 0, 10);
+        DocumentState.Applied first = state.apply(new Delta().insert("a"), 0, "alice", 1);
+        assertEquals(1, first.getRevision());
+        state.apply(new Delta().insert("b"), 1, "bob", 1);
+
+        // Retry of alice's edit after a reconnect, rebased on revision 2
+        DocumentState.Applied retry = state.apply(new Delta().insert("a"), 2, "alice", 1);
+        assertTrue(retry.isDuplicate());
+        assertEquals(1, retry.getRevision(), "Acknowledged with the revision the first copy produced");
+        assertEquals(new Delta().insert("ba\n"), state.snapshot().getContent());
+
+        // Does not fit the document (retains past its end): rejected and not recorded, so the same seq is accepted later
+        assertNull(state.apply(new Delta().retain(50).insert("x"), 2, "alice", 2));
+        assertFalse(state.apply(new Delta().insert("c"), 2, "alice", 2).isDuplicate());
+        assertEquals(3, state.getRevision());
+    }
+
+    // ✅ Test 2: The window remembers the last 64 seqs, out of order, and treats anything older as seen
+    @Test
+    public void test2_SequenceWindow() {
+        SequenceWindow window = new SequenceWindow();
+        window.record(3, 30);
+        window.record(1, 10);
+        assertFalse(window.isDuplicate(2), "Out of order: 2 has not arrived yet");
+        assertTrue(window.isDuplicate(1));
+        assertTrue(window.isDuplicate(3));
+        assertEquals(30, window.revisionOf(3));
+        assertEquals(-1, window.revisionOf(1));
+
+        window.record(3 + SequenceWindow.WIDTH, 99);
+        assertTrue(window.isDuplicate(2), "Fell off the window");
+        assertFalse(window.isDuplicate(4 + SequenceWindow.WIDTH));
+        assertTrue(window.isDuplicate(3 + SequenceWindow.WIDTH));
+        assertFalse(window.isDuplicate(5), "Still inside the window, never applied");
+    }
+}
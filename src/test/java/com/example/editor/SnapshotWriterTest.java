@@ -0,0 +1,122 @@
+package com.example.editor;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+// Tests for the batched snapshot writes of the backup cycle, against an in-memory H2 database
+public class SnapshotWriterTest {
+
+    private JdbcTemplate jdbc;
+    private SnapshotWriter writer;
+
+    @BeforeEach
+    public void createTable() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE documents (doc_id VARCHAR(255) PRIMARY KEY, title VARCHAR(255), content CLOB, owner VARCHAR(255), " +
+                "revision BIGINT, content_length BIGINT, last_modified TIMESTAMP, content_hash VARCHAR(255), " +
+                "archive_segment INT, archive_offset BIGINT, archived_at TIMESTAMP)");
+        jdbc.execute("CREATE TABLE document_blocks (doc_id VARCHAR(255), block_index INT, content CLOB, content_hash VARCHAR(255), " +
+                "PRIMARY KEY (doc_id, block_index))");
+        jdbc.execute("CREATE TABLE document_revisions (doc_id VARCHAR(255), revision BIGINT, delta CLOB, snapshot CLOB, " +
+                "PRIMARY KEY (doc_id, revision))");
+        writer = new SnapshotWriter(jdbc, new DataSourceTransactionManager(dataSource), new RevisionStore(jdbc, 100, 10000, 1000, 100));
+    }
+
+    private static DocumentState state(String docId, String text, long revision) {
+        DocumentState state = new DocumentState(docId, "Doc", new Delta().insert(text), 0, 16);
+        state.replay(new Delta(), revision);
+        return state;
+    }
+
+    private long revisionOf(String docId) {
+        return jdbc.queryForObject("SELECT revision FROM documents WHERE doc_id = ?", Long.class, docId);
+    }
+
+    // ✅ Test 1: New rows are inserted, changed rows rewritten, unchanged content only gets its revision bumped
+    @Test
+    public void test1_WritesInsertsAndSkipsUnchanged() {
+        DocumentState a = state("a", "hello", 1);
+        DocumentState b = state("b", "world", 1);
+        SnapshotWriter.Result first = writer.write(List.of(a, b));
+        assertEquals(2, first.getInserted());
+
+        a.replay(new Delta().retain(5).insert("!"), 2); // content changed
+        b.replay(new Delta(), 2);                       // same content, new revision
+        SnapshotWriter.Result second = writer.write(List.of(a, b));
+
+        assertEquals(1, second.getWritten());
+        assertEquals(1, second.getUnchanged());
+        assertEquals(0, second.getInserted());
+        assertEquals(2, second.getPersisted().size());
+        assertEquals(2, revisionOf("a"));
+        assertEquals(2, revisionOf("b"));
+        assertTrue(content("a").contains("hello!"));
+    }
+
+    // ✅ Test 2: An older snapshot never overwrites a newer row
+    @Test
+    public void test2_StaleSnapshotIsSkipped() {
+        DocumentState newer = state("doc", "new text", 5);
+        writer.write(List.of(newer));
+
+        DocumentState older = state("doc", "old text", 3);
+        SnapshotWriter.Result result = writer.write(List.of(older));
+
+        assertEquals(1, result.getStale());
+        assertTrue(result.getPersisted().isEmpty());
+        assertEquals(5, revisionOf("doc"));
+        assertTrue(content("doc").contains("new text"));
+    }
+
+    // ✅ Test 3: An edit in a large document rewrites only the block it touched
+    @Test
+    public void test3_OnlyChangedBlocksAreRewritten() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) text.append((char) ('a' + i % 26));
+        DocumentState state = state("big", text.toString(), 1);
+        SnapshotWriter.Result first = writer.write(List.of(state));
+        int blocks = state.snapshot().getRope().getChunks().size();
+        assertTrue(blocks > 5);
+        assertEquals(blocks, first.getBlocks());
+
+        state.replay(new Delta().retain(50_000).insert("EDIT"), 2);
+        SnapshotWriter.Result second = writer.write(List.of(state));
+
+        assertEquals(1, second.getWritten());
+        assertEquals(1, second.getBlocks(), "Only the edited block is written again");
+        assertEquals(state.snapshot().getContent(), Delta.fromJson(content("big")));
+    }
+
+    // The stored document: its blocks, in order
+    // ✅ Test 4: An edit that missed the operation log counts as saved only once a snapshot holds it
+    @Test
+    public void test4_UnloggedEditIsSavedBySnapshot() {
+        DocumentState state = state("doc", "text", 1);
+        writer.write(List.of(state));
+        state.replay(new Delta().retain(4).insert("!"), 2);
+        state.markUnlogged(2);
+        assertTrue(state.hasUnloggedEdits());
+
+        state.replay(new Delta().retain(5).insert("?"), 3); // a later, logged edit does not cover it
+        assertTrue(state.hasUnloggedEdits());
+
+        writer.write(List.of(state));
+        assertFalse(state.hasUnloggedEdits());
+    }
+
+    private String content(String docId) {
+        List<String> blocks = jdbc.queryForList("SELECT content FROM document_blocks WHERE doc_id = ? ORDER BY block_index", String.class, docId);
+        List<Delta> deltas = new ArrayList<>();
+        for (String block : blocks) deltas.add(Delta.fromJson(block));
+        return Delta.concat(deltas).toJson();
+    }
+}
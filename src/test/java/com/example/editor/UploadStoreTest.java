@@ -0,0 +1,65 @@
+package com.example.editor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+// Tests for the content-addressed upload store and Range handling of downloads
+public class UploadStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private static ByteArrayInputStream bytes(String s) {
+        return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // ✅ Test 1: The same content uploaded twice is stored once, under its SHA-256
+    @Test
+    public void test1_DuplicatesShareOneFile() throws IOException {
+        UploadStore store = new UploadStore(dir.toString(), 1024);
+
+        UploadStore.StoredFile first = store.store(bytes("cat picture"), "Cat.PNG");
+        UploadStore.StoredFile second = store.store(bytes("cat picture"), "copy of cat.png");
+
+        assertEquals(first.getFileName(), second.getFileName());
+        assertFalse(first.isDuplicate());
+        assertTrue(second.isDuplicate());
+        assertTrue(first.getFileName().matches("[0-9a-f]{64}\\.png"));
+        assertEquals("cat picture", new String(Files.readAllBytes(store.resolve(first.getFileName())), StandardCharsets.UTF_8));
+        try (Stream<Path> temp = Files.list(dir.resolve(".tmp"))) {
+            assertEquals(0, temp.count(), "No temp files left behind");
+        }
+    }
+
+    // ✅ Test 2: Oversized uploads and path tricks are refused
+    @Test
+    public void test2_LimitsAndPaths() throws IOException {
+        UploadStore store = new UploadStore(dir.toString(), 4);
+        assertThrows(UploadStore.TooLargeException.class, () -> store.store(bytes("too big"), "a.txt"));
+
+        assertNull(store.resolve("../etc/passwd"));
+        assertNull(store.resolve(".tmp"));
+        assertNull(store.resolve("missing.png"));
+        assertEquals("", UploadStore.extensionOf("archive.tar.<script>"));
+    }
+
+    // ✅ Test 3: Range headers
+    @Test
+    public void test3_RangeParsing() {
+        assertArrayEquals(new long[] {0, 99}, FileUploadController.parseRange("bytes=0-99", 1000));
+        assertArrayEquals(new long[] {500, 999}, FileUploadController.parseRange("bytes=500-", 1000));
+        assertArrayEquals(new long[] {900, 999}, FileUploadController.parseRange("bytes=-100", 1000));
+        assertArrayEquals(new long[] {990, 999}, FileUploadController.parseRange("bytes=990-5000", 1000));
+        assertEquals(0, FileUploadController.parseRange("bytes=1000-", 1000).length, "Unsatisfiable");
+        assertNull(FileUploadController.parseRange("bytes=0-1,5-6", 1000), "Multiple ranges: whole file");
+        assertNull(FileUploadController.parseRange(null, 1000));
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.editor;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Tests for the binary wire format, plus a size / speed comparison against the JSON frames
+public class WireCodecTest {
+
+    private static EditBatch typingBatch(int edits) {
+        List<DocMessage> list = new ArrayList<>();
+        for (int i = 0; i < edits; i++) {
+            Delta delta = new Delta().retain(1200 + i).insert("é", i % 5 == 0 ? Collections.singletonMap("bold", true) : null);
+            DocMessage edit = new DocMessage(delta.toJson(), "alice_x7k2p9", "3f1c2a9e-5d7b-4c1e-9a53-0d2f6b8e4a71");
+            edit.setRevision(100_000L + i);
+            list.add(edit);
+        }
+        return new EditBatch("3f1c2a9e-5d7b-4c1e-9a53-0d2f6b8e4a71", list);
+    }
+
+    private static DocMessage snapshot(int paragraphs) {
+        Delta content = new Delta();
+        for (int i = 0; i < paragraphs; i++) {
+            content.insert("Paragraph " + i + ": the quick brown fox jumps over the \"lazy\" dog.", Collections.singletonMap("italic", true));
+            content.insert("\n");
+        }
+        content.insert(Collections.singletonMap("image", "/uploads/cat.png")).insert("\n");
+        DocMessage snap = new DocMessage(content.toJson(), "Server", "doc-1", "Quarterly report");
+        snap.setRevision(4242L);
+        return snap;
+    }
+
+    // ✅ Test 1: Edit batches and snapshots survive a round trip unchanged
+    @Test
+    public void test1_RoundTrip() {
+        EditBatch batch = typingBatch(10);
+        EditBatch decoded = (EditBatch) WireCodec.decode(WireCodec.encodeEdits(batch));
+        assertEquals(batch.getDocId(), decoded.getDocId());
+        for (int i = 0; i < batch.getEdits().size(); i++) {
+            DocMessage expected = batch.getEdits().get(i);
+            DocMessage actual = decoded.getEdits().get(i);
+            assertEquals(expected.getRevision(), actual.getRevision());
+            assertEquals(expected.getSender(), actual.getSender());
+            assertEquals(Delta.fromJson(expected.getContent()), Delta.fromJson(actual.getContent()));
+        }
+
+        for (int paragraphs : new int[] {1, 500}) { // below and above the deflate threshold
+            DocMessage snap = snapshot(paragraphs);
+            DocMessage back = (DocMessage) WireCodec.decode(WireCodec.encodeSnapshot(snap));
+            assertEquals(snap.getTitle(), back.getTitle());
+            assertEquals(snap.getRevision(), back.getRevision());
+            assertEquals(Delta.fromJson(snap.getContent()), Delta.fromJson(back.getContent()));
+            assertNull(back.getChunks());
+        }
+
+        // One part of a streamed join
+        DocMessage part = snapshot(3);
+        part.setChunk(2);
+        part.setChunks(5);
+        DocMessage back = (DocMessage) WireCodec.decode(WireCodec.encodeSnapshot(part));
+        assertEquals(2, back.getChunk());
+        assertEquals(5, back.getChunks());
+        assertEquals(Delta.fromJson(part.getContent()), Delta.fromJson(back.getContent()));
+    }
+
+    // ✅ Test 2: Binary frames are smaller than JSON ones; prints sizes and encode/decode times
+    // (the Java decoder rebuilds JSON DocMessages, so the binary timing here is an upper bound)
+    @Test
+    public void test2_SizeAndSpeedComparison() throws Exception {
+        EditBatch batch = typingBatch(20);
+        DocMessage snap = snapshot(2000);
+
+        int jsonBatch = Delta.MAPPER.writeValueAsBytes(batch).length;
+        int binaryBatch = WireCodec.encodeEdits(batch).length;
+        int jsonSnap = Delta.MAPPER.writeValueAsBytes(snap).length;
+        int binarySnap = WireCodec.encodeSnapshot(snap).length;
+
+        System.out.println("   📏 Edit batch (20 edits): JSON " + jsonBatch + " B, binary " + binaryBatch + " B");
+        System.out.println("   📏 Snapshot (2000 paragraphs): JSON " + jsonSnap + " B, binary " + binarySnap + " B");
+        assertTrue(binaryBatch * 2 < jsonBatch, "Binary edit frames should be less than half the JSON size");
+        assertTrue(binarySnap * 5 < jsonSnap, "Deflated snapshots should be a fraction of the JSON size");
+
+        int rounds = 2000;
+        for (int warmup = 0; warmup < 2; warmup++) {
+            long t0 = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                // The JSON client parses the frame and then every nested delta string again
+                EditBatch parsed = Delta.MAPPER.readValue(Delta.MAPPER.writeValueAsBytes(batch), EditBatch.class);
+                for (DocMessage edit : parsed.getEdits()) Delta.fromJson(edit.getContent());
+            }
+            long t1 = System.nanoTime();
+            for (int i = 0; i < rounds; i++) WireCodec.decode(WireCodec.encodeEdits(batch));
+            long t2 = System.nanoTime();
+            if (warmup == 1) {
+                System.out.printf("   ⏱️ Edit batch encode+decode: JSON %.1f µs, binary %.1f µs%n",
+                        (t1 - t0) / 1000.0 / rounds, (t2 - t1) / 1000.0 / rounds);
+            }
+        }
+    }
+}